@@ -0,0 +1,31 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.automata;
+
+/** The possible alphabets of the automata built from a grammar. */
+public enum Alphabet {
+
+	/** Each symbol is a UTF-16 code unit, that is a Java {@code char}. */
+	UTF16,
+
+	/**
+	 * Each symbol is a byte of the UTF-8 encoding of the input, stored as a {@code char} between 0 and 255. Code points
+	 * outside of ASCII become sequences of transitions.
+	 */
+	UTF8
+}
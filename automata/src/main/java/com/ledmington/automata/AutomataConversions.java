@@ -114,4 +114,21 @@ public final class AutomataConversions {
 		final DFAMinimizer DFAmin = new DFAMinimizer(stateFactory);
 		return DFAmin.minimize(nfa2dfa.convert(enfa2nfa.convert(g2enfa.convert(productions))));
 	}
+
+	/**
+	 * Converts a list of productions to a minimized DFA over the given alphabet by first converting it to an epsilon
+	 * NFA, then to a standard NFA, followed by a DFA, and finally minimizing the DFA.
+	 *
+	 * @param productions the list of productions to be converted
+	 * @param alphabet the alphabet of the resulting DFA
+	 * @return the minimized DFA
+	 */
+	public static DFA convertGrammarToMinimizedDFA(final List<Production> productions, final Alphabet alphabet) {
+		final StateFactory stateFactory = new StateFactory();
+		final GrammarToEpsilonNFA g2enfa = new GrammarToEpsilonNFA(stateFactory, alphabet);
+		final EpsilonNFAToNFA enfa2nfa = new EpsilonNFAToNFA(stateFactory);
+		final NFAToDFA nfa2dfa = new NFAToDFA(stateFactory);
+		final DFAMinimizer DFAmin = new DFAMinimizer(stateFactory);
+		return DFAmin.minimize(nfa2dfa.convert(enfa2nfa.convert(g2enfa.convert(productions))));
+	}
 }
@@ -17,6 +17,7 @@
  */
 package com.ledmington.automata;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -38,17 +39,29 @@ import com.ledmington.ebnf.ZeroOrOne;
 public final class GrammarToEpsilonNFA {
 
 	private final StateFactory stateFactory;
+	private final Alphabet alphabet;
 	private final List<Production> lexerProductions = new ArrayList<>();
 	private final Map<String, Integer> priorities = new HashMap<>();
 	private NFABuilder builder = null;
 
 	/**
-	 * Constructs a GrammarToEpsilonNFA with the specified StateFactory.
+	 * Constructs a GrammarToEpsilonNFA with the specified StateFactory and alphabet.
 	 *
 	 * @param factory the StateFactory to be used for creating states
+	 * @param alphabet the alphabet of the resulting automaton
 	 */
-	public GrammarToEpsilonNFA(final StateFactory factory) {
+	public GrammarToEpsilonNFA(final StateFactory factory, final Alphabet alphabet) {
 		this.stateFactory = Objects.requireNonNull(factory);
+		this.alphabet = Objects.requireNonNull(alphabet);
+	}
+
+	/**
+	 * Constructs a GrammarToEpsilonNFA with the specified StateFactory over the UTF-16 alphabet.
+	 *
+	 * @param factory the StateFactory to be used for creating states
+	 */
+	public GrammarToEpsilonNFA(final StateFactory factory) {
+		this(factory, Alphabet.UTF16);
 	}
 
 	/** Constructs a GrammarToEpsilonNFA with a default StateFactory. */
@@ -186,11 +199,24 @@ public final class GrammarToEpsilonNFA {
 	}
 
 	private void convertTerminal(final Terminal t, final State start, final State end) {
+		final String symbols = switch (alphabet) {
+			case UTF16 -> t.literal();
+			case UTF8 -> {
+				// each byte becomes a symbol
+				final byte[] bytes = t.literal().getBytes(StandardCharsets.UTF_8);
+				final StringBuilder sb = new StringBuilder(bytes.length);
+				for (final byte b : bytes) {
+					sb.append((char) (b & 0xff));
+				}
+				yield sb.toString();
+			}
+		};
+
 		State prev = stateFactory.getNewState();
 		builder.addTransition(start, NFA.EPSILON, prev);
-		for (int i = 0; i < t.literal().length(); i++) {
+		for (int i = 0; i < symbols.length(); i++) {
 			final State s = stateFactory.getNewState();
-			builder.addTransition(prev, t.literal().charAt(i), s);
+			builder.addTransition(prev, symbols.charAt(i), s);
 			prev = s;
 		}
 		builder.addTransition(prev, NFA.EPSILON, end);
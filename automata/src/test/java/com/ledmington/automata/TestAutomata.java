@@ -25,6 +25,7 @@ import static com.ledmington.automata.CorrectGrammars.t;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Stream;
@@ -199,4 +200,18 @@ public final class TestAutomata {
 		final List<Match> tokens = tryMatch(dfa, "banana");
 		assertEquals(List.of(new Match("ID", "banana")), tokens);
 	}
+
+	@Test
+	void utf8DFAMatchesEncodedBytes() {
+		final List<Production> productions =
+				List.of(p("EURO", t("€")), p("WORD", one_or_more(or(t("a"), t("è"), t("😀")))));
+		final DFA dfa = AutomataConversions.convertGrammarToMinimizedDFA(productions, Alphabet.UTF8);
+		final String input = new String("aè😀€".getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+		final List<Match> tokens = tryMatch(dfa, input);
+		assertEquals(
+				List.of(
+						new Match("WORD", new String("aè😀".getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1)),
+						new Match("EURO", new String("€".getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1))),
+				tokens);
+	}
 }
@@ -0,0 +1,173 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/** A helper class to compile generated parsers in memory, without touching the file system. */
+public final class InMemoryCompiler {
+
+	private InMemoryCompiler() {}
+
+	private static final class JavaSourceFromString extends SimpleJavaFileObject {
+
+		private final String code;
+
+		JavaSourceFromString(final String className, final String code) {
+			super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+			this.code = code;
+		}
+
+		@Override
+		public CharSequence getCharContent(final boolean ignoreEncodingErrors) {
+			return code;
+		}
+	}
+
+	private static final class JavaClassObject extends SimpleJavaFileObject {
+
+		private final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+		JavaClassObject(final String name, final Kind kind) {
+			super(URI.create("bytes:///" + name), kind);
+		}
+
+		@Override
+		public OutputStream openOutputStream() {
+			return baos;
+		}
+
+		byte[] getBytes() {
+			return baos.toByteArray();
+		}
+	}
+
+	private static final class MemoryClassLoader extends ClassLoader {
+
+		private final Map<String, JavaClassObject> classes = new HashMap<>();
+
+		void addClass(final String name, final JavaClassObject jco) {
+			classes.put(name, jco);
+		}
+
+		long size() {
+			return classes.values().stream().mapToLong(jco -> jco.getBytes().length).sum();
+		}
+
+		@Override
+		protected Class<?> findClass(final String name) throws ClassNotFoundException {
+			final JavaClassObject jco = classes.get(name);
+			if (jco == null) {
+				return super.findClass(name);
+			}
+			final byte[] bytes = jco.getBytes();
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+
+	/**
+	 * Compiles the given source code and loads the class with the given name.
+	 *
+	 * @param className The fully-qualified name of the class to load.
+	 * @param sourceCode The Java source code containing the class.
+	 * @return The loaded class.
+	 */
+	public static Class<?> compile(final String className, final String sourceCode) {
+		try {
+			return compileAll(className, sourceCode).loadClass(className);
+		} catch (final ClassNotFoundException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Compiles the given source code and returns the size of the bytecode of all the classes it contains.
+	 *
+	 * @param className The fully-qualified name of the main class of the source code.
+	 * @param sourceCode The Java source code to compile.
+	 * @return The total size, in bytes, of the class files.
+	 */
+	public static long bytecodeSize(final String className, final String sourceCode) {
+		return compileAll(className, sourceCode).size();
+	}
+
+	private static MemoryClassLoader compileAll(final String className, final String sourceCode) {
+		final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) {
+			throw new IllegalStateException("No compiler available. Run with a JDK.");
+		}
+
+		final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		final StandardJavaFileManager standardFileManager =
+				compiler.getStandardFileManager(diagnostics, Locale.US, StandardCharsets.UTF_8);
+		final MemoryClassLoader classLoader = new MemoryClassLoader();
+
+		try (JavaFileManager fileManager = new ForwardingJavaFileManager<>(standardFileManager) {
+			@Override
+			public JavaFileObject getJavaFileForOutput(
+					final Location location,
+					final String className,
+					final JavaFileObject.Kind kind,
+					final FileObject sibling) {
+				final JavaClassObject jclassObject = new JavaClassObject(className, kind);
+				classLoader.addClass(className, jclassObject);
+				return jclassObject;
+			}
+		}) {
+			final boolean success = compiler.getTask(
+							null,
+							fileManager,
+							diagnostics,
+							List.of(),
+							null,
+							List.of(new JavaSourceFromString(className, sourceCode)))
+					.call();
+			if (!success) {
+				throw new IllegalStateException(String.format(
+						"Compilation failed.%n%s",
+						diagnostics.getDiagnostics().stream()
+								.map(d -> String.format(
+										"Error at line %,d, column %,d: %s",
+										d.getLineNumber(), d.getColumnNumber(), d.getMessage(Locale.US)))
+								.collect(Collectors.joining("\n"))));
+			}
+			return classLoader;
+		} catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
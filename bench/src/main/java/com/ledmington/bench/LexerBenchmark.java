@@ -0,0 +1,118 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.bench;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+import com.ledmington.ebnf.Grammar;
+import com.ledmington.ebnf.Parser;
+import com.ledmington.generator.Generator;
+import com.ledmington.generator.GeneratorOptions;
+import com.ledmington.generator.TransitionEncoding;
+
+/**
+ * Measures how the cost of tokenization grows with the size of inputs which force the lexer to roll back after
+ * scanning to the end of the input. A lexer with linear-time longest matching keeps a constant cost per character, both
+ * when tokenizing a String and when streaming from a Reader.
+ */
+public final class LexerBenchmark {
+
+	/*
+	Every "a" could be the start of an AB token, so without remembering failed scans each token of an input made only
+	of "a"s scans the whole rest of the input before rolling back.
+	 */
+	private static final String GRAMMAR = """
+			start = ( A | AB )+ ;
+			A = "a" ;
+			AB = "a"+ "b" ;
+			""";
+	private static final String CLASS_NAME = "BenchLexerParser";
+
+	private LexerBenchmark() {}
+
+	public static void main(final String[] args) throws Throwable {
+		final int minLength = 1 << 12;
+		final int maxLength = 1 << 20;
+		final int rounds = 5;
+
+		final TransitionEncoding encoding =
+				args.length > 0 ? TransitionEncoding.valueOf(args[0].toUpperCase(Locale.ROOT)) : TransitionEncoding.AUTO;
+
+		final Grammar g = Parser.parse(GRAMMAR);
+		final String source = Generator.generate(
+				g,
+				CLASS_NAME,
+				"",
+				"\t",
+				false,
+				GeneratorOptions.builder().transitionEncoding(encoding).build());
+		final Class<?> klass = InMemoryCompiler.compile(CLASS_NAME, source);
+		final Class<?> lexerClass = klass.getClassLoader().loadClass(CLASS_NAME + "$" + CLASS_NAME + "_Lexer");
+		final Class<?> bufferClass = klass.getClassLoader().loadClass(CLASS_NAME + "$TokenBuffer");
+
+		final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+		final Object lexer = lookup.findConstructor(lexerClass, MethodType.methodType(void.class))
+				.asType(MethodType.methodType(Object.class))
+				.invokeExact();
+		final Object buffer = lookup.findConstructor(bufferClass, MethodType.methodType(void.class))
+				.asType(MethodType.methodType(Object.class))
+				.invokeExact();
+		final MethodHandle tokenize = lookup.unreflect(lexerClass.getMethod("tokenize", String.class, bufferClass))
+				.asType(MethodType.methodType(void.class, Object.class, String.class, Object.class));
+		final MethodHandle size = lookup.unreflect(bufferClass.getMethod("size"))
+				.asType(MethodType.methodType(int.class, Object.class));
+		final MethodHandle stream = lookup.unreflect(lexerClass.getMethod("tokenize", Reader.class, Consumer.class))
+				.asType(MethodType.methodType(void.class, Object.class, Reader.class, Consumer.class));
+
+		System.out.printf(" %-24s : %15s%n", "Transition encoding", encoding);
+		for (int length = minLength; length <= maxLength; length *= 2) {
+			final String input = "a".repeat(length);
+			long best = Long.MAX_VALUE;
+			for (int r = 0; r < rounds; r++) {
+				final long t = System.nanoTime();
+				tokenize.invokeExact(lexer, input, buffer);
+				best = Math.min(best, System.nanoTime() - t);
+				if ((int) size.invokeExact(buffer) != length) {
+					throw new IllegalStateException("The benchmark input was not tokenized correctly.");
+				}
+			}
+			System.out.printf(
+					" %,12d chars %11s : %,15.2f ns/char%n", length, "(String)", (double) best / (double) length);
+
+			best = Long.MAX_VALUE;
+			for (int r = 0; r < rounds; r++) {
+				final int[] count = {0};
+				final Consumer<Object> consumer = token -> count[0]++;
+				final long t = System.nanoTime();
+				stream.invokeExact(lexer, (Reader) new StringReader(input), consumer);
+				best = Math.min(best, System.nanoTime() - t);
+				if (count[0] != length) {
+					throw new IllegalStateException("The benchmark input was not tokenized correctly.");
+				}
+			}
+			System.out.printf(
+					" %,12d chars %11s : %,15.2f ns/char%n", length, "(Reader)", (double) best / (double) length);
+		}
+	}
+}
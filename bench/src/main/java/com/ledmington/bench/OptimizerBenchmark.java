@@ -0,0 +1,104 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.bench;
+
+import java.util.Arrays;
+
+import com.ledmington.ebnf.Grammar;
+import com.ledmington.ebnf.Parser;
+import com.ledmington.generator.Generator;
+import com.ledmington.generator.GeneratorOptions;
+
+/**
+ * Reports how much smaller the grammar optimizer makes a generated parser, by the number of parsing methods, of classes
+ * and of methods, and by the size of the compiled bytecode.
+ */
+public final class OptimizerBenchmark {
+
+	private static final String GRAMMAR = """
+			start = statement+ ;
+			statement = assignment | print ;
+			assignment = IDENTIFIER EQUALS expression ( COMMA expression )* SEMICOLON ;
+			print = PRINT expression ( COMMA expression )* SEMICOLON ;
+			expression = term ( ( PLUS | MINUS ) term )* ;
+			term = operand ( ( ASTERISK | SLASH ) operand )* ;
+			operand = IDENTIFIER | NUMBER | LEFT_PARENTHESIS expression RIGHT_PARENTHESIS
+			        | MINUS LEFT_PARENTHESIS expression RIGHT_PARENTHESIS ;
+			PRINT = "print" ;
+			IDENTIFIER = ( "a" | "b" | "c" | "x" | "y" | "z" )+ ;
+			NUMBER = ( "0" | "1" | "2" | "3" | "4" | "5" | "6" | "7" | "8" | "9" )+ ;
+			EQUALS = "=" ;
+			COMMA = "," ;
+			SEMICOLON = ";" ;
+			PLUS = "+" ;
+			MINUS = "-" ;
+			ASTERISK = "*" ;
+			SLASH = "/" ;
+			LEFT_PARENTHESIS = "(" ;
+			RIGHT_PARENTHESIS = ")" ;
+			_WHITESPACE = ( " " | "\\t" | "\\n" )+ ;
+			""";
+	private static final String CLASS_NAME = "BenchOptimizedParser";
+
+	private OptimizerBenchmark() {}
+
+	public static void main(final String[] args) {
+		final Grammar g = Parser.parse(GRAMMAR);
+		final String original = Generator.generate(g, CLASS_NAME, "", "\t", false);
+		final String optimized = Generator.generate(
+				g,
+				CLASS_NAME,
+				"",
+				"\t",
+				false,
+				GeneratorOptions.builder().optimizeGrammar(true).build());
+
+		System.out.printf(" %-12s : %14s %12s %12s %12s%n", "", "parse methods", "classes", "methods", "bytecode");
+		report("Original", original);
+		report("Optimized", optimized);
+	}
+
+	private static void report(final String name, final String source) {
+		final Class<?> klass = InMemoryCompiler.compile(CLASS_NAME, source);
+		System.out.printf(
+				" %-12s : %,14d %,12d %,12d %,10d B%n",
+				name,
+				Arrays.stream(klass.getDeclaredMethods())
+						.filter(m -> m.getName().startsWith("parse_"))
+						.count(),
+				classes(klass),
+				methods(klass),
+				InMemoryCompiler.bytecodeSize(CLASS_NAME, source));
+	}
+
+	private static int classes(final Class<?> klass) {
+		int count = 1;
+		for (final Class<?> inner : klass.getDeclaredClasses()) {
+			count += classes(inner);
+		}
+		return count;
+	}
+
+	private static int methods(final Class<?> klass) {
+		int count = klass.getDeclaredMethods().length;
+		for (final Class<?> inner : klass.getDeclaredClasses()) {
+			count += methods(inner);
+		}
+		return count;
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+import com.ledmington.ebnf.Grammar;
+import com.ledmington.ebnf.Parser;
+import com.ledmington.generator.Generator;
+import com.ledmington.generator.GeneratorOptions;
+import com.ledmington.generator.TransitionEncoding;
+
+/**
+ * Measures the per-parse cost of a generated parser on many small inputs, which is dominated by fixed costs such as
+ * lexer setup rather than by the size of the input. It also reports how many bytes a parser reused across inputs
+ * allocates per parse, which after warmup should be only the returned tree.
+ */
+public final class ParserBenchmark {
+
+	private static final String GRAMMAR = """
+			start = declaration+ ;
+			declaration = INT id EQUALS number SEMICOLON
+			            | CHAR id EQUALS character_literal SEMICOLON ;
+			id = LETTER+ ;
+			number = DIGIT+ ;
+			character_literal = QUOTE LETTER QUOTE ;
+			INT = "int" ;
+			EQUALS = "=" ;
+			CHAR = "char" ;
+			SEMICOLON = ";" ;
+			QUOTE = "'" ;
+			LETTER = "a" | "b" | "c" | "d" | "e" | "f" | "g"
+			       | "h" | "i" | "j" | "k" | "l" | "m" | "n"
+			       | "o" | "p" | "q" | "r" | "s" | "t" | "u"
+			       | "v" | "w" | "x" | "y" | "z" | "_" ;
+			DIGIT = "0" | "1" | "2" | "3" | "4" | "5" | "6" | "7" | "8" | "9" ;
+			_WHITESPACE = ( " " | "\\t" | "\\n" )+ ;
+			""";
+	private static final String INPUT = "int a = 5;\nchar x = 'z';\n";
+	private static final String CLASS_NAME = "BenchParser";
+
+	private ParserBenchmark() {}
+
+	public static void main(final String[] args) throws Throwable {
+		final int rounds = 10;
+		final int parsesPerRound = 200_000;
+
+		final TransitionEncoding encoding =
+				args.length > 0 ? TransitionEncoding.valueOf(args[0].toUpperCase(Locale.ROOT)) : TransitionEncoding.AUTO;
+
+		final Grammar g = Parser.parse(GRAMMAR);
+		final String source = Generator.generate(
+				g,
+				CLASS_NAME,
+				"",
+				"\t",
+				false,
+				GeneratorOptions.builder().transitionEncoding(encoding).build());
+		final Class<?> klass = InMemoryCompiler.compile(CLASS_NAME, source);
+
+		final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+		final MethodHandle constructor = lookup.findConstructor(klass, MethodType.methodType(void.class))
+				.asType(MethodType.methodType(Object.class));
+		final MethodHandle parse = lookup.unreflect(klass.getMethod("parse", String.class))
+				.asType(MethodType.methodType(Object.class, Object.class, String.class));
+
+		long t = System.nanoTime();
+		final Object firstResult = parse.invokeExact((Object) constructor.invokeExact(), INPUT);
+		final long firstParseTime = System.nanoTime() - t;
+		if (firstResult == null) {
+			throw new IllegalStateException("The benchmark input was not parsed correctly.");
+		}
+		System.out.printf(" %-24s : %15s%n", "Transition encoding", encoding);
+		System.out.printf(" %-24s : %,15d ns%n", "First parse", firstParseTime);
+
+		for (int r = 0; r < rounds; r++) {
+			int successes = 0;
+			t = System.nanoTime();
+			for (int i = 0; i < parsesPerRound; i++) {
+				// one new parser per message, as a service would do
+				final Object result = parse.invokeExact((Object) constructor.invokeExact(), INPUT);
+				if (result != null) {
+					successes++;
+				}
+			}
+			final long elapsed = System.nanoTime() - t;
+			if (successes != parsesPerRound) {
+				throw new IllegalStateException("The benchmark input was not parsed correctly.");
+			}
+			System.out.printf(
+					" Round %2d %15s : %,15.1f ns/parse%n", r + 1, "", (double) elapsed / (double) parsesPerRound);
+		}
+
+		final com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		final Object parser = constructor.invokeExact();
+		final long before = threads.getCurrentThreadAllocatedBytes();
+		for (int i = 0; i < parsesPerRound; i++) {
+			final Object result = parse.invokeExact(parser, INPUT);
+			if (result == null) {
+				throw new IllegalStateException("The benchmark input was not parsed correctly.");
+			}
+		}
+		final long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+		System.out.printf(
+				" %-24s : %,15.1f B/parse%n", "Allocated (reused)", (double) allocated / (double) parsesPerRound);
+	}
+}
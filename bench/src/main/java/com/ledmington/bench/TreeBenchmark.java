@@ -0,0 +1,130 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import com.ledmington.ebnf.Grammar;
+import com.ledmington.ebnf.Parser;
+import com.ledmington.generator.Generator;
+import com.ledmington.generator.GeneratorOptions;
+
+/**
+ * Compares the regular parse tree, made of one object per node, with the flat one stored in parallel arrays, by the
+ * time needed to build them from a large input and by the memory they take once built.
+ */
+public final class TreeBenchmark {
+
+	private static final String GRAMMAR = """
+			start = declaration+ ;
+			declaration = INT id EQUALS number SEMICOLON
+			            | CHAR id EQUALS character_literal SEMICOLON ;
+			id = LETTER+ ;
+			number = DIGIT+ ;
+			character_literal = QUOTE LETTER QUOTE ;
+			INT = "int" ;
+			EQUALS = "=" ;
+			CHAR = "char" ;
+			SEMICOLON = ";" ;
+			QUOTE = "'" ;
+			LETTER = "a" | "b" | "c" | "d" | "e" | "f" | "g"
+			       | "h" | "i" | "j" | "k" | "l" | "m" | "n"
+			       | "o" | "p" | "q" | "r" | "s" | "t" | "u"
+			       | "v" | "w" | "x" | "y" | "z" | "_" ;
+			DIGIT = "0" | "1" | "2" | "3" | "4" | "5" | "6" | "7" | "8" | "9" ;
+			_WHITESPACE = ( " " | "\\t" | "\\n" )+ ;
+			""";
+	private static final String CLASS_NAME = "BenchTreeParser";
+
+	private TreeBenchmark() {}
+
+	public static void main(final String[] args) throws Throwable {
+		final int declarations = 100_000;
+		final int rounds = 10;
+
+		final Grammar g = Parser.parse(GRAMMAR);
+		final String source = Generator.generate(
+				g,
+				CLASS_NAME,
+				"",
+				"\t",
+				false,
+				GeneratorOptions.builder().flatTree(true).build());
+		final Class<?> klass = InMemoryCompiler.compile(CLASS_NAME, source);
+		final Class<?> treeClass = klass.getClassLoader().loadClass(CLASS_NAME + "$Tree");
+
+		final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+		final MethodHandle constructor = lookup.findConstructor(klass, MethodType.methodType(void.class))
+				.asType(MethodType.methodType(Object.class));
+		final MethodHandle parse = lookup.unreflect(klass.getMethod("parse", String.class))
+				.asType(MethodType.methodType(Object.class, Object.class, String.class));
+		final MethodHandle parseTree = lookup.unreflect(klass.getMethod("parseTree", String.class))
+				.asType(MethodType.methodType(Object.class, Object.class, String.class));
+		final MethodHandle size = lookup.unreflect(treeClass.getMethod("size"))
+				.asType(MethodType.methodType(int.class, Object.class));
+
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < declarations; i++) {
+			sb.append(i % 2 == 0 ? "int abc = 12345;\n" : "char xyz = 'q';\n");
+		}
+		final String input = sb.toString();
+
+		final Object parser = constructor.invokeExact();
+		System.out.printf(" %-24s : %,15d chars%n", "Input", input.length());
+
+		for (int r = 0; r < rounds; r++) {
+			long memory = memory();
+			long t = System.nanoTime();
+			Object result = parse.invokeExact(parser, input);
+			final long objectsTime = System.nanoTime() - t;
+			final long objectsMemory = memory() - memory;
+			if (result == null) {
+				throw new IllegalStateException("The benchmark input was not parsed correctly.");
+			}
+			result = null;
+
+			memory = memory();
+			t = System.nanoTime();
+			result = parseTree.invokeExact(parser, input);
+			final long flatTime = System.nanoTime() - t;
+			final long flatMemory = memory() - memory;
+			if (result == null) {
+				throw new IllegalStateException("The benchmark input was not parsed correctly.");
+			}
+
+			System.out.printf(
+					" Round %2d objects        : %,12.3f ms %,12.3f MB retained%n",
+					r + 1, (double) objectsTime / 1_000_000.0, (double) objectsMemory / 1_000_000.0);
+			System.out.printf(
+					" Round %2d flat           : %,12.3f ms %,12.3f MB retained (%,d nodes)%n",
+					r + 1,
+					(double) flatTime / 1_000_000.0,
+					(double) flatMemory / 1_000_000.0,
+					(int) size.invokeExact(result));
+		}
+	}
+
+	@SuppressWarnings("PMD.DoNotCallGarbageCollectionExplicitly")
+	private static long memory() {
+		System.gc();
+		final Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -23,11 +23,19 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
 
 import com.ledmington.ebnf.Grammar;
 import com.ledmington.ebnf.Parser;
 import com.ledmington.ebnf.Utils;
 import com.ledmington.generator.Generator;
+import com.ledmington.generator.GeneratorOptions;
+import com.ledmington.generator.GeneratorOptionsBuilder;
+import com.ledmington.generator.GrammarUtils;
+import com.ledmington.generator.Memoization;
+import com.ledmington.generator.ParserBackend;
+import com.ledmington.generator.TransitionEncoding;
 
 public class Main {
 
@@ -44,6 +52,21 @@ public class Main {
 		boolean generateMainMethod = false;
 		String packageName = "unknown";
 		boolean overwriteOutputFile = false;
+		final GeneratorOptionsBuilder options = GeneratorOptions.builder();
+		TransitionEncoding encoding = null;
+		int tableByteBudget = -1;
+		boolean utf8Lexer = false;
+		Memoization memoization = null;
+		boolean cachedChildren = false;
+		boolean flatTree = false;
+		boolean eventListener = false;
+		boolean reducer = false;
+		ParserBackend backend = null;
+		boolean adaptivePrediction = false;
+		boolean precedenceClimbing = false;
+		boolean rewriteRecursion = false;
+		boolean optimizeGrammar = false;
+		boolean leftFactor = false;
 
 		for (int i = 0; i < args.length; i++) {
 			switch (args[i]) {
@@ -60,6 +83,33 @@ public class Main {
 							" -m, --main             Generates a main method to create a self-contained parser.",
 							" -p, --package PACKAGE  Sets PACKAGE as the package name of the generated class.",
 							" -w, --overwrite        If specified, overwrites the output file if it is already present.",
+							" -e, --encoding ENCODING",
+							"                        Encodes the lexer transitions with the given ENCODING: one of LINEAR,",
+							"                        BINARY_SEARCH, DENSE, COMB, DIRECT or AUTO (default).",
+							" --table-budget BYTES   Sets the maximum size of the lexer tables when the encoding is AUTO.",
+							" --utf8                 Generates also a lexer running directly on UTF-8 encoded bytes.",
+							" --packrat              Remembers the result of every production at each position, so that",
+							"                        backtracking takes linear time.",
+							" --memoize PRODUCTIONS  Remembers the result of the given comma-separated PRODUCTIONS only.",
+							" --cache-children       Makes sequence nodes classes building the list of their children",
+							"                        once, instead of records.",
+							" --flat-tree            Generates also a parser building a compact tree stored in arrays.",
+							" --events               Generates also a parser reporting what it matches to a listener.",
+							" --reducer              Generates also a parser folding what it matches into user values.",
+							" --backend BACKEND      Runs the parser productions with the given BACKEND: one of",
+							"                        RECURSIVE_DESCENT (default), EXPLICIT_STACK, LL1_TABLE or",
+							"                        LALR1_TABLE. LALR1_TABLE does not try alternatives in order, so it",
+							"                        rejects choices whose alternatives may start with the same token,",
+							"                        and it reports errors at the first token it cannot shift.",
+							" --adaptive             Looks as far ahead as needed to choose between alternatives, caching",
+							"                        what it learns across parses.",
+							" --precedence-climbing  Parses each chain of operator productions with a single loop instead",
+							"                        of one call per precedence level.",
+							" --rewrite-recursion    Rewrites left-recursive and tail-recursive productions into",
+							"                        repetitions before generating the parser.",
+							" --optimize-grammar     Shares a single production between equal expressions and inlines",
+							"                        productions renaming a symbol used once.",
+							" --left-factor          Parses once the symbols which several alternatives start with.",
 							""));
 					System.exit(0);
 					return;
@@ -103,6 +153,130 @@ public class Main {
 					}
 					overwriteOutputFile = true;
 				}
+				case "-e", "--encoding" -> {
+					i++;
+					if (encoding != null) {
+						die("Cannot set encoding twice, was already '%s'.%n", encoding);
+					}
+					try {
+						encoding = TransitionEncoding.valueOf(args[i].toUpperCase(Locale.ROOT));
+					} catch (final IllegalArgumentException e) {
+						die("Unknown encoding: '%s'.%n", args[i]);
+					}
+					options.transitionEncoding(encoding);
+				}
+				case "--table-budget" -> {
+					i++;
+					if (tableByteBudget != -1) {
+						die("Cannot set table budget twice, was already %,d.%n", tableByteBudget);
+					}
+					try {
+						tableByteBudget = Integer.parseInt(args[i]);
+					} catch (final NumberFormatException e) {
+						die("Invalid table budget: '%s'.%n", args[i]);
+					}
+					if (tableByteBudget <= 0) {
+						die("Invalid table budget: expected positive but was %,d.%n", tableByteBudget);
+					}
+					options.tableByteBudget(tableByteBudget);
+				}
+				case "--utf8" -> {
+					if (utf8Lexer) {
+						die("Cannot generate UTF-8 lexer twice.");
+					}
+					utf8Lexer = true;
+					options.utf8Lexer(true);
+				}
+				case "--packrat" -> {
+					if (memoization != null) {
+						die("Cannot set memoization twice, was already '%s'.%n", memoization);
+					}
+					memoization = Memoization.ALL;
+					options.memoization(Memoization.ALL);
+				}
+				case "--memoize" -> {
+					i++;
+					if (memoization != null) {
+						die("Cannot set memoization twice, was already '%s'.%n", memoization);
+					}
+					memoization = Memoization.SELECTED;
+					options.memoizedProductions(List.of(args[i].split(",")));
+				}
+				case "--cache-children" -> {
+					if (cachedChildren) {
+						die("Cannot set cached children twice.");
+					}
+					cachedChildren = true;
+					options.cachedChildren(true);
+				}
+				case "--flat-tree" -> {
+					if (flatTree) {
+						die("Cannot generate flat tree twice.");
+					}
+					flatTree = true;
+					options.flatTree(true);
+				}
+				case "--events" -> {
+					if (eventListener) {
+						die("Cannot generate event listener twice.");
+					}
+					eventListener = true;
+					options.eventListener(true);
+				}
+				case "--reducer" -> {
+					if (reducer) {
+						die("Cannot generate reducer twice.");
+					}
+					reducer = true;
+					options.reducer(true);
+				}
+				case "--backend" -> {
+					i++;
+					if (backend != null) {
+						die("Cannot set backend twice, was already '%s'.%n", backend);
+					}
+					try {
+						backend = ParserBackend.valueOf(args[i].toUpperCase(Locale.ROOT));
+					} catch (final IllegalArgumentException e) {
+						die("Unknown backend: '%s'.%n", args[i]);
+					}
+					options.parserBackend(backend);
+				}
+				case "--adaptive" -> {
+					if (adaptivePrediction) {
+						die("Cannot set adaptive prediction twice.");
+					}
+					adaptivePrediction = true;
+					options.adaptivePrediction(true);
+				}
+				case "--precedence-climbing" -> {
+					if (precedenceClimbing) {
+						die("Cannot set precedence climbing twice.");
+					}
+					precedenceClimbing = true;
+					options.precedenceClimbing(true);
+				}
+				case "--rewrite-recursion" -> {
+					if (rewriteRecursion) {
+						die("Cannot set recursion rewriting twice.");
+					}
+					rewriteRecursion = true;
+					options.rewriteRecursion(true);
+				}
+				case "--optimize-grammar" -> {
+					if (optimizeGrammar) {
+						die("Cannot set grammar optimization twice.");
+					}
+					optimizeGrammar = true;
+					options.optimizeGrammar(true);
+				}
+				case "--left-factor" -> {
+					if (leftFactor) {
+						die("Cannot set left-factoring twice.");
+					}
+					leftFactor = true;
+					options.leftFactor(true);
+				}
 				default -> die("Unknown command-line argument: '%s'.%n", args[i]);
 			}
 		}
@@ -137,7 +311,24 @@ public class Main {
 		final int idx = outputFile.lastIndexOf(File.separator);
 		final String className = idx < 0 ? outputFile : outputFile.substring(idx + 1);
 		final String indent = "\t";
-		final String output = Generator.generate(g, className, packageName, indent, generateMainMethod);
+		GeneratorOptions generatorOptions = null;
+		try {
+			generatorOptions = options.build();
+		} catch (final IllegalArgumentException e) {
+			die("%s%n", e.getMessage());
+		}
+		final String output = Generator.generate(g, className, packageName, indent, generateMainMethod, generatorOptions);
+		// the table backends do not choose between alternatives the way the others do
+		if (verbose
+				&& (generatorOptions.parserBackend() == ParserBackend.RECURSIVE_DESCENT
+						|| generatorOptions.parserBackend() == ParserBackend.EXPLICIT_STACK)) {
+			final List<String> predictive =
+					GrammarUtils.computePredictiveProductions(Generator.transform(g, generatorOptions));
+			System.out.printf(
+					"Predictive productions (%,d): %s%n",
+					predictive.size(),
+					predictive.isEmpty() ? "none" : String.join(", ", predictive));
+		}
 
 		try (final BufferedWriter bw = Files.newBufferedWriter(outputPath, StandardCharsets.UTF_8)) {
 			bw.write(output);
@@ -0,0 +1,385 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.generator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import com.ledmington.ebnf.Expression;
+import com.ledmington.ebnf.Grammar;
+import com.ledmington.ebnf.NonTerminal;
+import com.ledmington.ebnf.OneOrMore;
+import com.ledmington.ebnf.Or;
+import com.ledmington.ebnf.Production;
+import com.ledmington.ebnf.Sequence;
+import com.ledmington.ebnf.ZeroOrMore;
+import com.ledmington.ebnf.ZeroOrOne;
+
+/**
+ * Generates the adaptive prediction of a parser: the productions become automata over tokens, which are run on the
+ * upcoming tokens to find out which alternatives of a decision may still match. What is learned becomes a DFA for
+ * each decision, built while parsing and shared by all the parsers of the class, so that each token is simulated only
+ * the first time it is seen in a given situation.
+ */
+@SuppressWarnings("PMD.AvoidDuplicateLiterals")
+final class AdaptivePredictionSerializer {
+
+	// beyond this depth of calls, an alternative is assumed to be able to match, which also stops left recursion
+	private static final int MAX_DEPTH = 64;
+
+	private static final int MATCH = 0;
+	private static final int CALL = 1;
+	private static final int EPSILON = 2;
+
+	private final IndentedStringBuilder sb;
+	private final Set<String> tokenNames;
+	private final Map<String, Integer> tokenIndices = new HashMap<>();
+	private final Map<String, Integer> startStates = new HashMap<>();
+	private final List<int[]> transitions = new ArrayList<>();
+	private int stateCount = 0;
+
+	/**
+	 * Creates a new AdaptivePredictionSerializer.
+	 *
+	 * @param sb The StringBuilder to use.
+	 * @param tokenNames The set of non-terminals corresponding to lexer productions.
+	 */
+	AdaptivePredictionSerializer(final IndentedStringBuilder sb, final Set<String> tokenNames) {
+		this.sb = Objects.requireNonNull(sb);
+		this.tokenNames = Objects.requireNonNull(tokenNames);
+	}
+
+	/**
+	 * Generates the automata of the given grammar and the method predicting the alternatives of the given decisions,
+	 * which returns, in order, the indices of the alternatives worth trying.
+	 *
+	 * @param g The grammar to be used.
+	 * @param decisions The names of the Or productions to predict, in the order of their decision index.
+	 */
+	void generatePrediction(final Grammar g, final List<String> decisions) {
+		final List<String> sortedTokenTypes = g.getLexerProductions().stream()
+				.map(p -> p.start().name())
+				.sorted()
+				.toList();
+		for (int i = 0; i < sortedTokenTypes.size(); i++) {
+			tokenIndices.put(sortedTokenTypes.get(i), i);
+		}
+		final List<Production> parserProductions = g.getParserProductions();
+		for (final Production p : parserProductions) {
+			startStates.put(p.start().name(), stateCount);
+			stateCount += stateCount(p.result());
+		}
+		for (final Production p : parserProductions) {
+			addTransitions(startStates.get(p.start().name()), p.result());
+		}
+
+		transitions.sort(Comparator.comparingInt(t -> t[0]));
+		final int[] transitionStarts = new int[stateCount + 1];
+		for (final int[] t : transitions) {
+			transitionStarts[t[0] + 1]++;
+		}
+		for (int s = 0; s < stateCount; s++) {
+			transitionStarts[s + 1] += transitionStarts[s];
+		}
+		final Map<String, int[]> arrays = new LinkedHashMap<>();
+		arrays.put("TRANSITION_STARTS", transitionStarts);
+		arrays.put(
+				"TRANSITION_KINDS", transitions.stream().mapToInt(t -> t[1]).toArray());
+		arrays.put(
+				"TRANSITION_LABELS", transitions.stream().mapToInt(t -> t[2]).toArray());
+		arrays.put(
+				"TRANSITION_TARGETS", transitions.stream().mapToInt(t -> t[3]).toArray());
+		// the alternatives of an Or come right after its first state
+		arrays.put(
+				"DECISION_STATES",
+				decisions.stream().mapToInt(d -> startStates.get(d) + 1).toArray());
+		arrays.put(
+				"DECISION_SIZES",
+				decisions.stream()
+						.mapToInt(d -> ((Or) parserProductions.stream()
+										.filter(p -> p.start().name().equals(d))
+										.findFirst()
+										.orElseThrow()
+										.result())
+								.expressions()
+								.size())
+						.toArray());
+
+		generateAutomata(sortedTokenTypes.size(), arrays);
+		generatePredict();
+	}
+
+	private static int stateCount(final Expression result) {
+		return switch (result) {
+			case NonTerminal ignored -> 2;
+			case Sequence s -> s.expressions().size() + 1;
+			case Or or -> or.expressions().size() + 2;
+			case ZeroOrOne ignored -> 2;
+			case ZeroOrMore ignored -> 2;
+			case OneOrMore ignored -> 3;
+			default -> throw new IllegalArgumentException(String.format("Unknown node: '%s'", result));
+		};
+	}
+
+	private void addStep(final int from, final Expression exp, final int to) {
+		final String name = ((NonTerminal) exp).name();
+		if (tokenNames.contains(name)) {
+			transitions.add(new int[] {from, MATCH, tokenIndices.get(name), to});
+		} else {
+			transitions.add(new int[] {from, CALL, startStates.get(name), to});
+		}
+	}
+
+	/*
+	Each production starts at its first state and ends at its last one, which has no transitions. Matching a child
+	production pushes the state to return to, and jumps to the first state of the child.
+	 */
+	private void addTransitions(final int start, final Expression result) {
+		switch (result) {
+			case NonTerminal nt -> addStep(start, nt, start + 1);
+			case Sequence s -> {
+				for (int i = 0; i < s.expressions().size(); i++) {
+					addStep(start + i, s.expressions().get(i), start + i + 1);
+				}
+			}
+			case Or or -> {
+				final int end = start + or.expressions().size() + 1;
+				for (int i = 0; i < or.expressions().size(); i++) {
+					transitions.add(new int[] {start, EPSILON, 0, start + 1 + i});
+				}
+				for (int i = 0; i < or.expressions().size(); i++) {
+					addStep(start + 1 + i, or.expressions().get(i), end);
+				}
+			}
+			case ZeroOrOne zoo -> {
+				addStep(start, zoo.inner(), start + 1);
+				transitions.add(new int[] {start, EPSILON, 0, start + 1});
+			}
+			case ZeroOrMore zom -> {
+				addStep(start, zom.inner(), start);
+				transitions.add(new int[] {start, EPSILON, 0, start + 1});
+			}
+			case OneOrMore oom -> {
+				addStep(start, oom.inner(), start + 2);
+				addStep(start + 2, oom.inner(), start + 2);
+				transitions.add(new int[] {start + 2, EPSILON, 0, start + 1});
+			}
+			default -> throw new IllegalArgumentException(String.format("Unknown node: '%s'", result));
+		}
+	}
+
+	/*
+	A configuration is an alternative being simulated, the state it reached and the states to return to. The
+	configurations waiting for a token make up a state of the DFA, together with the alternatives which already
+	matched: the DFA stops at the first state where a single alternative is left, or where the first alternative left
+	has matched, since looking further cannot spare trying it. States are interned, so that equal ones share their
+	transitions, which are filled in only when first taken.
+	 */
+	private void generateAutomata(final int tokenCount, final Map<String, int[]> arrays) {
+		sb.append("private static final class Prediction {\n")
+				.indent()
+				.append("private static final int TOKENS = " + tokenCount + ";\n")
+				.append("private static final int MATCH = " + MATCH + ";\n")
+				.append("private static final int CALL = " + CALL + ";\n")
+				.append("private static final int MAX_DEPTH = " + MAX_DEPTH + ";\n");
+		ParseTableSerializer.generateTableArrays(sb, arrays);
+		sb.append(
+						"private static final AtomicReferenceArray<DfaState> STARTS = new AtomicReferenceArray<>(DECISION_STATES.length);\n")
+				.append("private static final Map<DfaState, DfaState> STATES = new ConcurrentHashMap<>();\n")
+				.append("private record Frame(int returnState, Frame caller, int depth) {}\n")
+				.append("private record Configuration(int alternative, int state, Frame stack) {}\n")
+				.append("private static final class DfaState {\n")
+				.indent()
+				.append("private final Set<Configuration> pending;\n")
+				.append("private final Set<Integer> matched;\n")
+				.append("private final int left;\n")
+				.append("private final int[] alternatives;\n")
+				.append("private final AtomicReferenceArray<DfaState> next = new AtomicReferenceArray<>(TOKENS + 1);\n")
+				.append("private DfaState(final Set<Configuration> pending, final Set<Integer> matched) {\n")
+				.indent()
+				.append("this.pending = Set.copyOf(pending);\n")
+				.append("this.matched = Set.copyOf(matched);\n")
+				.append("final TreeSet<Integer> left = new TreeSet<>(matched);\n")
+				.append("for (final Configuration c : pending) {\n")
+				.indent()
+				.append("left.add(c.alternative());\n")
+				.deindent()
+				.append("}\n")
+				.append("this.left = left.size();\n")
+				.append(
+						"this.alternatives = left.size() <= 1 || matched.contains(left.first()) ? left.stream().mapToInt(x -> x).toArray() : null;\n")
+				.deindent()
+				.append("}\n")
+				.append("@Override\n")
+				.append("public boolean equals(final Object other) {\n")
+				.indent()
+				.append(
+						"return other instanceof DfaState s && pending.equals(s.pending) && matched.equals(s.matched);\n")
+				.deindent()
+				.append("}\n")
+				.append("@Override\n")
+				.append("public int hashCode() {\n")
+				.indent()
+				.append("return 31 * pending.hashCode() + matched.hashCode();\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n")
+				.append("private static DfaState intern(final DfaState state) {\n")
+				.indent()
+				.append("final DfaState existing = STATES.putIfAbsent(state, state);\n")
+				.append("return existing == null ? state : existing;\n")
+				.deindent()
+				.append("}\n")
+				.append("private static DfaState start(final int decision) {\n")
+				.indent()
+				.append("DfaState state = STARTS.get(decision);\n")
+				.append("if (state == null) {\n")
+				.indent()
+				.append("final Set<Configuration> pending = new HashSet<>();\n")
+				.append("final Set<Integer> matched = new HashSet<>();\n")
+				.append("final Set<Configuration> visited = new HashSet<>();\n")
+				.append("for (int i = 0; i < DECISION_SIZES[decision]; i++) {\n")
+				.indent()
+				.append("closure(i, DECISION_STATES[decision] + i, null, pending, matched, visited);\n")
+				.deindent()
+				.append("}\n")
+				.append("state = intern(new DfaState(pending, matched));\n")
+				.append("STARTS.set(decision, state);\n")
+				.deindent()
+				.append("}\n")
+				.append("return state;\n")
+				.deindent()
+				.append("}\n")
+				.append("private static DfaState next(final DfaState state, final int type) {\n")
+				.indent()
+				.append("DfaState next = state.next.get(type);\n")
+				.append("if (next == null) {\n")
+				.indent()
+				.append("final Set<Configuration> pending = new HashSet<>();\n")
+				.append("final Set<Integer> matched = new HashSet<>(state.matched);\n")
+				.append("final Set<Configuration> visited = new HashSet<>();\n")
+				.append("for (final Configuration c : state.pending) {\n")
+				.indent()
+				.append("for (int i = TRANSITION_STARTS[c.state()]; i < TRANSITION_STARTS[c.state() + 1]; i++) {\n")
+				.indent()
+				.append("if (TRANSITION_KINDS[i] == MATCH && TRANSITION_LABELS[i] == type) {\n")
+				.indent()
+				.append(
+						"closure(c.alternative(), TRANSITION_TARGETS[i], c.stack(), pending, matched, visited);\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n")
+				.append("next = intern(new DfaState(pending, matched));\n")
+				.append("state.next.set(type, next);\n")
+				.deindent()
+				.append("}\n")
+				.append("return next;\n")
+				.deindent()
+				.append("}\n")
+				.append(
+						"private static void closure(final int alternative, final int state, final Frame stack, final Set<Configuration> pending, final Set<Integer> matched, final Set<Configuration> visited) {\n")
+				.indent()
+				.append("final Configuration c = new Configuration(alternative, state, stack);\n")
+				.append("if (!visited.add(c)) {\n")
+				.indent()
+				.append("return;\n")
+				.deindent()
+				.append("}\n")
+				.append("if (TRANSITION_STARTS[state] == TRANSITION_STARTS[state + 1]) {\n")
+				.indent()
+				// the end of a production returns to its caller, or completes the alternative
+				.append("if (stack == null) {\n")
+				.indent()
+				.append("matched.add(alternative);\n")
+				.deindent()
+				.append("} else {\n")
+				.indent()
+				.append("closure(alternative, stack.returnState(), stack.caller(), pending, matched, visited);\n")
+				.deindent()
+				.append("}\n")
+				.append("return;\n")
+				.deindent()
+				.append("}\n")
+				.append("for (int i = TRANSITION_STARTS[state]; i < TRANSITION_STARTS[state + 1]; i++) {\n")
+				.indent()
+				.append("if (TRANSITION_KINDS[i] == MATCH) {\n")
+				.indent()
+				.append("pending.add(c);\n")
+				.deindent()
+				.append("} else if (TRANSITION_KINDS[i] == CALL) {\n")
+				.indent()
+				.append("final int depth = stack == null ? 1 : stack.depth() + 1;\n")
+				.append("if (depth > MAX_DEPTH) {\n")
+				.indent()
+				.append("matched.add(alternative);\n")
+				.deindent()
+				.append("} else {\n")
+				.indent()
+				.append(
+						"closure(alternative, TRANSITION_LABELS[i], new Frame(TRANSITION_TARGETS[i], stack, depth), pending, matched, visited);\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("} else {\n")
+				.indent()
+				.append("closure(alternative, TRANSITION_TARGETS[i], stack, pending, matched, visited);\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n")
+				.append("private Prediction() {}\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	private void generatePredict() {
+		sb.append("private int[] predict(final int decision) {\n")
+				.indent()
+				.append("Prediction.DfaState state = Prediction.start(decision);\n")
+				.append("int i = pos;\n")
+				.append("while (state.alternatives == null) {\n")
+				.indent()
+				.append("final int type = i < tokens.size() || fill(i) ? tokens.typeIndex(i) : Prediction.TOKENS;\n")
+				.append("final Prediction.DfaState next = Prediction.next(state, type);\n")
+				// the alternatives ruled out by a token would have failed on it, had they been tried
+				.append("if (next.left < state.left) {\n")
+				.indent()
+				.append("failAt(i);\n")
+				.deindent()
+				.append("}\n")
+				.append("state = next;\n")
+				.append("i++;\n")
+				.deindent()
+				.append("}\n")
+				.append("return state.alternatives;\n")
+				.deindent()
+				.append("}\n");
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.generator;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+
+import com.ledmington.automata.DFA;
+import com.ledmington.automata.State;
+
+/**
+ * The partition of the alphabet of a DFA into equivalence classes: two characters belong to the same class when every
+ * state has the same transition on both of them. Class 0 is reserved for all the characters which do not appear in
+ * any transition.
+ */
+public final class CharacterClasses {
+
+	private final char[] charToClass;
+	private final char[] representatives;
+
+	private CharacterClasses(final char[] charToClass, final char[] representatives) {
+		this.charToClass = Objects.requireNonNull(charToClass);
+		this.representatives = Objects.requireNonNull(representatives);
+	}
+
+	/**
+	 * Computes the character equivalence classes of the given DFA.
+	 *
+	 * @param dfa The DFA to be analyzed.
+	 * @param states The states of the DFA, indexed by their position in the list.
+	 * @return The character equivalence classes of the given DFA.
+	 */
+	public static CharacterClasses of(final DFA dfa, final List<State> states) {
+		final Map<State, Integer> stateIndex = new HashMap<>();
+		for (int i = 0; i < states.size(); i++) {
+			stateIndex.put(states.get(i), i);
+		}
+
+		final TreeSet<Character> alphabet = new TreeSet<>();
+		for (final State s : states) {
+			alphabet.addAll(dfa.neighbors(s).keySet());
+		}
+
+		// the "signature" of a character is the column of the transition table for that character
+		final Map<Character, int[]> signatures = new HashMap<>();
+		for (final char ch : alphabet) {
+			final int[] column = new int[states.size()];
+			for (int i = 0; i < states.size(); i++) {
+				final State dest = dfa.neighbors(states.get(i)).get(ch);
+				column[i] = dest == null ? -1 : stateIndex.get(dest);
+			}
+			signatures.put(ch, column);
+		}
+
+		final char[] charToClass = new char[alphabet.isEmpty() ? 0 : alphabet.last() + 1];
+		final Map<List<Integer>, Character> signatureToClass = new HashMap<>();
+		final StringBuilder representatives = new StringBuilder();
+		// class 0 has no representative
+		representatives.append('\0');
+		for (final char ch : alphabet) {
+			final List<Integer> key = Arrays.stream(signatures.get(ch)).boxed().toList();
+			if (!signatureToClass.containsKey(key)) {
+				signatureToClass.put(key, (char) representatives.length());
+				representatives.append(ch);
+			}
+			charToClass[ch] = signatureToClass.get(key);
+		}
+
+		return new CharacterClasses(charToClass, representatives.toString().toCharArray());
+	}
+
+	/**
+	 * Returns the number of equivalence classes, including class 0.
+	 *
+	 * @return The number of equivalence classes.
+	 */
+	public int numClasses() {
+		return representatives.length;
+	}
+
+	/**
+	 * Returns the class of the given character.
+	 *
+	 * @param ch The character to look up.
+	 * @return The class of the given character.
+	 */
+	public int classOf(final char ch) {
+		return ch < charToClass.length ? charToClass[ch] : 0;
+	}
+
+	/**
+	 * Returns a copy of the map from each character to its class. Characters outside of the returned array belong to
+	 * class 0.
+	 *
+	 * @return The map from each character to its class.
+	 */
+	public char[] charToClass() {
+		return charToClass.clone();
+	}
+
+	/**
+	 * Returns one character belonging to the given class. Any character of a class can be used in place of the others
+	 * when looking up transitions.
+	 *
+	 * @param charClass The class of the character, must not be 0.
+	 * @return One character belonging to the given class.
+	 */
+	public char representative(final int charClass) {
+		if (charClass <= 0 || charClass >= representatives.length) {
+			throw new IllegalArgumentException(String.format("Invalid character class %,d.", charClass));
+		}
+		return representatives[charClass];
+	}
+}
@@ -19,10 +19,12 @@ package com.ledmington.generator;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -35,6 +37,7 @@ import com.ledmington.automata.GrammarToEpsilonNFA;
 import com.ledmington.automata.NFA;
 import com.ledmington.automata.NFAToDFA;
 import com.ledmington.automata.State;
+import com.ledmington.automata.StateFactory;
 import com.ledmington.ebnf.Production;
 import com.ledmington.ebnf.Utils;
 
@@ -44,6 +47,20 @@ public final class DFASerializer {
 
 	private DFASerializer() {}
 
+	/**
+	 * Maps each state to its position in the given list.
+	 *
+	 * @param states The list of states.
+	 * @return A map from each state to its index.
+	 */
+	static Map<State, Integer> indexStates(final List<State> states) {
+		final Map<State, Integer> stateIndex = new HashMap<>();
+		for (int i = 0; i < states.size(); i++) {
+			stateIndex.put(states.get(i), i);
+		}
+		return stateIndex;
+	}
+
 	/**
 	 * Generates code of a DFA to match a list of tokens.
 	 *
@@ -53,37 +70,23 @@ public final class DFASerializer {
 	 */
 	public static void generateLexer(
 			final IndentedStringBuilder sb, final String lexerName, final List<Production> lexerProductions) {
-		final GrammarToEpsilonNFA g2enfa = new GrammarToEpsilonNFA();
-		final NFA epsilonNFA = g2enfa.convert(lexerProductions);
-		AutomataUtils.assertEpsilonNFAValid(epsilonNFA);
-		final EpsilonNFAToNFA enfa2nfa = new EpsilonNFAToNFA();
-		final NFA nfa = enfa2nfa.convert(epsilonNFA);
-		AutomataUtils.assertNFAValid(nfa);
-		final NFAToDFA nfa2dfa = new NFAToDFA();
-		final DFA dfa = nfa2dfa.convert(nfa);
-		AutomataUtils.assertDFAValid(dfa);
-		final DFAMinimizer DFAmin = new DFAMinimizer();
-		final DFA minimizedDFA = DFAmin.minimize(dfa);
-		AutomataUtils.assertDFAValid(minimizedDFA);
-
-		// re-index DFA states
-		final Map<State, Integer> stateIndex = new HashMap<>();
-		{
-			stateIndex.put(minimizedDFA.startingState(), 0);
-			int idx = 1;
-			for (final State s : minimizedDFA.states()) {
-				if (s.equals(minimizedDFA.startingState())) {
-					continue;
-				}
-				stateIndex.put(s, idx);
-				idx++;
-			}
-		}
+		generateLexer(sb, lexerName, lexerProductions, GeneratorOptions.builder().build());
+	}
 
-		final List<State> allStates = stateIndex.entrySet().stream()
-				.sorted(Map.Entry.comparingByValue())
-				.map(Map.Entry::getKey)
-				.toList();
+	/**
+	 * Generates code of a DFA to match a list of tokens.
+	 *
+	 * @param sb THe StringBuilder to place the generated code into.
+	 * @param lexerName The name of the resulting class.
+	 * @param lexerProductions The list of token productions, sorted by priority.
+	 * @param options The options controlling the shape of the generated code.
+	 */
+	public static void generateLexer(
+			final IndentedStringBuilder sb,
+			final String lexerName,
+			final List<Production> lexerProductions,
+			final GeneratorOptions options) {
+		Objects.requireNonNull(options);
 
 		final List<String> sortedTokenTypes =
 				lexerProductions.stream().map(p -> p.start().name()).sorted().toList();
@@ -105,12 +108,70 @@ public final class DFASerializer {
 				.deindent()
 				.append("}\n")
 				.deindent()
-				.append("}\n")
-				.append("public static final class ")
+				.append("}\n");
+		generateTokenBuffer(sb);
+
+		generateLexerClass(sb, lexerName, lexerProductions, options, tokenTypeToIndex, LexerInput.CHARS);
+		if (options.utf8Lexer()) {
+			generateLexerClass(
+					sb, utf8LexerName(lexerName), lexerProductions, options, tokenTypeToIndex, LexerInput.UTF8_BYTES);
+		}
+	}
+
+	/**
+	 * Returns the name of the lexer running on UTF-8 bytes which goes with the given lexer.
+	 *
+	 * @param lexerName The name of the lexer running on characters.
+	 * @return The name of the lexer running on UTF-8 bytes.
+	 */
+	public static String utf8LexerName(final String lexerName) {
+		return lexerName + "_UTF8";
+	}
+
+	private static void generateLexerClass(
+			final IndentedStringBuilder sb,
+			final String lexerName,
+			final List<Production> lexerProductions,
+			final GeneratorOptions options,
+			final Map<String, Integer> tokenTypeToIndex,
+			final LexerInput input) {
+		final GrammarToEpsilonNFA g2enfa = new GrammarToEpsilonNFA(new StateFactory(), input.alphabet());
+		final NFA epsilonNFA = g2enfa.convert(lexerProductions);
+		AutomataUtils.assertEpsilonNFAValid(epsilonNFA);
+		final EpsilonNFAToNFA enfa2nfa = new EpsilonNFAToNFA();
+		final NFA nfa = enfa2nfa.convert(epsilonNFA);
+		AutomataUtils.assertNFAValid(nfa);
+		final NFAToDFA nfa2dfa = new NFAToDFA();
+		final DFA dfa = nfa2dfa.convert(nfa);
+		AutomataUtils.assertDFAValid(dfa);
+		final DFAMinimizer DFAmin = new DFAMinimizer();
+		final DFA minimizedDFA = DFAmin.minimize(dfa);
+		AutomataUtils.assertDFAValid(minimizedDFA);
+
+		// re-index DFA states
+		final List<State> allStates = new ArrayList<>();
+		allStates.add(minimizedDFA.startingState());
+		for (final State s : minimizedDFA.states()) {
+			if (!s.equals(minimizedDFA.startingState())) {
+				allStates.add(s);
+			}
+		}
+
+		sb.append("public static final class ")
 				.append(lexerName)
 				.append(" {\n")
 				.indent();
 
+		if (options.transitionEncoding() == TransitionEncoding.DIRECT
+				&& DirectCodedLexer.estimateBytecodeSize(minimizedDFA, allStates)
+						<= DirectCodedLexer.HUGE_METHOD_LIMIT) {
+			sb.append("public ").append(lexerName).append("() {}\n");
+			generateEntryPoints(sb, input);
+			DirectCodedLexer.generateNextToken(sb, minimizedDFA, allStates, tokenTypeToIndex, input);
+			sb.deindent().append("}\n");
+			return;
+		}
+
 		final boolean[] isAccepting = new boolean[allStates.size()];
 		for (int i = 0; i < allStates.size(); i++) {
 			final State s = allStates.get(i);
@@ -129,46 +190,18 @@ public final class DFASerializer {
 			tokensToMatch[i] = s.isAccepting() ? tokenTypeToIndex.get(((AcceptingState) s).tokenName()) : -1;
 		}
 
-		final int allTransitions = minimizedDFA.states().stream()
-				.mapToInt(s -> minimizedDFA.neighbors(s).size())
-				.sum();
-		final int[] offsets = new int[allStates.size() + 1];
-		offsets[0] = 0;
-		final char[] symbols = new char[allTransitions];
-		final int[] destinations = new int[allTransitions];
-		int idx = 0;
-		for (int i = 1; i < allStates.size() + 1; i++) {
-			final State s = allStates.get(i - 1);
-			offsets[i] = offsets[i - 1] + minimizedDFA.neighbors(s).size();
-			for (final Map.Entry<Character, State> e : minimizedDFA.neighbors(s).entrySet().stream()
-					.sorted(Map.Entry.comparingByKey())
-					.toList()) {
-				symbols[idx] = e.getKey();
-				destinations[idx] = stateIndex.get(e.getValue());
-				idx++;
-			}
-		}
-
-		sb.append("private final boolean[] isAccepting;\n")
-				.append("private final boolean[] isSkippable;\n")
-				.append("private final TokenType[] tokensToMatch;\n")
-				.append("private final int[] offsets;\n")
-				.append("private final char[] symbols;\n")
-				.append("private final int[] destinations;\n");
+		final TransitionTable table = TransitionTable.of(
+				options.transitionEncoding(), minimizedDFA, allStates, options.tableByteBudget());
 
 		final int totalBytes = 4
-				+ 4
 				+ isAccepting.length
 				+ isSkippable.length
 				+ Integer.BYTES * tokensToMatch.length
-				+ Integer.BYTES * offsets.length
-				+ Character.BYTES * symbols.length
-				+ Integer.BYTES * destinations.length;
+				+ table.byteSize();
 		final ByteBuffer bb = ByteBuffer.allocate(totalBytes).order(ByteOrder.BIG_ENDIAN);
 
 		final int numStates = tokensToMatch.length;
 		bb.putInt(numStates);
-		bb.putInt(symbols.length);
 		for (final boolean acc : isAccepting) {
 			bb.put(acc ? (byte) 0xff : (byte) 0x00);
 		}
@@ -178,185 +211,558 @@ public final class DFASerializer {
 		for (final int tokenIndex : tokensToMatch) {
 			bb.putInt(tokenIndex);
 		}
-		for (final int off : offsets) {
-			bb.putInt(off);
-		}
-		for (final char sym : symbols) {
-			bb.putChar(sym);
-		}
-		for (final int dest : destinations) {
-			bb.putInt(dest);
-		}
+		table.writeTo(bb);
 
 		final String encoded = Utils.getEscapedString(Base64.getEncoder().encodeToString(bb.array()));
 
 		/*
-		java has an hard-coded limit of 65'534 characters for "constant strings" (string literals), so if the string
-		we need to write is longer, we split it into chunks and concatenate them in such a way that the (dumb)
-		compiler cannot inline (declaring separate non-final variables and concatenate them into another non-final
-		variable)
+		The decoded tables never change, so they are decoded once per class instead of once per lexer instance. The
+		holder class is initialized lazily by the JVM on first access, which also makes the initialization thread-safe
+		without any explicit synchronization.
 		 */
-		final int maxChunkLength = 65_534;
-
-		sb.append("public ").append(lexerName).append("() {\n").indent();
+		sb.append("private static final class Tables {\n")
+				.indent()
+				.append("private static final boolean[] IS_ACCEPTING;\n")
+				.append("private static final boolean[] IS_SKIPPABLE;\n")
+				.append("private static final int[] TOKENS_TO_MATCH;\n");
+		table.generateFields(sb);
+		sb.append("static {\n").indent();
 
-		if (encoded.length() < maxChunkLength) {
-			sb.append("final String encoded = \"").append(encoded).append("\";\n");
-		} else {
-			// Split encoded string into chunks
-			sb.append("String encoded;\n").append("{\n").indent();
-			final int n = encoded.length();
-			int chunkIndex = 0;
-			int start = 0;
-			for (; start + maxChunkLength < n; start += maxChunkLength, chunkIndex++) {
-				final String chunkName = "chunk_" + chunkIndex;
-				sb.append("String ")
-						.append(chunkName)
-						.append(" = \"")
-						.append(encoded.substring(start, start + maxChunkLength))
-						.append("\";\n");
-			}
-			// encode last chunk "manually"
-			final String lastChunkName = "chunk_" + (chunkIndex++);
-			sb.append("String ")
-					.append(lastChunkName)
-					.append(" = \"")
-					.append(encoded.substring(start))
-					.append("\";\n")
-					.append("encoded = ");
-			for (int i = 0; i < chunkIndex; i++) {
-				final String chunkName = "chunk_" + i;
-				sb.append(chunkName);
-				if (i < chunkIndex - 1) {
-					sb.append(" + ");
-				}
-			}
-			sb.append(";\n").deindent().append("}\n");
-		}
+		generateEncodedString(sb, encoded);
 
 		sb.append(
 						"final ByteBuffer bb = ByteBuffer.wrap(Base64.getDecoder().decode(encoded)).order(ByteOrder.BIG_ENDIAN);\n")
 				.append("final int num_states = bb.getInt();\n")
-				.append("final int num_destinations = bb.getInt();\n")
-				.append("this.isAccepting = new boolean[num_states];\n")
-				.append("this.isSkippable = new boolean[num_states];\n")
-				.append("this.tokensToMatch = new TokenType[num_states];\n")
-				.append("this.offsets = new int[num_states + 1];\n")
-				.append("this.symbols = new char[num_destinations];\n")
-				.append("this.destinations = new int[num_destinations];\n")
+				.append("IS_ACCEPTING = new boolean[num_states];\n")
+				.append("IS_SKIPPABLE = new boolean[num_states];\n")
+				.append("TOKENS_TO_MATCH = new int[num_states];\n")
 				.append("for (int i = 0; i < num_states; i++) {\n")
 				.indent()
-				.append("this.isAccepting[i] = bb.get() == (byte) 0xff;\n")
+				.append("IS_ACCEPTING[i] = bb.get() == (byte) 0xff;\n")
 				.deindent()
 				.append("}\n")
 				.append("for (int i = 0; i < num_states; i++) {\n")
 				.indent()
-				.append("this.isSkippable[i] = bb.get() == (byte) 0xff;\n")
+				.append("IS_SKIPPABLE[i] = bb.get() == (byte) 0xff;\n")
 				.deindent()
 				.append("}\n")
-				.append("final TokenType[] tokenTypes = TokenType.values();\n")
 				.append("for (int i = 0; i < num_states; i++) {\n")
 				.indent()
-				.append("final int x = bb.getInt();\n")
-				.append("this.tokensToMatch[i] = x == -1 ? null : tokenTypes[x];\n")
+				.append("TOKENS_TO_MATCH[i] = bb.getInt();\n")
+				.deindent()
+				.append("}\n");
+		table.generateDecoding(sb);
+		sb.deindent()
+				.append("}\n")
+				.append("private Tables() {}\n")
 				.deindent()
 				.append("}\n")
-				.append("for (int i = 0; i < num_states + 1; i++) {\n")
+				.append("public ")
+				.append(lexerName)
+				.append("() {}\n");
+		table.generateTransition(sb);
+		generateEntryPoints(sb, input);
+		final String pt = input.positionType();
+		sb.append("public " + pt + " nextToken(final " + input.type() + " input, final " + pt
+						+ " from, final TokenBuffer tokens) {\n")
+				.indent()
+				.append("final " + pt + " length = " + input.length() + ";\n")
+				.append(pt + " start = from;\n")
+				.append("while (start < length) {\n")
+				.indent()
+				.append(pt + " pos = start;\n")
+				.append("int currentState = 0;\n")
+				.append("int accepted = Tables.IS_ACCEPTING[0] ? 0 : -1;\n")
+				.append(pt + " acceptedPos = start;\n")
+				.append("while (pos < length) {\n")
+				.indent()
+				.append("final int nextState = transition(currentState, " + input.symbolAt() + ");\n")
+				.append("if (nextState == -1 || tokens.isDead(nextState, pos + 1)) {\n")
 				.indent()
-				.append("this.offsets[i] = bb.getInt();\n")
+				.append("break;\n")
 				.deindent()
 				.append("}\n")
-				.append("for (int i = 0; i < num_destinations; i++) {\n")
+				.append("currentState = nextState;\n")
+				.append("pos++;\n")
+				.append("if (Tables.IS_ACCEPTING[currentState]) {\n")
+				.indent()
+				.append("accepted = currentState;\n")
+				.append("acceptedPos = pos;\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n")
+				.append("tokens.reached(pos);\n")
+				.append("if (accepted == -1) {\n")
+				.indent()
+				.append("tokens.fail(pos);\n")
+				.append("return length;\n")
+				.deindent()
+				.append("}\n");
+		generateDeadMarking(sb, input, "Tables.IS_ACCEPTING.length", "currentState");
+		sb.append("if (acceptedPos == start) {\n")
 				.indent()
-				.append("this.symbols[i] = bb.getChar();\n")
+				.append("tokens.fail(start);\n")
+				.append("return length;\n")
 				.deindent()
 				.append("}\n")
-				.append("for (int i = 0; i < num_destinations; i++) {\n")
+				.append("if (!Tables.IS_SKIPPABLE[accepted]) {\n")
 				.indent()
-				.append("this.destinations[i] = bb.getInt();\n")
+				.append("tokens.add(Tables.TOKENS_TO_MATCH[accepted], start, acceptedPos);\n")
+				.append("return acceptedPos;\n")
 				.deindent()
 				.append("}\n")
+				.append("start = acceptedPos;\n")
 				.deindent()
 				.append("}\n")
-				// TODO: this can be optimized to a binary search
-				.append("private int transition(final int currentState, final char symbol) {\n")
+				.append("return start;\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	/*
+	Rolling back to the last accepting position alone would make some token sets quadratic: with the tokens "a" and
+	"a*b", an input of n "a"s scans to the end of the input for each of them. Each (state, position) pair visited after
+	the last accepting one can never lead to an accepting state, so it is remembered in the TokenBuffer and any later
+	scan stops as soon as it would enter it. Each pair is marked at most once, which keeps tokenization linear in the
+	size of the input. The pairs are found again by walking the DFA from the last accepting position, since it is
+	deterministic. A scan stopping at the end of a partial input, like the window of the streaming lexer, marks nothing,
+	since the characters which follow may still lead to an accepting state.
+	 */
+	static void generateDeadMarking(
+			final IndentedStringBuilder sb,
+			final LexerInput input,
+			final String numStates,
+			final String stateVariable) {
+		sb.append("if (pos > acceptedPos && (pos < length || !tokens.isPartial())) {\n")
 				.indent()
-				.append("final int start = this.offsets[currentState];\n")
-				.append("final int end = this.offsets[currentState + 1];\n")
-				.append("for (int i = start; i < end; i++) {\n")
+				.append("tokens.prepareDead(" + numStates + ", acceptedPos, pos);\n")
+				.append("final " + input.positionType() + " stop = pos;\n")
+				.append("pos = acceptedPos;\n")
+				.append(stateVariable + " = accepted;\n")
+				.append("while (pos < stop) {\n")
 				.indent()
-				.append("if (this.symbols[i] == symbol) {\n")
+				.append(stateVariable + " = transition(" + stateVariable + ", " + input.symbolAt() + ");\n")
+				.append("pos++;\n")
+				.append("tokens.markDead(" + stateVariable + ", pos);\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	/*
+	Both lexer flavours produce one token at a time with nextToken, so that a parser can pull tokens on demand. The
+	whole-input and streaming entry points are built on top of it.
+	 */
+	private static void generateEntryPoints(final IndentedStringBuilder sb, final LexerInput input) {
+		switch (input) {
+			case CHARS -> {
+				generateStringTokenize(sb);
+				generateStreamingTokenize(sb);
+			}
+			case UTF8_BYTES -> generateBytesTokenize(sb);
+		}
+	}
+
+	private static void generateBytesTokenize(final IndentedStringBuilder sb) {
+		sb.append("public List<Token> tokenize(final byte[] input) {\n")
+				.indent()
+				.append("return tokenize(MemorySegment.ofArray(input));\n")
+				.deindent()
+				.append("}\n")
+				.append("public List<Token> tokenize(final ByteBuffer input) {\n")
 				.indent()
-				.append("return this.destinations[i];\n")
+				.append("return tokenize(MemorySegment.ofBuffer(input));\n")
 				.deindent()
 				.append("}\n")
+				.append("public List<Token> tokenize(final MemorySegment input) {\n")
+				.indent()
+				.append("final TokenBuffer tokens = new TokenBuffer();\n")
+				.append("tokenize(input, tokens);\n")
+				.append("return tokens.toList();\n")
 				.deindent()
 				.append("}\n")
-				.append("return -1;\n")
+				.append("public void tokenize(final MemorySegment input, final TokenBuffer tokens) {\n")
+				.indent()
+				.append("tokens.reset(input);\n")
+				.append("long pos = 0;\n")
+				.append("while (pos < input.byteSize()) {\n")
+				.indent()
+				.append("pos = nextToken(input, pos, tokens);\n")
+				.deindent()
+				.append("}\n");
+		generateErrorCheck(sb);
+		sb.deindent().append("}\n");
+	}
+
+	private static void generateStringTokenize(final IndentedStringBuilder sb) {
+		sb.append("public List<Token> tokenize(final String input) {\n")
+				.indent()
+				.append("final TokenBuffer tokens = new TokenBuffer();\n")
+				.append("tokenize(input, tokens);\n")
+				.append("return tokens.toList();\n")
 				.deindent()
 				.append("}\n")
-				.append("public List<Token> tokenize(final String input) {\n")
+				.append("public void tokenize(final String input, final TokenBuffer tokens) {\n")
 				.indent()
-				.append("final char[] v = input.toCharArray();\n")
+				.append("tokens.reset(input);\n")
 				.append("int pos = 0;\n")
-				.append("int lastTokenMatchStart = 0;\n")
-				.append("int lastTokenMatchEnd = 0;\n")
-				.append("final List<Token> tokens = new ArrayList<>();\n")
-				.append("int currentState = 0;\n")
-				.append("while (pos < v.length) {\n")
+				.append("while (pos < input.length()) {\n")
+				.indent()
+				.append("pos = nextToken(input, pos, tokens);\n")
+				.deindent()
+				.append("}\n");
+		generateErrorCheck(sb);
+		sb.deindent().append("}\n");
+	}
+
+	/*
+	A lexical error only marks the TokenBuffer and ends the input, so that a parser rejecting malformed input pays for
+	neither an exception nor a formatted message. Whoever tokenizes on its own gets the exception instead.
+	 */
+	private static void generateErrorCheck(final IndentedStringBuilder sb) {
+		sb.append("if (tokens.errorPosition() != -1L) {\n")
+				.indent()
+				.append(
+						"throw new IllegalArgumentException(String.format(\"Lexical error at index %,d.\", tokens.errorPosition()));\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	/*
+	The streaming lexer keeps a window over the input. A match whose scan reaches the end of the window may still grow (and
+	a lexical error may still turn into a valid token), so it is thrown away and scanned again after moving it to the front
+	of the window and reading more characters. The window grows only when a token together with the lookahead needed to
+	reject longer matches does not fit, so memory depends on the longest token plus its failed lookahead rather than on the
+	size of the input. When that lookahead is unbounded, like with the tokens "a" and "a+b" over a run of "a"s, the window
+	holds the whole run: no token can be emitted before knowing whether a "b" follows.
+	 */
+	private static void generateStreamingTokenize(final IndentedStringBuilder sb) {
+		sb.append("public void tokenize(final ReadableByteChannel channel, final Charset charset, final Consumer<Token> consumer) throws IOException {\n")
+				.indent()
+				.append("tokenize(Channels.newReader(channel, charset.newDecoder(), -1), consumer);\n")
+				.deindent()
+				.append("}\n")
+				.append("public void tokenize(final Reader reader, final Consumer<Token> consumer) throws IOException {\n")
 				.indent()
-				.append("if (isAccepting[currentState]) {\n")
+				.append("final TokenBuffer tokens = new TokenBuffer();\n")
+				.append("char[] buffer = new char[8192];\n")
+				.append("CharBuffer window = CharBuffer.wrap(buffer, 0, 0);\n")
+				.append("int limit = 0;\n")
+				.append("int pos = 0;\n")
+				.append("boolean eof = false;\n")
+				.append("tokens.reset(\"\");\n")
+				.append("tokens.partial(true);\n")
+				.append("while (true) {\n")
 				.indent()
-				.append("lastTokenMatchEnd = pos;\n")
+				.append("tokens.clearTokens();\n")
+				.append("final int end = pos < limit ? nextToken(window, pos, tokens) : pos;\n")
+				.append("if (pos < limit && (eof || tokens.reached() < limit)) {\n")
+				.indent();
+		generateErrorCheck(sb);
+		sb.append("if (tokens.size() > 0) {\n")
+				.indent()
+				.append("final int start = (int) tokens.start(0);\n")
+				.append("consumer.accept(new Token(tokens.type(0), new String(buffer, start, (int) tokens.end(0) - start)));\n")
 				.deindent()
 				.append("}\n")
-				.append("final char ch = v[pos];\n")
-				.append("final int nextState = transition(currentState, ch);\n")
-				.append("if (nextState != -1) {\n")
+				.append("pos = end;\n")
+				.append("continue;\n")
+				.deindent()
+				.append("}\n")
+				.append("if (eof) {\n")
 				.indent()
-				.append("currentState = nextState;\n")
-				.append("pos++;\n")
+				.append("return;\n")
+				.deindent()
+				.append("}\n")
+				.append("System.arraycopy(buffer, pos, buffer, 0, limit - pos);\n")
+				.append("limit -= pos;\n")
+				.append("tokens.shiftDead(pos);\n")
+				.append("pos = 0;\n")
+				.append("if (limit == buffer.length) {\n")
+				.indent()
+				.append("buffer = Arrays.copyOf(buffer, 2 * buffer.length);\n")
+				.deindent()
+				.append("}\n")
+				.append("final int n = reader.read(buffer, limit, buffer.length - limit);\n")
+				.append("if (n == -1) {\n")
+				.indent()
+				.append("eof = true;\n")
+				.append("tokens.partial(false);\n")
 				.deindent()
 				.append("} else {\n")
 				.indent()
-				.append("if (isAccepting[currentState]) {\n")
+				.append("limit += n;\n")
+				.deindent()
+				.append("}\n")
+				.append("window = CharBuffer.wrap(buffer, 0, limit);\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	/*
+	The tokens are stored as parallel arrays of primitives pointing into the original input, so that lexing allocates
+	nothing per token and the content of a token becomes a String only when somebody asks for it. Tokens are indexed
+	from the start of the input, but only a window of them is kept: a parser pulling tokens lazily can discard the
+	ones it will never backtrack to.
+	 */
+	private static void generateTokenBuffer(final IndentedStringBuilder sb) {
+		sb.append("public static final class TokenBuffer {\n")
+				.indent()
+				.append("private static final TokenType[] TOKEN_TYPES = TokenType.values();\n")
+				.append("private String input = \"\";\n")
+				.append("private MemorySegment bytes = null;\n")
+				.append("private int base = 0;\n")
+				.append("private int count = 0;\n")
+				.append("private int[] types = new int[16];\n")
+				.append("private long[] starts = new long[16];\n")
+				.append("private long[] ends = new long[16];\n")
+				.append("private Object[] nodes = new Object[16];\n")
+				.append("private long reached = 0L;\n")
+				.append("private long errorPosition = -1L;\n")
+				.append("private long[] dead = null;\n")
+				.append("private int deadRowWords = 0;\n")
+				.append("private long deadBase = 0L;\n")
+				.append("private boolean partial = false;\n")
+				.append("public TokenBuffer() {}\n")
+				.append("public void reset(final String input) {\n")
 				.indent()
-				.append("final int length = lastTokenMatchEnd - lastTokenMatchStart;\n")
-				.append("if (length == 0) {\n")
+				.append("this.input = Objects.requireNonNull(input);\n")
+				.append("this.bytes = null;\n")
+				.append("clearTokens();\n")
+				.append("clearDead();\n")
+				.deindent()
+				.append("}\n")
+				.append("public void reset(final MemorySegment bytes) {\n")
 				.indent()
-				.append(
-						"throw new IllegalArgumentException(String.format(\"No token emitted for empty match at index %,d.\", pos));\n")
+				.append("this.input = null;\n")
+				.append("this.bytes = Objects.requireNonNull(bytes);\n")
+				.append("clearTokens();\n")
+				.append("clearDead();\n")
+				.deindent()
+				.append("}\n")
+				.append("public void add(final int type, final long start, final long end) {\n")
+				.indent()
+				.append("if (count == types.length) {\n")
+				.indent()
+				.append("final int newLength = 2 * count;\n")
+				.append("types = Arrays.copyOf(types, newLength);\n")
+				.append("starts = Arrays.copyOf(starts, newLength);\n")
+				.append("ends = Arrays.copyOf(ends, newLength);\n")
+				.append("nodes = Arrays.copyOf(nodes, newLength);\n")
+				.deindent()
+				.append("}\n")
+				.append("types[count] = type;\n")
+				.append("starts[count] = start;\n")
+				.append("ends[count] = end;\n")
+				.append("nodes[count] = null;\n")
+				.append("count++;\n")
+				.deindent()
+				.append("}\n")
+				// unlike reset, this keeps the failed scans, which still hold for the rest of the same input
+				.append("public void clearTokens() {\n")
+				.indent()
+				// cached nodes must not keep the previous input alive
+				.append("Arrays.fill(nodes, 0, count, null);\n")
+				.append("this.base = 0;\n")
+				.append("this.count = 0;\n")
+				.append("this.reached = 0L;\n")
+				.append("this.errorPosition = -1L;\n")
+				.deindent()
+				.append("}\n")
+				.append("private void clearDead() {\n")
+				.indent()
+				.append("this.dead = null;\n")
+				.append("this.deadBase = 0L;\n")
+				.append("this.partial = false;\n")
+				.deindent()
+				.append("}\n")
+				// a partial input may be followed by more characters, so a scan reaching its end proves nothing
+				.append("public void partial(final boolean partial) {\n")
+				.indent()
+				.append("this.partial = partial;\n")
+				.deindent()
+				.append("}\n")
+				.append("public boolean isPartial() {\n")
+				.indent()
+				.append("return partial;\n")
+				.deindent()
+				.append("}\n")
+				// when the input is moved back by some characters, the failed scans move together with it
+				.append("public void shiftDead(final long offset) {\n")
+				.indent()
+				.append("deadBase -= offset;\n")
+				.deindent()
+				.append("}\n")
+				.append("public void reached(final long pos) {\n")
+				.indent()
+				.append("if (pos > reached) {\n")
+				.indent()
+				.append("reached = pos;\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n")
+				.append("public long reached() {\n")
+				.indent()
+				.append("return reached;\n")
+				.deindent()
+				.append("}\n")
+				.append("public void fail(final long pos) {\n")
+				.indent()
+				.append("errorPosition = pos;\n")
+				.deindent()
+				.append("}\n")
+				.append("public long errorPosition() {\n")
+				.indent()
+				.append("return errorPosition;\n")
 				.deindent()
 				.append("}\n")
-				.append("if (!isSkippable[currentState]) {\n")
+				.append("public boolean isDead(final int state, final long pos) {\n")
+				.indent()
+				.append("if (dead == null) {\n")
 				.indent()
-				.append("final String match = String.copyValueOf(v, lastTokenMatchStart, length);\n")
-				.append("tokens.add(new Token(tokensToMatch[currentState], match));\n")
+				.append("return false;\n")
 				.deindent()
 				.append("}\n")
-				.append("lastTokenMatchStart = pos;\n")
-				.append("lastTokenMatchEnd = -1;\n")
-				.append("currentState = 0;\n")
+				.append("final long word = (pos - deadBase) * deadRowWords + (state >>> 6);\n")
+				.append("return word >= 0 && word < dead.length && (dead[(int) word] & (1L << state)) != 0L;\n")
+				.deindent()
+				.append("}\n")
+				.append("public void markDead(final int state, final long pos) {\n")
+				.indent()
+				.append("dead[(int) ((pos - deadBase) * deadRowWords + (state >>> 6))] |= 1L << state;\n")
+				.deindent()
+				.append("}\n")
+				// no scan goes back before the start of the current token, so older rows make room for the new ones
+				.append("public void prepareDead(final int numStates, final long from, final long to) {\n")
+				.indent()
+				.append("final int rowWords = (numStates + 63) >>> 6;\n")
+				.append("if (dead == null || rowWords != deadRowWords) {\n")
+				.indent()
+				.append("dead = new long[64 * rowWords];\n")
+				.append("deadRowWords = rowWords;\n")
+				.append("deadBase = from;\n")
+				.deindent()
+				.append("}\n")
+				.append("final long rows = dead.length / deadRowWords;\n")
+				.append("if (to - deadBase < rows) {\n")
+				.indent()
+				.append("return;\n")
+				.deindent()
+				.append("}\n")
+				.append("if (from - deadBase >= rows) {\n")
+				.indent()
+				.append("Arrays.fill(dead, 0L);\n")
 				.deindent()
 				.append("} else {\n")
 				.indent()
-				.append("throw new IllegalArgumentException(String.format(\"Lexical error at index %,d.\", pos));\n")
+				.append("final int dropped = (int) (from - deadBase) * deadRowWords;\n")
+				.append("System.arraycopy(dead, dropped, dead, 0, dead.length - dropped);\n")
+				.append("Arrays.fill(dead, dead.length - dropped, dead.length, 0L);\n")
+				.deindent()
+				.append("}\n")
+				.append("deadBase = from;\n")
+				// growing whenever less than half of the rows are free keeps the copies amortized O(1)
+				.append("final long needed = to - from + 1;\n")
+				.append("if (2 * needed > rows) {\n")
+				.indent()
+				.append("dead = Arrays.copyOf(dead, (int) (2 * needed * deadRowWords));\n")
 				.deindent()
 				.append("}\n")
 				.deindent()
 				.append("}\n")
+				.append("public boolean isFull() {\n")
+				.indent()
+				.append("return count == types.length;\n")
+				.deindent()
+				.append("}\n")
+				// discarding only when at least half of the window is useless keeps the copies amortized O(1)
+				.append("public void discardBefore(final int index) {\n")
+				.indent()
+				.append("final int n = index - base;\n")
+				.append("if (2 * n >= count) {\n")
+				.indent()
+				.append("System.arraycopy(types, n, types, 0, count - n);\n")
+				.append("System.arraycopy(starts, n, starts, 0, count - n);\n")
+				.append("System.arraycopy(ends, n, ends, 0, count - n);\n")
+				.append("System.arraycopy(nodes, n, nodes, 0, count - n);\n")
+				.append("Arrays.fill(nodes, count - n, count, null);\n")
+				.append("count -= n;\n")
+				.append("base = index;\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n")
+				.append("public int size() {\n")
+				.indent()
+				.append("return base + count;\n")
+				.deindent()
+				.append("}\n")
+				.append("public String input() {\n")
+				.indent()
+				.append("return input;\n")
+				.deindent()
+				.append("}\n")
+				.append("public MemorySegment bytes() {\n")
+				.indent()
+				.append("return bytes;\n")
+				.deindent()
+				.append("}\n")
+				.append("public int typeIndex(final int i) {\n")
+				.indent()
+				.append("return types[i - base];\n")
+				.deindent()
+				.append("}\n")
+				.append("public TokenType type(final int i) {\n")
+				.indent()
+				.append("return TOKEN_TYPES[types[i - base]];\n")
+				.deindent()
+				.append("}\n")
+				.append("public long start(final int i) {\n")
+				.indent()
+				.append("return starts[i - base];\n")
 				.deindent()
 				.append("}\n")
-				.append("if (isAccepting[currentState]) {\n")
+				.append("public long end(final int i) {\n")
 				.indent()
-				.append("lastTokenMatchEnd = pos;\n")
+				.append("return ends[i - base];\n")
 				.deindent()
 				.append("}\n")
-				.append("final int length = lastTokenMatchEnd - lastTokenMatchStart;\n")
-				.append("if (isAccepting[currentState] && length > 0 && !isSkippable[currentState]) {\n")
+				// whoever builds an object out of a token (like the parser's terminals) can keep it here to reuse it
+				.append("public Object node(final int i) {\n")
+				.indent()
+				.append("return nodes[i - base];\n")
+				.deindent()
+				.append("}\n")
+				.append("public void node(final int i, final Object node) {\n")
+				.indent()
+				.append("nodes[i - base] = node;\n")
+				.deindent()
+				.append("}\n")
+				.append("public String content(final int i) {\n")
+				.indent()
+				.append("final long start = starts[i - base];\n")
+				.append("final long end = ends[i - base];\n")
+				.append("if (input != null) {\n")
 				.indent()
-				.append("final String match = String.copyValueOf(v, lastTokenMatchStart, length);\n")
-				.append("tokens.add(new Token(tokensToMatch[currentState], match));\n")
+				.append("return input.substring((int) start, (int) end);\n")
+				.deindent()
+				.append("}\n")
+				.append("return new String(bytes.asSlice(start, end - start).toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);\n")
+				.deindent()
+				.append("}\n")
+				.append("public List<Token> toList() {\n")
+				.indent()
+				.append("final List<Token> tokens = new ArrayList<>(count);\n")
+				.append("for (int i = base; i < base + count; i++) {\n")
+				.indent()
+				.append("tokens.add(new Token(type(i), content(i)));\n")
 				.deindent()
 				.append("}\n")
 				.append("return tokens;\n")
@@ -365,4 +771,55 @@ public final class DFASerializer {
 				.deindent()
 				.append("}\n");
 	}
+
+	/**
+	 * Declares a local variable named "encoded" holding the given string, even when it is longer than the maximum
+	 * length of a string literal.
+	 *
+	 * @param sb The StringBuilder to use.
+	 * @param encoded The string to be declared.
+	 */
+	static void generateEncodedString(final IndentedStringBuilder sb, final String encoded) {
+		/*
+		java has an hard-coded limit of 65'534 characters for "constant strings" (string literals), so if the string
+		we need to write is longer, we split it into chunks and concatenate them in such a way that the (dumb)
+		compiler cannot inline (declaring separate non-final variables and concatenate them into another non-final
+		variable)
+		 */
+		final int maxChunkLength = 65_534;
+
+		if (encoded.length() < maxChunkLength) {
+			sb.append("final String encoded = \"").append(encoded).append("\";\n");
+		} else {
+			// Split encoded string into chunks
+			sb.append("String encoded;\n").append("{\n").indent();
+			final int n = encoded.length();
+			int chunkIndex = 0;
+			int start = 0;
+			for (; start + maxChunkLength < n; start += maxChunkLength, chunkIndex++) {
+				final String chunkName = "chunk_" + chunkIndex;
+				sb.append("String ")
+						.append(chunkName)
+						.append(" = \"")
+						.append(encoded.substring(start, start + maxChunkLength))
+						.append("\";\n");
+			}
+			// encode last chunk "manually"
+			final String lastChunkName = "chunk_" + (chunkIndex++);
+			sb.append("String ")
+					.append(lastChunkName)
+					.append(" = \"")
+					.append(encoded.substring(start))
+					.append("\";\n")
+					.append("encoded = ");
+			for (int i = 0; i < chunkIndex; i++) {
+				final String chunkName = "chunk_" + i;
+				sb.append(chunkName);
+				if (i < chunkIndex - 1) {
+					sb.append(" + ");
+				}
+			}
+			sb.append(";\n").deindent().append("}\n");
+		}
+	}
 }
@@ -0,0 +1,257 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.generator;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.ledmington.automata.AcceptingState;
+import com.ledmington.automata.DFA;
+import com.ledmington.automata.State;
+import com.ledmington.ebnf.Production;
+import com.ledmington.ebnf.Utils;
+
+/**
+ * Generates a lexer where each DFA state is turned into straight-line code: a {@code switch} on the current character
+ * inside a loop over a state variable, with the accept and skip decisions inlined. Compared to a table interpreter,
+ * this lets the JIT see each transition as a separate branch and constant-fold the token types.
+ */
+final class DirectCodedLexer {
+
+	/**
+	 * HotSpot does not compile methods whose bytecode is larger than this (see {@code -XX:HugeMethodLimit}), so a
+	 * direct-coded lexer above this size would be slower than the tables it is supposed to replace.
+	 */
+	static final int HUGE_METHOD_LIMIT = 8000;
+
+	// rough bytecode costs used to estimate the size of the generated tokenize method
+	private static final int FIXED_BYTES = 200;
+	private static final int BYTES_PER_STATE = 40;
+	private static final int BYTES_PER_LABEL = 8;
+	private static final int BYTES_PER_DESTINATION = 12;
+
+	private DirectCodedLexer() {}
+
+	/**
+	 * Estimates the bytecode size of the direct-coded tokenize method for the given DFA.
+	 *
+	 * @param dfa The DFA to be converted.
+	 * @param states The states of the DFA, indexed by their position in the list.
+	 * @return An estimate of the size in bytes of the generated method.
+	 */
+	static int estimateBytecodeSize(final DFA dfa, final List<State> states) {
+		int size = FIXED_BYTES;
+		for (final State s : states) {
+			final Map<Character, State> neighbors = dfa.neighbors(s);
+			size += BYTES_PER_STATE
+					+ BYTES_PER_LABEL * neighbors.size()
+					+ BYTES_PER_DESTINATION * new HashSet<>(neighbors.values()).size();
+		}
+		return size;
+	}
+
+	/**
+	 * Generates the method which adds the longest next token to a TokenBuffer, together with the transition function it
+	 * uses to roll back. The enclosing class must have already been opened.
+	 *
+	 * @param sb The StringBuilder to place the generated code into.
+	 * @param dfa The DFA to be converted.
+	 * @param states The states of the DFA, indexed by their position in the list. The first one is the starting state.
+	 * @param tokenTypeToIndex The index of each token type inside the TokenType enum.
+	 * @param input The kind of input the lexer runs on.
+	 */
+	static void generateNextToken(
+			final IndentedStringBuilder sb,
+			final DFA dfa,
+			final List<State> states,
+			final Map<String, Integer> tokenTypeToIndex,
+			final LexerInput input) {
+		final Map<State, Integer> stateIndex = DFASerializer.indexStates(states);
+		final List<Map<Integer, Set<Character>>> transitions = groupByDestination(dfa, states, stateIndex);
+
+		final String pt = input.positionType();
+		sb.append("public " + pt + " nextToken(final " + input.type() + " input, final " + pt
+						+ " from, final TokenBuffer tokens) {\n")
+				.indent()
+				.append("final " + pt + " length = " + input.length() + ";\n")
+				.append(pt + " start = from;\n")
+				.append("while (start < length) {\n")
+				.indent()
+				.append(pt + " pos = start;\n")
+				.append("int state = 0;\n")
+				.append("int accepted = " + (states.getFirst().isAccepting() ? "0" : "-1") + ";\n")
+				.append(pt + " acceptedPos = start;\n")
+				.append("scan:\n")
+				.append("while (pos < length) {\n")
+				.indent()
+				.append("final char ch = " + input.symbolAt() + ";\n")
+				.append("switch (state) {\n")
+				.indent();
+
+		for (int i = 0; i < states.size(); i++) {
+			final Map<Integer, Set<Character>> byDestination = transitions.get(i);
+			sb.append("case " + i + " -> {\n").indent();
+			if (byDestination.isEmpty()) {
+				sb.append("break scan;\n");
+			} else {
+				sb.append("switch (ch) {\n").indent();
+				for (final Map.Entry<Integer, Set<Character>> e : byDestination.entrySet()) {
+					sb.append("case ").append(charLabels(e.getValue())).append(" -> {\n").indent();
+					sb.append("state = " + e.getKey() + ";\n");
+					if (states.get(e.getKey()).isAccepting()) {
+						sb.append("accepted = " + e.getKey() + ";\n").append("acceptedPos = pos + 1;\n");
+					}
+					sb.deindent().append("}\n");
+				}
+				sb.append("default -> {\n")
+						.indent()
+						.append("break scan;\n")
+						.deindent()
+						.append("}\n")
+						.deindent()
+						.append("}\n");
+			}
+			sb.deindent().append("}\n");
+		}
+
+		sb.append("default -> throw new IllegalStateException();\n")
+				.deindent()
+				.append("}\n")
+				.append("pos++;\n")
+				.append("if (tokens.isDead(state, pos)) {\n")
+				.indent()
+				.append("break;\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n")
+				.append("tokens.reached(pos);\n")
+				.append("if (accepted == -1) {\n")
+				.indent()
+				.append("tokens.fail(pos);\n")
+				.append("return length;\n")
+				.deindent()
+				.append("}\n");
+		DFASerializer.generateDeadMarking(sb, input, String.valueOf(states.size()), "state");
+		if (states.getFirst().isAccepting()) {
+			// the starting state is the only one which can be reached without consuming characters
+			sb.append("if (acceptedPos == start) {\n")
+					.indent()
+					.append("tokens.fail(start);\n")
+					.append("return length;\n")
+					.deindent()
+					.append("}\n");
+		}
+
+		// emit the token, if it is not a skippable one
+		final Map<String, Set<Integer>> finalStates = new TreeMap<>();
+		for (int i = 0; i < states.size(); i++) {
+			final State s = states.get(i);
+			if (s.isAccepting() && !Production.isSkippable(((AcceptingState) s).tokenName())) {
+				finalStates
+						.computeIfAbsent(((AcceptingState) s).tokenName(), k -> new TreeSet<>())
+						.add(i);
+			}
+		}
+		if (!finalStates.isEmpty()) {
+			sb.append("switch (accepted) {\n").indent();
+			for (final Map.Entry<String, Set<Integer>> e : finalStates.entrySet()) {
+				sb.append("case ")
+						.append(String.join(
+								", ",
+								e.getValue().stream().map(String::valueOf).toList()))
+						.append(" -> {\n")
+						.indent()
+						.append("tokens.add(")
+						.append(String.valueOf(tokenTypeToIndex.get(e.getKey())))
+						.append(", start, acceptedPos);\n")
+						.append("return acceptedPos;\n")
+						.deindent()
+						.append("}\n");
+			}
+			sb.append("default -> {}\n").deindent().append("}\n");
+		}
+		sb.append("start = acceptedPos;\n")
+				.deindent()
+				.append("}\n")
+				.append("return start;\n")
+				.deindent()
+				.append("}\n");
+
+		generateTransition(sb, transitions);
+	}
+
+	/*
+	The scan above inlines every transition, but rolling back after a failed match needs to walk the DFA again from the
+	last accepting state, which is rare enough not to deserve its own copy of the inlined code.
+	 */
+	private static void generateTransition(
+			final IndentedStringBuilder sb, final List<Map<Integer, Set<Character>>> transitions) {
+		sb.append("private int transition(final int state, final char ch) {\n")
+				.indent()
+				.append("return switch (state) {\n")
+				.indent();
+		for (int i = 0; i < transitions.size(); i++) {
+			final Map<Integer, Set<Character>> byDestination = transitions.get(i);
+			if (byDestination.isEmpty()) {
+				continue;
+			}
+			sb.append("case " + i + " -> switch (ch) {\n").indent();
+			for (final Map.Entry<Integer, Set<Character>> e : byDestination.entrySet()) {
+				sb.append("case ")
+						.append(charLabels(e.getValue()))
+						.append(" -> ")
+						.append(String.valueOf(e.getKey()))
+						.append(";\n");
+			}
+			sb.append("default -> -1;\n").deindent().append("};\n");
+		}
+		sb.append("default -> -1;\n").deindent().append("};\n").deindent().append("}\n");
+	}
+
+	// groups the characters of each state by destination, in order of destination
+	private static List<Map<Integer, Set<Character>>> groupByDestination(
+			final DFA dfa, final List<State> states, final Map<State, Integer> stateIndex) {
+		final List<Map<Integer, Set<Character>>> transitions = new ArrayList<>();
+		for (final State s : states) {
+			final Map<Integer, Set<Character>> byDestination = new TreeMap<>();
+			for (final Map.Entry<Character, State> e : dfa.neighbors(s).entrySet()) {
+				byDestination
+						.computeIfAbsent(stateIndex.get(e.getValue()), k -> new TreeSet<>())
+						.add(e.getKey());
+			}
+			transitions.add(byDestination);
+		}
+		return transitions;
+	}
+
+	private static String charLabels(final Set<Character> chars) {
+		return String.join(", ", chars.stream().map(DirectCodedLexer::charLabel).toList());
+	}
+
+	private static String charLabel(final char ch) {
+		final boolean printable = ch >= ' ' && ch <= '~';
+		final boolean escapable = ch == '\t' || ch == '\n' || ch == '\r' || ch == '\b' || ch == '\f';
+		return printable || escapable ? "'" + Utils.getEscapedCharacter(ch) + "'" : String.format("0x%04x", (int) ch);
+	}
+}
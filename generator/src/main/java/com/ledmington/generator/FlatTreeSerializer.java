@@ -0,0 +1,708 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.generator;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.ledmington.ebnf.Expression;
+import com.ledmington.ebnf.Grammar;
+import com.ledmington.ebnf.Node;
+import com.ledmington.ebnf.NonTerminal;
+import com.ledmington.ebnf.OneOrMore;
+import com.ledmington.ebnf.Or;
+import com.ledmington.ebnf.Production;
+import com.ledmington.ebnf.Sequence;
+import com.ledmington.ebnf.ZeroOrMore;
+import com.ledmington.ebnf.ZeroOrOne;
+
+/**
+ * Generates the flat version of the parser, which writes the nodes of the parse tree in preorder into parallel arrays
+ * of primitives and builds the usual node objects only when asked to. The enclosing class must already contain the
+ * node types, the token stream and the helpers of the regular parser.
+ */
+@SuppressWarnings("PMD.AvoidDuplicateLiterals")
+final class FlatTreeSerializer {
+
+	private final IndentedStringBuilder sb;
+	private final Set<String> tokenNames;
+	private final Map<Node, String> globalNodeNames;
+
+	/**
+	 * Creates a new FlatTreeSerializer.
+	 *
+	 * @param sb The StringBuilder to use.
+	 * @param tokenNames The set of non-terminals corresponding to lexer productions.
+	 * @param nodeNames A map of the name for each node in the grammar.
+	 */
+	FlatTreeSerializer(final IndentedStringBuilder sb, final Set<String> tokenNames, final Map<Node, String> nodeNames) {
+		this.sb = Objects.requireNonNull(sb);
+		this.tokenNames = Objects.requireNonNull(tokenNames);
+		this.globalNodeNames = Objects.requireNonNull(nodeNames);
+	}
+
+	/**
+	 * Generates the flat tree, its cursor and a flat parsing method for each production of the given grammar.
+	 *
+	 * @param g The grammar to be used.
+	 */
+	void generateFlatParser(final Grammar g) {
+		final List<Production> parserProductions = g.getParserProductions();
+		generateTree(parserProductions);
+		generateCursor();
+		generateBuilder();
+		for (int i = 0; i < parserProductions.size(); i++) {
+			final Production p = parserProductions.get(i);
+			final int kind = i;
+			final String productionName = p.start().name();
+			switch (p.result()) {
+				case NonTerminal nt -> generateNonTerminal(productionName, kind, nt);
+				case Sequence s -> generateSequence(productionName, kind, s);
+				case Or or -> generateOr(productionName, kind, or, GrammarUtils.predict(g, or));
+				case ZeroOrOne zoo -> generateZeroOrOne(productionName, kind, zoo);
+				case ZeroOrMore zom -> generateZeroOrMore(productionName, kind, zom);
+				case OneOrMore oom -> generateOneOrMore(productionName, kind, oom);
+				default -> throw new IllegalArgumentException(String.format("Unknown node: '%s'", p.result()));
+			}
+		}
+	}
+
+	private boolean isToken(final String tokenName) {
+		return this.tokenNames.contains(tokenName);
+	}
+
+	private String resolveTypeName(final Expression exp) {
+		return exp instanceof NonTerminal nt && isToken(nt.name()) ? "Terminal" : globalNodeNames.get(exp);
+	}
+
+	/*
+	Each node takes a kind, the index of its next sibling and the span of the input it covers: 24 bytes, less than the
+	smallest terminal object. The kinds of terminals come after those of the productions, one for each type of token.
+	Since nodes are stored in preorder, the first child of a node is always the one right after it, so a single bit of
+	the kind tells whether there is one. Walking the whole tree reads the arrays from start to end.
+	 */
+	private void generateTree(final List<Production> parserProductions) {
+		sb.append("public static final class Tree {\n")
+				.indent()
+				.append("private static final String[] NAMES = {"
+						+ parserProductions.stream()
+								.map(p -> "\"" + p.start().name() + "\"")
+								.collect(Collectors.joining(", "))
+						+ "};\n")
+				.append("private static final int TERMINALS = NAMES.length;\n")
+				.append("private static final TokenType[] TOKEN_TYPES = TokenType.values();\n")
+				.append("private static final int HAS_CHILDREN = 1 << 31;\n")
+				.append("private String input;\n")
+				.append("private MemorySegment bytes;\n")
+				.append("private int size = 0;\n")
+				.append("private int[] kinds = new int[16];\n")
+				.append("private int[] nextSiblings = new int[16];\n")
+				.append("private long[] starts = new long[16];\n")
+				.append("private long[] ends = new long[16];\n")
+				.append("private Tree(final String input, final MemorySegment bytes) {\n")
+				.indent()
+				.append("reset(input, bytes);\n")
+				.deindent()
+				.append("}\n")
+				.append("private void reset(final String input, final MemorySegment bytes) {\n")
+				.indent()
+				.append("this.input = input;\n")
+				.append("this.bytes = bytes;\n")
+				.append("this.size = 0;\n")
+				.deindent()
+				.append("}\n")
+				.append("private int add(final int kind) {\n")
+				.indent()
+				.append("if (size == kinds.length) {\n")
+				.indent()
+				.append("final int newLength = 2 * size;\n")
+				.append("kinds = Arrays.copyOf(kinds, newLength);\n")
+				.append("nextSiblings = Arrays.copyOf(nextSiblings, newLength);\n")
+				.append("starts = Arrays.copyOf(starts, newLength);\n")
+				.append("ends = Arrays.copyOf(ends, newLength);\n")
+				.deindent()
+				.append("}\n")
+				.append("kinds[size] = kind;\n")
+				.append("nextSiblings[size] = -1;\n")
+				.append("return size++;\n")
+				.deindent()
+				.append("}\n")
+				// the arrays grow by doubling while parsing, but only the used part is worth keeping
+				.append("private void trim() {\n")
+				.indent()
+				.append("kinds = Arrays.copyOf(kinds, size);\n")
+				.append("nextSiblings = Arrays.copyOf(nextSiblings, size);\n")
+				.append("starts = Arrays.copyOf(starts, size);\n")
+				.append("ends = Arrays.copyOf(ends, size);\n")
+				.deindent()
+				.append("}\n")
+				.append("public int size() {\n")
+				.indent()
+				.append("return size;\n")
+				.deindent()
+				.append("}\n")
+				.append("public int root() {\n")
+				.indent()
+				.append("return 0;\n")
+				.deindent()
+				.append("}\n")
+				.append("private int kind(final int node) {\n")
+				.indent()
+				.append("return kinds[node] & ~HAS_CHILDREN;\n")
+				.deindent()
+				.append("}\n")
+				.append("public String name(final int node) {\n")
+				.indent()
+				.append("return isTerminal(node) ? \"Terminal\" : NAMES[kind(node)];\n")
+				.deindent()
+				.append("}\n")
+				.append("public boolean isTerminal(final int node) {\n")
+				.indent()
+				.append("return kind(node) >= TERMINALS;\n")
+				.deindent()
+				.append("}\n")
+				.append("public TokenType tokenType(final int node) {\n")
+				.indent()
+				.append("return isTerminal(node) ? TOKEN_TYPES[kind(node) - TERMINALS] : null;\n")
+				.deindent()
+				.append("}\n")
+				.append("public int firstChild(final int node) {\n")
+				.indent()
+				.append("return (kinds[node] & HAS_CHILDREN) != 0 ? node + 1 : -1;\n")
+				.deindent()
+				.append("}\n")
+				.append("public int nextSibling(final int node) {\n")
+				.indent()
+				.append("return nextSiblings[node];\n")
+				.deindent()
+				.append("}\n")
+				.append("public long start(final int node) {\n")
+				.indent()
+				.append("return starts[node];\n")
+				.deindent()
+				.append("}\n")
+				.append("public long end(final int node) {\n")
+				.indent()
+				.append("return ends[node];\n")
+				.deindent()
+				.append("}\n")
+				.append("public String text(final int node) {\n")
+				.indent()
+				.append("return input != null\n")
+				.indent()
+				.indent()
+				.append("? input.substring((int) starts[node], (int) ends[node])\n")
+				.append(
+						": new String(bytes.asSlice(starts[node], ends[node] - starts[node]).toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);\n")
+				.deindent()
+				.deindent()
+				.deindent()
+				.append("}\n")
+				.append("public Cursor cursor() {\n")
+				.indent()
+				.append("return new Cursor(this);\n")
+				.deindent()
+				.append("}\n");
+		generateMaterialize(parserProductions);
+		sb.deindent().append("}\n");
+	}
+
+	/*
+	Building the node objects of a subtree gives exactly what the regular parser returns for the same input, so code
+	written against them keeps working on the parts of a flat tree it is interested in.
+	 */
+	private void generateMaterialize(final List<Production> parserProductions) {
+		sb.append("public Node materialize(final int node) {\n")
+				.indent()
+				.append("final int first = firstChild(node);\n")
+				.append("return switch (kind(node)) {\n")
+				.indent();
+		for (int i = 0; i < parserProductions.size(); i++) {
+			final String productionName = parserProductions.get(i).start().name();
+			final Expression result = parserProductions.get(i).result();
+			sb.append("case " + i + " -> ");
+			switch (result) {
+				case NonTerminal nt ->
+					sb.append("new " + productionName + "((" + resolveTypeName(nt) + ") materialize(first));\n");
+				case Or ignored -> sb.append("new " + productionName + "(materialize(first));\n");
+				case ZeroOrOne(final Expression inner) ->
+					sb.append("new " + productionName + "(first == -1 ? null : (" + resolveTypeName(inner)
+							+ ") materialize(first));\n");
+				case Sequence(final List<Expression> expressions) -> {
+					sb.append("{\n").indent().append("final int child_0 = first;\n");
+					for (int j = 1; j < expressions.size(); j++) {
+						sb.append("final int child_" + j + " = nextSiblings[child_" + (j - 1) + "];\n");
+					}
+					sb.append("yield new " + productionName + "("
+									+ IntStream.range(0, expressions.size())
+											.mapToObj(j -> "(" + resolveTypeName(expressions.get(j))
+													+ ") materialize(child_" + j + ")")
+											.collect(Collectors.joining(", "))
+									+ ");\n")
+							.deindent()
+							.append("}\n");
+				}
+				case ZeroOrMore(final Expression inner) -> generateMaterializeList(productionName, inner);
+				case OneOrMore(final Expression inner) -> generateMaterializeList(productionName, inner);
+				default -> throw new IllegalArgumentException(String.format("Unknown node: '%s'.", result));
+			}
+		}
+		sb.append(
+						"default -> input != null ? new Terminal(input, starts[node], ends[node]) : new Terminal(bytes, starts[node], ends[node]);\n")
+				.deindent()
+				.append("};\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	private void generateMaterializeList(final String productionName, final Expression inner) {
+		final String innerTypeName = resolveTypeName(inner);
+		sb.append("{\n")
+				.indent()
+				.append("final List<" + innerTypeName + "> nodes = new ArrayList<>();\n")
+				.append("for (int child = first; child != -1; child = nextSiblings[child]) {\n")
+				.indent()
+				.append("nodes.add((" + innerTypeName + ") materialize(child));\n")
+				.deindent()
+				.append("}\n")
+				.append("yield new " + productionName + "(nodes);\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	/*
+	Nodes do not point to their parent, so the cursor remembers the ancestors of the current node on its way down.
+	 */
+	private void generateCursor() {
+		sb.append("public static final class Cursor {\n")
+				.indent()
+				.append("private final Tree tree;\n")
+				.append("private int[] ancestors = new int[16];\n")
+				.append("private int depth = 0;\n")
+				.append("private int node = 0;\n")
+				.append("private Cursor(final Tree tree) {\n")
+				.indent()
+				.append("this.tree = tree;\n")
+				.deindent()
+				.append("}\n")
+				.append("public int node() {\n")
+				.indent()
+				.append("return node;\n")
+				.deindent()
+				.append("}\n")
+				.append("public int depth() {\n")
+				.indent()
+				.append("return depth;\n")
+				.deindent()
+				.append("}\n")
+				.append("public String name() {\n")
+				.indent()
+				.append("return tree.name(node);\n")
+				.deindent()
+				.append("}\n")
+				.append("public boolean isTerminal() {\n")
+				.indent()
+				.append("return tree.isTerminal(node);\n")
+				.deindent()
+				.append("}\n")
+				.append("public long start() {\n")
+				.indent()
+				.append("return tree.start(node);\n")
+				.deindent()
+				.append("}\n")
+				.append("public long end() {\n")
+				.indent()
+				.append("return tree.end(node);\n")
+				.deindent()
+				.append("}\n")
+				.append("public String text() {\n")
+				.indent()
+				.append("return tree.text(node);\n")
+				.deindent()
+				.append("}\n")
+				.append("public Node materialize() {\n")
+				.indent()
+				.append("return tree.materialize(node);\n")
+				.deindent()
+				.append("}\n")
+				.append("public boolean gotoFirstChild() {\n")
+				.indent()
+				.append("final int child = tree.firstChild(node);\n")
+				.append("if (child == -1) {\n")
+				.indent()
+				.append("return false;\n")
+				.deindent()
+				.append("}\n")
+				.append("if (depth == ancestors.length) {\n")
+				.indent()
+				.append("ancestors = Arrays.copyOf(ancestors, 2 * depth);\n")
+				.deindent()
+				.append("}\n")
+				.append("ancestors[depth++] = node;\n")
+				.append("node = child;\n")
+				.append("return true;\n")
+				.deindent()
+				.append("}\n")
+				.append("public boolean gotoNextSibling() {\n")
+				.indent()
+				.append("final int sibling = tree.nextSiblings[node];\n")
+				.append("if (sibling == -1) {\n")
+				.indent()
+				.append("return false;\n")
+				.deindent()
+				.append("}\n")
+				.append("node = sibling;\n")
+				.append("return true;\n")
+				.deindent()
+				.append("}\n")
+				.append("public boolean gotoParent() {\n")
+				.indent()
+				.append("if (depth == 0) {\n")
+				.indent()
+				.append("return false;\n")
+				.deindent()
+				.append("}\n")
+				.append("node = ancestors[--depth];\n")
+				.append("return true;\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	/*
+	A node is appended when its production starts and removed, together with everything after it, when the production
+	fails. The open nodes are kept on a stack along with their last child, to link the next one, and with their
+	previous sibling, to unlink them if they fail. Since the span of a node is only known at the end, it is taken from
+	its first and last children, while an empty node sits right before the next token.
+	 */
+	private void generateBuilder() {
+		sb.append("private Tree tree = null;\n")
+				.append("private int[] openNodes = new int[16];\n")
+				.append("private int[] lastChildren = new int[16];\n")
+				.append("private int[] previousSiblings = new int[16];\n")
+				.append("private int depth = 0;\n")
+				.append("private int open(final int kind) {\n")
+				.indent()
+				.append("final int node = tree.add(kind);\n")
+				.append("if (depth == openNodes.length) {\n")
+				.indent()
+				.append("final int newLength = 2 * depth;\n")
+				.append("openNodes = Arrays.copyOf(openNodes, newLength);\n")
+				.append("lastChildren = Arrays.copyOf(lastChildren, newLength);\n")
+				.append("previousSiblings = Arrays.copyOf(previousSiblings, newLength);\n")
+				.deindent()
+				.append("}\n")
+				.append("openNodes[depth] = node;\n")
+				.append("lastChildren[depth] = -1;\n")
+				.append("previousSiblings[depth] = -1;\n")
+				.append("if (depth > 0) {\n")
+				.indent()
+				.append("final int previous = lastChildren[depth - 1];\n")
+				.append("if (previous == -1) {\n")
+				.indent()
+				.append("tree.kinds[openNodes[depth - 1]] |= Tree.HAS_CHILDREN;\n")
+				.deindent()
+				.append("} else {\n")
+				.indent()
+				.append("tree.nextSiblings[previous] = node;\n")
+				.deindent()
+				.append("}\n")
+				.append("lastChildren[depth - 1] = node;\n")
+				.append("previousSiblings[depth] = previous;\n")
+				.deindent()
+				.append("}\n")
+				.append("depth++;\n")
+				.append("return node;\n")
+				.deindent()
+				.append("}\n")
+				.append("private boolean close() {\n")
+				.indent()
+				.append("depth--;\n")
+				.append("final int node = openNodes[depth];\n")
+				.append("if (lastChildren[depth] == -1) {\n")
+				.indent()
+				.append("final long at = pos < tokens.size() ? tokens.start(pos) : inputLength;\n")
+				.append("tree.starts[node] = at;\n")
+				.append("tree.ends[node] = at;\n")
+				.deindent()
+				.append("} else {\n")
+				.indent()
+				.append("tree.starts[node] = tree.starts[node + 1];\n")
+				.append("tree.ends[node] = tree.ends[lastChildren[depth]];\n")
+				.deindent()
+				.append("}\n")
+				.append("return true;\n")
+				.deindent()
+				.append("}\n")
+				.append("private boolean discard() {\n")
+				.indent()
+				.append("depth--;\n")
+				.append("tree.size = openNodes[depth];\n")
+				.append("if (depth > 0) {\n")
+				.indent()
+				.append("final int previous = previousSiblings[depth];\n")
+				.append("if (previous == -1) {\n")
+				.indent()
+				.append("tree.kinds[openNodes[depth - 1]] &= ~Tree.HAS_CHILDREN;\n")
+				.deindent()
+				.append("} else {\n")
+				.indent()
+				.append("tree.nextSiblings[previous] = -1;\n")
+				.deindent()
+				.append("}\n")
+				.append("lastChildren[depth - 1] = previous;\n")
+				.deindent()
+				.append("}\n")
+				.append("return false;\n")
+				.deindent()
+				.append("}\n")
+				.append("private boolean flatTerminal(final TokenType expected) {\n")
+				.indent()
+				.append("if (peek() == expected.ordinal()) {\n")
+				.indent()
+				.append("final int node = open(Tree.TERMINALS + expected.ordinal());\n")
+				.append("tree.starts[node] = tokens.start(pos);\n")
+				.append("tree.ends[node] = tokens.end(pos);\n")
+				.append("pos++;\n")
+				.append("depth--;\n")
+				.append("return true;\n")
+				.deindent()
+				.append("}\n")
+				.append("failAt(pos);\n")
+				.append("return false;\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	/**
+	 * Generates the listener interface, with an enter and an exit method for each production and one method for
+	 * tokens, and the method replaying the nodes of a successful flat parse as calls to a listener.
+	 *
+	 * @param g The grammar to be used.
+	 */
+	void generateListener(final Grammar g) {
+		final List<Production> parserProductions = g.getParserProductions();
+		sb.append("public interface Listener {\n").indent();
+		for (final Production p : parserProductions) {
+			final String name = capitalize(p.start().name());
+			sb.append("default void enter" + name + "() {}\n").append("default void exit" + name + "() {}\n");
+		}
+		sb.append("default void token(final TokenType type, final long start, final long end) {}\n")
+				.deindent()
+				.append("}\n");
+
+		generateDispatch("enter", parserProductions);
+		generateDispatch("exit", parserProductions);
+		generateReplay();
+	}
+
+	private static String capitalize(final String name) {
+		return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+	}
+
+	private void generateDispatch(final String event, final List<Production> parserProductions) {
+		sb.append("private static void " + event + "(final Listener listener, final int kind) {\n")
+				.indent()
+				.append("switch (kind) {\n")
+				.indent();
+		for (int i = 0; i < parserProductions.size(); i++) {
+			sb.append("case " + i + " -> listener." + event + capitalize(parserProductions.get(i).start().name())
+					+ "();\n");
+		}
+		sb.append(
+						"default -> throw new IllegalArgumentException(String.format(\"Unknown node kind: %,d.\", kind));\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	/*
+	Events are buffered as a flat tree until the whole input is accepted, so that the listener never hears about
+	alternatives which were later abandoned, nor about inputs which turn out to be wrong. The buffer is reused across
+	parses. Replaying it needs the stack of the nodes entered but not exited yet, along with the index where their
+	subtree ends: the stacks of the builder are free at that point, so they hold them.
+	 */
+	private void generateReplay() {
+		sb.append("private final Tree events = new Tree(null, null);\n")
+				.append("private void replay(final Listener listener) {\n")
+				.indent()
+				.append("int entered = 0;\n")
+				.append("for (int node = 0; node < events.size; node++) {\n")
+				.indent()
+				.append("while (entered > 0 && lastChildren[entered - 1] <= node) {\n")
+				.indent()
+				.append("entered--;\n")
+				.append("exit(listener, events.kind(openNodes[entered]));\n")
+				.deindent()
+				.append("}\n")
+				.append("if (events.isTerminal(node)) {\n")
+				.indent()
+				.append("listener.token(events.tokenType(node), events.starts[node], events.ends[node]);\n")
+				.append("continue;\n")
+				.deindent()
+				.append("}\n")
+				.append("enter(listener, events.kind(node));\n")
+				.append("if (entered == openNodes.length) {\n")
+				.indent()
+				.append("openNodes = Arrays.copyOf(openNodes, 2 * entered);\n")
+				.append("lastChildren = Arrays.copyOf(lastChildren, 2 * entered);\n")
+				.append("previousSiblings = Arrays.copyOf(previousSiblings, 2 * entered);\n")
+				.deindent()
+				.append("}\n")
+				.append("openNodes[entered] = node;\n")
+				.append(
+						"lastChildren[entered] = events.nextSiblings[node] != -1 ? events.nextSiblings[node] : entered == 0 ? events.size : lastChildren[entered - 1];\n")
+				.append("entered++;\n")
+				.deindent()
+				.append("}\n")
+				.append("while (entered > 0) {\n")
+				.indent()
+				.append("entered--;\n")
+				.append("exit(listener, events.kind(openNodes[entered]));\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	private String call(final Expression exp) {
+		final String name = globalNodeNames.get(exp);
+		return exp instanceof NonTerminal && isToken(name) ? "flatTerminal(TokenType." + name + ")" : "flat_" + name + "()";
+	}
+
+	private boolean canFail(final Expression exp) {
+		return !(exp instanceof ZeroOrMore) && !(exp instanceof ZeroOrOne);
+	}
+
+	private IndentedStringBuilder openFlatMethod(final String productionName, final int kind) {
+		return sb.append("private boolean flat_" + productionName + "() {\n")
+				.indent()
+				.append("open(" + kind + ");\n");
+	}
+
+	private void generateNonTerminal(final String productionName, final int kind, final NonTerminal nt) {
+		openFlatMethod(productionName, kind)
+				.append("if (!" + call(nt) + ") {\n")
+				.indent()
+				.append("return discard();\n")
+				.deindent()
+				.append("}\n")
+				.append("return close();\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	private void generateSequence(final String productionName, final int kind, final Sequence s) {
+		openFlatMethod(productionName, kind).append("push(this.pos);\n");
+		for (final Expression exp : s.expressions()) {
+			if (canFail(exp)) {
+				sb.append("if (!" + call(exp) + ") {\n")
+						.indent()
+						.append("this.pos = pop();\n")
+						.append("return discard();\n")
+						.deindent()
+						.append("}\n");
+			} else {
+				sb.append(call(exp) + ";\n");
+			}
+		}
+		sb.append("pop();\n").append("return close();\n").deindent().append("}\n");
+	}
+
+	private void generateOr(final String productionName, final int kind, final Or or, final OrPrediction prediction) {
+		openFlatMethod(productionName, kind);
+		final List<Expression> expressions = or.expressions();
+		if (prediction.otherwise().size() == expressions.size()) {
+			generateAlternatives(expressions, prediction.otherwise());
+			sb.append("return discard();\n").deindent().append("}\n");
+			return;
+		}
+
+		sb.append("final TokenType next = pos < tokens.size() || fill(pos) ? tokens.type(pos) : null;\n")
+				.append("switch (next) {\n")
+				.indent();
+		// tokens with the same alternatives share the same case
+		for (final Map.Entry<List<Integer>, List<String>> e : prediction.cases().entrySet()) {
+			sb.append("case " + String.join(", ", e.getValue()) + " -> {\n").indent();
+			generateAlternatives(expressions, e.getKey());
+			sb.deindent().append("}\n");
+		}
+		if (prediction.otherwise().isEmpty()) {
+			sb.append("case null, default -> failAt(pos);\n");
+		} else {
+			sb.append("case null, default -> {\n").indent();
+			generateAlternatives(expressions, prediction.otherwise());
+			sb.deindent().append("}\n");
+		}
+		sb.deindent().append("}\n").append("return discard();\n").deindent().append("}\n");
+	}
+
+	private void generateAlternatives(final List<Expression> expressions, final List<Integer> alternatives) {
+		for (final int i : alternatives) {
+			sb.append("if (" + call(expressions.get(i)) + ") {\n")
+					.indent()
+					.append("return close();\n")
+					.deindent()
+					.append("}\n");
+		}
+	}
+
+	private void generateZeroOrOne(final String productionName, final int kind, final ZeroOrOne zoo) {
+		openFlatMethod(productionName, kind)
+				.append(call(zoo.inner()) + ";\n")
+				.append("return close();\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	private void generateZeroOrMore(final String productionName, final int kind, final ZeroOrMore zom) {
+		openFlatMethod(productionName, kind)
+				.append("while (" + call(zom.inner()) + ") {\n")
+				.indent()
+				.append("// keep matching\n")
+				.deindent()
+				.append("}\n")
+				.append("return close();\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	private void generateOneOrMore(final String productionName, final int kind, final OneOrMore oom) {
+		final String call = call(oom.inner());
+		openFlatMethod(productionName, kind)
+				.append("if (!" + call + ") {\n")
+				.indent()
+				.append("return discard();\n")
+				.deindent()
+				.append("}\n")
+				.append("while (" + call + ") {\n")
+				.indent()
+				.append("// keep matching\n")
+				.deindent()
+				.append("}\n")
+				.append("return close();\n")
+				.deindent()
+				.append("}\n");
+	}
+}
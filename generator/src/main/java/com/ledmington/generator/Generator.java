@@ -22,6 +22,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Queue;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -55,16 +56,56 @@ public final class Generator {
 	 * @param generateMainMethod True to generate a self-contained executable parser which prints the resulting match.
 	 * @return The indented Java source code of the parser of the given EBNF grammar.
 	 */
-	@SuppressWarnings("PMD.AvoidLiteralsInIfCondition")
 	public static String generate(
 			final Grammar g,
 			final String parserName,
 			final String packageName,
 			final String indent,
 			final boolean generateMainMethod) {
+		return generate(g, parserName, packageName, indent, generateMainMethod, GeneratorOptions.builder().build());
+	}
+
+	/**
+	 * Checks the given EBNF grammar and applies to it the transformations chosen by the given options, returning the
+	 * grammar which the parser is actually generated from.
+	 *
+	 * @param grammar The EBNF grammar to transform.
+	 * @param options The options choosing the transformations.
+	 * @return The transformed grammar, or the given one if no transformation was chosen.
+	 */
+	public static Grammar transform(final Grammar grammar, final GeneratorOptions options) {
+		Objects.requireNonNull(options);
+		GrammarChecker.check(grammar);
+		final Grammar rewritten = options.rewriteRecursion() ? GrammarTransforms.rewriteRecursion(grammar) : grammar;
+		final Grammar factored = options.leftFactor() ? GrammarTransforms.leftFactor(rewritten) : rewritten;
+		return options.optimizeGrammar()
+				? GrammarTransforms.optimize(factored, options.memoizedProductions())
+				: factored;
+	}
+
+	/**
+	 * Generates a String containing Java source code to parse the given EBNF grammar.
+	 *
+	 * @param grammar The EBNF grammar to convert.
+	 * @param parserName The name of the parser class produced.
+	 * @param packageName The name of the package to output.
+	 * @param indent The level of indentation to use when generating source code.
+	 * @param generateMainMethod True to generate a self-contained executable parser which prints the resulting match.
+	 * @param options The options controlling the shape of the generated code.
+	 * @return The indented Java source code of the parser of the given EBNF grammar.
+	 */
+	@SuppressWarnings("PMD.AvoidLiteralsInIfCondition")
+	public static String generate(
+			final Grammar grammar,
+			final String parserName,
+			final String packageName,
+			final String indent,
+			final boolean generateMainMethod,
+			final GeneratorOptions options) {
+		Objects.requireNonNull(options);
 		NODE_NAMES.clear();
 
-		GrammarChecker.check(g);
+		final Grammar g = transform(grammar, options);
 
 		final String startSymbol = g.getStartSymbol();
 
@@ -82,6 +123,7 @@ public final class Generator {
 		final boolean atLeastOneOneOrMore =
 				g.getParserProductions().stream().anyMatch(p -> p.result() instanceof OneOrMore);
 		final boolean atLeastOneOr = g.getParserProductions().stream().anyMatch(p -> p.result() instanceof Or);
+		final boolean mappedInput = options.utf8Lexer();
 
 		final IndentedStringBuilder sb = new IndentedStringBuilder(indent);
 		sb.append("/*\n")
@@ -90,45 +132,155 @@ public final class Generator {
 		if (packageName != null && !packageName.isBlank()) {
 			sb.append("package ").append(packageName).append(";\n\n");
 		}
-		if (generateMainMethod) {
-			sb.append("import java.io.IOException;\n")
-					.append("import java.nio.file.Files;\n")
-					.append("import java.nio.file.Path;\n");
+		sb.append("import java.io.IOException;\n").append("import java.io.Reader;\n");
+		if (mappedInput) {
+			sb.append("import java.lang.foreign.Arena;\n");
 		}
-		sb.append("import java.nio.ByteBuffer;\n")
+		sb.append("import java.lang.foreign.MemorySegment;\n")
+				.append("import java.lang.foreign.ValueLayout;\n")
+				.append("import java.nio.ByteBuffer;\n")
 				.append("import java.nio.ByteOrder;\n")
-				.append("import java.util.ArrayList;\n")
+				.append("import java.nio.CharBuffer;\n")
+				.append("import java.nio.channels.Channels;\n");
+		if (mappedInput) {
+			sb.append("import java.nio.channels.FileChannel;\n");
+		}
+		sb.append("import java.nio.channels.ReadableByteChannel;\n")
+				.append("import java.nio.charset.Charset;\n")
+				.append("import java.nio.charset.StandardCharsets;\n");
+		if (generateMainMethod && !mappedInput) {
+			sb.append("import java.nio.file.Files;\n");
+		}
+		if (generateMainMethod || mappedInput) {
+			sb.append("import java.nio.file.Path;\n");
+		}
+		if (mappedInput) {
+			sb.append("import java.nio.file.StandardOpenOption;\n");
+		}
+		sb.append("import java.util.ArrayList;\n")
+				.append("import java.util.Arrays;\n")
 				.append("import java.util.Base64;\n")
-				.append("import java.util.List;\n");
-		sb.append("import java.util.Objects;\n");
-		if (atLeastOneSequence) {
-			sb.append("import java.util.Stack;\n");
+				.append("import java.util.Collections;\n");
+		if (options.adaptivePrediction()) {
+			sb.append("import java.util.HashSet;\n");
+		}
+		sb.append("import java.util.List;\n");
+		if (options.adaptivePrediction()) {
+			sb.append("import java.util.Map;\n");
 		}
-		if (atLeastOneSequence || atLeastOneZeroOrMore || generateMainMethod) {
-			sb.append('\n');
+		sb.append("import java.util.Objects;\n");
+		if (options.adaptivePrediction()) {
+			sb.append("import java.util.Set;\n")
+					.append("import java.util.TreeSet;\n")
+					.append("import java.util.concurrent.ConcurrentHashMap;\n")
+					.append("import java.util.concurrent.atomic.AtomicReferenceArray;\n");
 		}
+		sb.append("import java.util.function.Consumer;\n");
+		sb.append('\n');
 		sb.append("public final class ")
 				.append(parserName)
 				.append(" {\n")
 				.indent()
-				.append("private Token[] v = null;\n")
-				.append("private int pos = 0;\n");
+				.append("private final TokenBuffer tokens = new TokenBuffer();\n")
+				.append("private String input = \"\";\n");
+		if (mappedInput) {
+			sb.append("private MemorySegment bytes = null;\n");
+		}
+		sb.append("private long inputLength = 0L;\n")
+				.append("private long lexerPos = 0L;\n")
+				.append("private int pos = 0;\n")
+				.append("private int furthestFailure = -1;\n")
+				.append("private long errorPosition = -1L;\n");
 		if (atLeastOneSequence) {
-			sb.append("private final Stack<Integer> stack = new Stack<>();\n");
+			// the positions to backtrack to, as a primitive stack to avoid boxing and synchronization
+			sb.append("private int[] stack = new int[16];\n").append("private int stackSize = 0;\n");
 		}
 		sb.append("public interface Node {\n")
 				.indent()
 				.append("String name();\n")
 				.deindent()
 				.append("}\n")
-				.append("public record Terminal(String literal) implements Node {\n")
+				// a terminal points into the input (either chars or UTF-8 bytes) and builds its String only when asked to
+				.append("public static final class Terminal implements Node {\n")
+				.indent()
+				.append("private final String input;\n")
+				.append("private final MemorySegment bytes;\n")
+				.append("private final long start;\n")
+				.append("private final long end;\n")
+				.append("private String literal = null;\n")
+				.append("public Terminal(final String literal) {\n")
+				.indent()
+				.append("this(literal, 0, literal.length());\n")
+				.append("this.literal = literal;\n")
+				.deindent()
+				.append("}\n")
+				.append("public Terminal(final String input, final long start, final long end) {\n")
+				.indent()
+				.append("this.input = Objects.requireNonNull(input);\n")
+				.append("this.bytes = null;\n")
+				.append("this.start = start;\n")
+				.append("this.end = end;\n")
+				.deindent()
+				.append("}\n")
+				.append("public Terminal(final MemorySegment bytes, final long start, final long end) {\n")
+				.indent()
+				.append("this.input = null;\n")
+				.append("this.bytes = Objects.requireNonNull(bytes);\n")
+				.append("this.start = start;\n")
+				.append("this.end = end;\n")
+				.deindent()
+				.append("}\n")
+				.append("public String literal() {\n")
+				.indent()
+				.append("if (literal == null) {\n")
+				.indent()
+				.append("literal = input != null\n")
+				.indent()
+				.indent()
+				.append("? input.substring((int) start, (int) end)\n")
+				.append(
+						": new String(bytes.asSlice(start, end - start).toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);\n")
+				.deindent()
+				.deindent()
+				.deindent()
+				.append("}\n")
+				.append("return literal;\n")
+				.deindent()
+				.append("}\n")
+				.append("public long start() {\n")
+				.indent()
+				.append("return start;\n")
+				.deindent()
+				.append("}\n")
+				.append("public long end() {\n")
 				.indent()
+				.append("return end;\n")
+				.deindent()
+				.append("}\n")
 				.append("@Override\n")
 				.append("public String name() {\n")
 				.indent()
 				.append("return \"Terminal\";\n")
 				.deindent()
 				.append("}\n")
+				.append("@Override\n")
+				.append("public boolean equals(final Object other) {\n")
+				.indent()
+				.append("return other instanceof Terminal t && literal().equals(t.literal());\n")
+				.deindent()
+				.append("}\n")
+				.append("@Override\n")
+				.append("public int hashCode() {\n")
+				.indent()
+				.append("return literal().hashCode();\n")
+				.deindent()
+				.append("}\n")
+				.append("@Override\n")
+				.append("public String toString() {\n")
+				.indent()
+				.append("return \"Terminal[literal=\" + literal() + \"]\";\n")
+				.deindent()
+				.append("}\n")
 				.deindent()
 				.append("}\n")
 				.append("public interface NonTerminal extends Node {\n")
@@ -172,41 +324,264 @@ public final class Generator {
 					.append("}\n");
 		}
 
-		final ParserSerializer ps = new ParserSerializer(sb, tokenNames, NODE_NAMES);
+		final ParserSerializer ps = new ParserSerializer(
+				sb,
+				tokenNames,
+				NODE_NAMES,
+				memoizedProductions(g.getParserProductions(), options),
+				options);
 		ps.generateParser(g);
+		if (options.flatTree() || options.eventListener()) {
+			final FlatTreeSerializer fts = new FlatTreeSerializer(sb, tokenNames, NODE_NAMES);
+			fts.generateFlatParser(g);
+			if (options.eventListener()) {
+				fts.generateListener(g);
+			}
+		}
+		if (options.reducer()) {
+			new ReducerSerializer(sb, tokenNames, NODE_NAMES).generateReducer(g);
+		}
 
 		final String lexerName = parserName + "_Lexer";
-		DFASerializer.generateLexer(sb, lexerName, g.getLexerProductions());
+		DFASerializer.generateLexer(sb, lexerName, g.getLexerProductions(), options);
+
+		// the lexer holds no per-instance state, so a single instance is shared by all parsers
+		sb.append("private static final ")
+				.append(lexerName)
+				.append(" LEXER = new ")
+				.append(lexerName)
+				.append("();\n");
+		if (mappedInput) {
+			final String utf8LexerName = DFASerializer.utf8LexerName(lexerName);
+			sb.append("private static final ")
+					.append(utf8LexerName)
+					.append(" UTF8_LEXER = new ")
+					.append(utf8LexerName)
+					.append("();\n");
+		}
 
-		sb.append("public Node parse(final String input) {\n")
+		/*
+		Tokens are pulled from the lexer only when the parser needs them, so that a syntax error near the start of a
+		large input is reported without lexing the rest of it. Tokens before the oldest position the parser may
+		backtrack to are never looked at again, so they can be discarded.
+		 */
+		sb.append("private boolean fill(final int index) {\n")
 				.indent()
-				.append("final Node result;\n")
-				.append("final " + lexerName + " lexer = new " + lexerName + "();\n")
-				.append("try {\n")
+				.append("while (index >= tokens.size()) {\n")
 				.indent()
-				.append("this.v = lexer.tokenize(input).toArray(new Token[0]);\n")
+				.append("if (lexerPos >= inputLength) {\n")
+				.indent()
+				.append("return false;\n")
 				.deindent()
-				.append("} catch (final IllegalArgumentException e) {\n")
+				.append("}\n")
+				.append("if (tokens.isFull()) {\n")
 				.indent()
-				.append("return null;\n")
+				.append("tokens.discardBefore(" + (atLeastOneSequence ? "stackSize == 0 ? pos : stack[0]" : "pos")
+						+ ");\n")
 				.deindent()
 				.append("}\n")
-				.append("this.pos = 0;\n")
-				.append("try {\n")
+				.append(
+						mappedInput
+								? "lexerPos = bytes == null ? LEXER.nextToken(input, (int) lexerPos, tokens) : UTF8_LEXER.nextToken(bytes, lexerPos, tokens);\n"
+								: "lexerPos = LEXER.nextToken(input, (int) lexerPos, tokens);\n")
+				.deindent()
+				.append("}\n")
+				.append("return true;\n")
+				.deindent()
+				.append("}\n")
+				// the end of the input (or a lexical error, which ends it early) looks like a token of no type
+				.append("private static final int EOF = -1;\n")
+				.append("private int peek() {\n")
+				.indent()
+				.append("return pos < tokens.size() || fill(pos) ? tokens.typeIndex(pos) : EOF;\n")
+				.deindent()
+				.append("}\n")
+				// the furthest position where parsing failed is where the input stops making sense
+				.append("private void failAt(final int index) {\n")
+				.indent()
+				.append("if (index > furthestFailure) {\n")
+				.indent()
+				.append("furthestFailure = index;\n")
+				.append(
+						"errorPosition = index < tokens.size() ? tokens.start(index) : tokens.errorPosition() != -1L ? tokens.errorPosition() : inputLength;\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n")
+				.append("public long errorPosition() {\n")
 				.indent()
-				.append("result = parse_" + startSymbol + "();\n")
+				.append("return errorPosition;\n")
 				.deindent()
-				.append("} catch (final ArrayIndexOutOfBoundsException e) {\n")
+				.append("}\n");
+		if (atLeastOneSequence) {
+			sb.append("private void push(final int position) {\n")
+					.indent()
+					.append("if (stackSize == stack.length) {\n")
+					.indent()
+					.append("stack = Arrays.copyOf(stack, 2 * stackSize);\n")
+					.deindent()
+					.append("}\n")
+					.append("stack[stackSize++] = position;\n")
+					.deindent()
+					.append("}\n")
+					.append("private int pop() {\n")
+					.indent()
+					.append("return stack[--stackSize];\n")
+					.deindent()
+					.append("}\n");
+		}
+
+		if (options.reducer() || options.parserBackend() != ParserBackend.RECURSIVE_DESCENT) {
+			// values of the children of the nodes being built, when the call stack cannot hold them
+			sb.append("private Object[] values = new Object[16];\n")
+					.append("private int valueCount = 0;\n")
+					.append("private void pushValue(final Object value) {\n")
+					.indent()
+					.append("if (valueCount == values.length) {\n")
+					.indent()
+					.append("values = Arrays.copyOf(values, 2 * valueCount);\n")
+					.deindent()
+					.append("}\n")
+					.append("values[valueCount++] = value;\n")
+					.deindent()
+					.append("}\n")
+					.append("private void popValues(final int base) {\n")
+					.indent()
+					.append("Arrays.fill(values, base, valueCount, null);\n")
+					.append("valueCount = base;\n")
+					.deindent()
+					.append("}\n");
+		}
+
+		sb.append("private void load(final String input) {\n")
 				.indent()
-				.append("return null;\n")
+				.append("this.input = Objects.requireNonNull(input);\n");
+		if (mappedInput) {
+			sb.append("this.bytes = null;\n");
+		}
+		sb.append("this.inputLength = input.length();\n")
+				.append("tokens.reset(input);\n")
 				.deindent()
 				.append("}\n");
+		if (mappedInput) {
+			sb.append("private void load(final MemorySegment input) {\n")
+					.indent()
+					.append("this.input = null;\n")
+					.append("this.bytes = Objects.requireNonNull(input);\n")
+					.append("this.inputLength = input.byteSize();\n")
+					.append("tokens.reset(input);\n")
+					.deindent()
+					.append("}\n");
+		}
+		sb.append("private void restart() {\n")
+				.indent()
+				.append("this.lexerPos = 0L;\n")
+				.append("this.pos = 0;\n")
+				.append("this.furthestFailure = -1;\n")
+				.append("this.errorPosition = -1L;\n");
 		if (atLeastOneSequence) {
-			sb.append("return (pos == v.length && stack.isEmpty()) ? result : null;\n");
-		} else {
-			sb.append("return pos == v.length ? result : null;\n");
+			sb.append("this.stackSize = 0;\n");
+		}
+		if (options.memoization() != Memoization.NONE) {
+			sb.append("clearMemo();\n");
+		}
+		sb.deindent()
+				.append("}\n")
+				.append("private boolean accepted(final boolean matched) {\n")
+				.indent()
+				// a successful parse must consume all tokens, including the ones not lexed yet
+				.append("if (!matched || peek() != EOF || tokens.errorPosition() != -1L) {\n")
+				.indent()
+				.append("failAt(pos);\n")
+				.append("return false;\n")
+				.deindent()
+				.append("}\n")
+				// alternatives that failed along the way do not make the input wrong
+				.append("this.errorPosition = -1L;\n")
+				.append("return true;\n")
+				.deindent()
+				.append("}\n");
+
+		generateEntryPoints(sb, "Node", "parse", "", "", "parseInput()", mappedInput);
+		sb.append("private Node parseInput() {\n")
+				.indent()
+				.append("restart();\n")
+				.append("final Node result = parse_" + startSymbol + "();\n")
+				.append("return accepted(result != null) ? result : null;\n")
+				.deindent()
+				.append("}\n");
+
+		if (options.flatTree()) {
+			generateEntryPoints(sb, "Tree", "parseTree", "", "", "parseTreeInput()", mappedInput);
+			sb.append("private Tree parseTreeInput() {\n")
+					.indent()
+					.append("restart();\n")
+					.append("final Tree result = new Tree(input, " + (mappedInput ? "bytes" : "null") + ");\n")
+					.append("this.tree = result;\n")
+					.append("this.depth = 0;\n")
+					.append("final boolean matched = flat_" + startSymbol + "();\n")
+					.append("this.tree = null;\n")
+					.append("if (!accepted(matched)) {\n")
+					.indent()
+					.append("return null;\n")
+					.deindent()
+					.append("}\n")
+					.append("result.trim();\n")
+					.append("return result;\n")
+					.deindent()
+					.append("}\n");
+		}
+		if (options.eventListener()) {
+			// the listener hears about the input only once all of it has been accepted
+			generateEntryPoints(
+					sb,
+					"boolean",
+					"parse",
+					", final Listener listener",
+					", listener",
+					"parseEvents(listener)",
+					mappedInput);
+			sb.append("private boolean parseEvents(final Listener listener) {\n")
+					.indent()
+					.append("Objects.requireNonNull(listener);\n")
+					.append("restart();\n")
+					.append("events.reset(input, " + (mappedInput ? "bytes" : "null") + ");\n")
+					.append("this.tree = events;\n")
+					.append("this.depth = 0;\n")
+					.append("final boolean matched = flat_" + startSymbol + "();\n")
+					.append("this.tree = null;\n")
+					.append("final boolean accepted = accepted(matched);\n")
+					.append("if (accepted) {\n")
+					.indent()
+					.append("replay(listener);\n")
+					.deindent()
+					.append("}\n")
+					.append("events.reset(null, null);\n")
+					.append("return accepted;\n")
+					.deindent()
+					.append("}\n");
+		}
+		if (options.reducer()) {
+			// on a rejected input the result is null, so the error position tells whether the reducer returned null
+			generateEntryPoints(
+					sb,
+					"<T> T",
+					"parse",
+					", final Reducer<T> reducer",
+					", reducer",
+					"parseReduced(reducer)",
+					mappedInput);
+			sb.append("private <T> T parseReduced(final Reducer<T> reducer) {\n")
+					.indent()
+					.append("Objects.requireNonNull(reducer);\n")
+					.append("restart();\n")
+					.append("final boolean matched = reduce_" + startSymbol + "(reducer);\n")
+					.append("final T result = matched ? valueAt(0) : null;\n")
+					.append("popValues(0);\n")
+					.append("return accepted(matched) ? result : null;\n")
+					.deindent()
+					.append("}\n");
 		}
-		sb.deindent().append("}\n");
 
 		if (generateMainMethod) {
 			sb.append(
@@ -317,7 +692,10 @@ public final class Generator {
 					.append("final Node result;\n")
 					.append("try {\n")
 					.indent()
-					.append("result = parser.parse(Files.readString(Path.of(args[0])));\n")
+					.append(
+							mappedInput
+									? "result = parser.parse(Path.of(args[0]));\n"
+									: "result = parser.parse(Files.readString(Path.of(args[0])));\n")
 					.deindent()
 					.append("} catch (final IOException e) {\n")
 					.indent()
@@ -332,6 +710,66 @@ public final class Generator {
 		return sb.deindent().append("}").toString();
 	}
 
+	private static List<String> memoizedProductions(
+			final List<Production> parserProductions, final GeneratorOptions options) {
+		final List<String> names =
+				parserProductions.stream().map(p -> p.start().name()).toList();
+		return switch (options.memoization()) {
+			case NONE -> List.of();
+			case ALL -> names;
+			case SELECTED -> {
+				for (final String name : options.memoizedProductions()) {
+					if (!names.contains(name)) {
+						throw new IllegalArgumentException(
+								String.format("Cannot memoize unknown production '%s'.", name));
+					}
+				}
+				yield names.stream()
+						.filter(options.memoizedProductions()::contains)
+						.toList();
+			}
+		};
+	}
+
+	private static void generateEntryPoints(
+			final IndentedStringBuilder sb,
+			final String resultType,
+			final String methodName,
+			final String extraParameters,
+			final String extraArguments,
+			final String parseCall,
+			final boolean mappedInput) {
+		sb.append("public " + resultType + " " + methodName + "(final String input" + extraParameters + ") {\n")
+				.indent()
+				.append("load(input);\n")
+				.append("return " + parseCall + ";\n")
+				.deindent()
+				.append("}\n");
+		if (mappedInput) {
+			// the bytes are lexed in place, so inputs larger than the maximum size of a String can be parsed
+			sb.append("public " + resultType + " " + methodName + "(final MemorySegment input" + extraParameters
+							+ ") {\n")
+					.indent()
+					.append("load(input);\n")
+					.append("return " + parseCall + ";\n")
+					.deindent()
+					.append("}\n")
+					// the mapping is released by the GC once no terminal points into it anymore
+					.append("public " + resultType + " " + methodName + "(final Path file" + extraParameters
+							+ ") throws IOException {\n")
+					.indent()
+					.append("try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {\n")
+					.indent()
+					.append("return " + methodName
+							+ "(channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size(), Arena.ofAuto())"
+							+ extraArguments + ");\n")
+					.deindent()
+					.append("}\n")
+					.deindent()
+					.append("}\n");
+		}
+	}
+
 	private static void generateNames(final List<Production> parserProductions) {
 		final Set<Node> visited = new HashSet<>();
 		final Queue<Node> q = new ArrayDeque<>();
@@ -0,0 +1,127 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.generator;
+
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The options to customize the code produced by the {@link Generator}.
+ *
+ * @param transitionEncoding The encoding of the transitions of the generated lexer.
+ * @param tableByteBudget The maximum size, in bytes, of the lexer tables when choosing the encoding automatically.
+ * @param utf8Lexer When true, a second lexer running directly on UTF-8 bytes is generated.
+ * @param memoization Which productions the generated parser remembers the result of.
+ * @param memoizedProductions The names of the productions to remember when memoization is {@link Memoization#SELECTED}.
+ * @param cachedChildren When true, sequence nodes are final classes building the list of their children only once.
+ * @param flatTree When true, the parser can also build a flat, array-backed tree instead of one object per node.
+ * @param eventListener When true, the parser can also report what it matched to a listener, without building a tree.
+ * @param reducer When true, the parser can also fold what it matched into user values, without building a tree.
+ * @param parserBackend How the generated parser runs the productions of the grammar.
+ * @param adaptivePrediction When true, the parser looks as far ahead as needed to choose between alternatives.
+ * @param precedenceClimbing When true, each chain of operator productions is parsed by a single loop.
+ * @param rewriteRecursion When true, left and tail recursion in the grammar are rewritten into repetitions.
+ * @param optimizeGrammar When true, equal expressions share a production and single-use renamings are inlined.
+ * @param leftFactor When true, alternatives starting with the same symbols share the parsing of those symbols.
+ */
+public record GeneratorOptions(
+		TransitionEncoding transitionEncoding,
+		int tableByteBudget,
+		boolean utf8Lexer,
+		Memoization memoization,
+		Set<String> memoizedProductions,
+		boolean cachedChildren,
+		boolean flatTree,
+		boolean eventListener,
+		boolean reducer,
+		ParserBackend parserBackend,
+		boolean adaptivePrediction,
+		boolean precedenceClimbing,
+		boolean rewriteRecursion,
+		boolean optimizeGrammar,
+		boolean leftFactor) {
+
+	/**
+	 * Creates a new GeneratorOptions object.
+	 *
+	 * @param transitionEncoding The encoding of the transitions of the generated lexer.
+	 * @param tableByteBudget The maximum size, in bytes, of the lexer tables when choosing the encoding automatically.
+	 * @param utf8Lexer When true, a second lexer running directly on UTF-8 bytes is generated.
+	 * @param memoization Which productions the generated parser remembers the result of.
+	 * @param memoizedProductions The names of the productions to remember when memoization is
+	 *     {@link Memoization#SELECTED}.
+	 * @param cachedChildren When true, sequence nodes are final classes building the list of their children only once.
+	 * @param flatTree When true, the parser can also build a flat, array-backed tree instead of one object per node.
+	 * @param eventListener When true, the parser can also report what it matched to a listener, without building a
+	 *     tree.
+	 * @param reducer When true, the parser can also fold what it matched into user values, without building a tree.
+	 * @param parserBackend How the generated parser runs the productions of the grammar.
+	 * @param adaptivePrediction When true, the parser looks as far ahead as needed to choose between alternatives.
+	 * @param precedenceClimbing When true, each chain of operator productions is parsed by a single loop.
+	 * @param rewriteRecursion When true, left and tail recursion in the grammar are rewritten into repetitions.
+	 * @param optimizeGrammar When true, equal expressions share a production and single-use renamings are inlined.
+	 * @param leftFactor When true, alternatives starting with the same symbols share the parsing of those symbols.
+	 */
+	public GeneratorOptions {
+		Objects.requireNonNull(transitionEncoding);
+		if (tableByteBudget <= 0) {
+			throw new IllegalArgumentException(
+					String.format("Invalid table byte budget: expected positive but was %,d.", tableByteBudget));
+		}
+		Objects.requireNonNull(memoization);
+		memoizedProductions = Set.copyOf(memoizedProductions);
+		if (memoization == Memoization.SELECTED && memoizedProductions.isEmpty()) {
+			throw new IllegalArgumentException("No productions to memoize.");
+		}
+		Objects.requireNonNull(parserBackend);
+		if (parserBackend != ParserBackend.RECURSIVE_DESCENT && memoization != Memoization.NONE) {
+			throw new IllegalArgumentException(
+					String.format("Cannot memoize a parser with the %s backend.", parserBackend));
+		}
+		if (parserBackend != ParserBackend.RECURSIVE_DESCENT && adaptivePrediction) {
+			throw new IllegalArgumentException(
+					String.format("Cannot use adaptive prediction with the %s backend.", parserBackend));
+		}
+		if (parserBackend != ParserBackend.RECURSIVE_DESCENT && precedenceClimbing) {
+			throw new IllegalArgumentException(
+					String.format("Cannot use precedence climbing with the %s backend.", parserBackend));
+		}
+		// these parsers always run recursive methods of their own, whatever the backend
+		if (parserBackend != ParserBackend.RECURSIVE_DESCENT && flatTree) {
+			throw new IllegalArgumentException(
+					String.format("Cannot generate a flat tree with the %s backend.", parserBackend));
+		}
+		if (parserBackend != ParserBackend.RECURSIVE_DESCENT && eventListener) {
+			throw new IllegalArgumentException(
+					String.format("Cannot generate an event listener with the %s backend.", parserBackend));
+		}
+		if (parserBackend != ParserBackend.RECURSIVE_DESCENT && reducer) {
+			throw new IllegalArgumentException(
+					String.format("Cannot generate a reducer with the %s backend.", parserBackend));
+		}
+	}
+
+	/**
+	 * Returns a new GeneratorOptionsBuilder.
+	 *
+	 * @return A new GeneratorOptionsBuilder.
+	 */
+	public static GeneratorOptionsBuilder builder() {
+		return new GeneratorOptionsBuilder();
+	}
+}
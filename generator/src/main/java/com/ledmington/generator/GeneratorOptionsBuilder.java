@@ -0,0 +1,255 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.generator;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+
+/** A builder for easy creation of GeneratorOptions. Every option which is not set keeps its default value. */
+public final class GeneratorOptionsBuilder {
+
+	private TransitionEncoding transitionEncoding = TransitionEncoding.AUTO;
+	private int tableByteBudget = 64 * 1024;
+	private boolean utf8Lexer = false;
+	private Memoization memoization = Memoization.NONE;
+	private Set<String> memoizedProductions = Set.of();
+	private boolean cachedChildren = false;
+	private boolean flatTree = false;
+	private boolean eventListener = false;
+	private boolean reducer = false;
+	private ParserBackend parserBackend = ParserBackend.RECURSIVE_DESCENT;
+	private boolean adaptivePrediction = false;
+	private boolean precedenceClimbing = false;
+	private boolean rewriteRecursion = false;
+	private boolean optimizeGrammar = false;
+	private boolean leftFactor = false;
+
+	/** Creates a new GeneratorOptionsBuilder with all the default options. */
+	public GeneratorOptionsBuilder() {}
+
+	/**
+	 * Sets the encoding of the transitions of the generated lexer.
+	 *
+	 * @param encoding The new transition encoding.
+	 * @return This instance of GeneratorOptionsBuilder.
+	 */
+	public GeneratorOptionsBuilder transitionEncoding(final TransitionEncoding encoding) {
+		this.transitionEncoding = Objects.requireNonNull(encoding);
+		return this;
+	}
+
+	/**
+	 * Sets the maximum size, in bytes, of the lexer tables when the transition encoding is chosen automatically.
+	 *
+	 * @param bytes The new table byte budget.
+	 * @return This instance of GeneratorOptionsBuilder.
+	 */
+	public GeneratorOptionsBuilder tableByteBudget(final int bytes) {
+		this.tableByteBudget = bytes;
+		return this;
+	}
+
+	/**
+	 * Sets whether to generate a second lexer which runs directly on UTF-8 encoded bytes, without decoding them.
+	 *
+	 * @param generate True to generate the UTF-8 lexer, false otherwise.
+	 * @return This instance of GeneratorOptionsBuilder.
+	 */
+	public GeneratorOptionsBuilder utf8Lexer(final boolean generate) {
+		this.utf8Lexer = generate;
+		return this;
+	}
+
+	/**
+	 * Sets which productions the generated parser remembers the result of.
+	 *
+	 * @param memoization The new memoization mode.
+	 * @return This instance of GeneratorOptionsBuilder.
+	 */
+	public GeneratorOptionsBuilder memoization(final Memoization memoization) {
+		this.memoization = Objects.requireNonNull(memoization);
+		return this;
+	}
+
+	/**
+	 * Sets the productions the generated parser remembers the result of, and selects the
+	 * {@link Memoization#SELECTED} memoization mode.
+	 *
+	 * @param productions The names of the productions to be memoized.
+	 * @return This instance of GeneratorOptionsBuilder.
+	 */
+	public GeneratorOptionsBuilder memoizedProductions(final Collection<String> productions) {
+		this.memoization = Memoization.SELECTED;
+		this.memoizedProductions = Set.copyOf(productions);
+		return this;
+	}
+
+	/**
+	 * Sets whether the generated parser can also build a flat tree, stored in parallel arrays of primitives, instead of
+	 * one object per node. Available only with {@link ParserBackend#RECURSIVE_DESCENT}.
+	 *
+	 * @param generate True to generate the flat tree, false otherwise.
+	 * @return This instance of GeneratorOptionsBuilder.
+	 */
+	public GeneratorOptionsBuilder flatTree(final boolean generate) {
+		this.flatTree = generate;
+		return this;
+	}
+
+	/**
+	 * Sets whether the sequence nodes of the generated parser are final classes which build the list returned by
+	 * {@code nodes()} once, when the node is built, instead of records building it at each call. Walking a tree many
+	 * times then allocates nothing, but the nodes cannot be deconstructed with record patterns anymore.
+	 *
+	 * @param enabled True to cache the children of sequence nodes, false otherwise.
+	 * @return This instance of GeneratorOptionsBuilder.
+	 */
+	public GeneratorOptionsBuilder cachedChildren(final boolean enabled) {
+		this.cachedChildren = enabled;
+		return this;
+	}
+
+	/**
+	 * Sets whether the generated parser can also report the productions and tokens it matched to a listener, instead
+	 * of building a tree. Available only with {@link ParserBackend#RECURSIVE_DESCENT}.
+	 *
+	 * @param generate True to generate the listener, false otherwise.
+	 * @return This instance of GeneratorOptionsBuilder.
+	 */
+	public GeneratorOptionsBuilder eventListener(final boolean generate) {
+		this.eventListener = generate;
+		return this;
+	}
+
+	/**
+	 * Sets whether the generated parser can also fold the productions and tokens it matched into values of the
+	 * user's choice, through a reducer, instead of building a tree. Available only with
+	 * {@link ParserBackend#RECURSIVE_DESCENT}.
+	 *
+	 * @param generate True to generate the reducer, false otherwise.
+	 * @return This instance of GeneratorOptionsBuilder.
+	 */
+	public GeneratorOptionsBuilder reducer(final boolean generate) {
+		this.reducer = generate;
+		return this;
+	}
+
+	/**
+	 * Sets how the generated parser runs the productions of the grammar. Memoization is available only with
+	 * {@link ParserBackend#RECURSIVE_DESCENT}.
+	 *
+	 * @param backend The backend of the generated parser.
+	 * @return This instance of GeneratorOptionsBuilder.
+	 */
+	public GeneratorOptionsBuilder parserBackend(final ParserBackend backend) {
+		this.parserBackend = Objects.requireNonNull(backend);
+		return this;
+	}
+
+	/**
+	 * Sets whether the generated parser chooses between alternatives by looking ahead at as many tokens as needed,
+	 * instead of trying each alternative which may start with the next token. The lookahead automata are built while
+	 * parsing and shared by all parsers. Available only with {@link ParserBackend#RECURSIVE_DESCENT}.
+	 *
+	 * @param enabled True to predict adaptively, false otherwise.
+	 * @return This instance of GeneratorOptionsBuilder.
+	 */
+	public GeneratorOptionsBuilder adaptivePrediction(final boolean enabled) {
+		this.adaptivePrediction = enabled;
+		return this;
+	}
+
+	/**
+	 * Sets whether the generated parser recognizes chains of operator productions, shaped like
+	 * {@code level = operand ( operator operand )*}, and parses each chain with a single loop driven by the level of
+	 * each operator, instead of one call for each level. The tree does not change. Available only with
+	 * {@link ParserBackend#RECURSIVE_DESCENT}.
+	 *
+	 * @param enabled True to climb precedence levels in a loop, false otherwise.
+	 * @return This instance of GeneratorOptionsBuilder.
+	 */
+	public GeneratorOptionsBuilder precedenceClimbing(final boolean enabled) {
+		this.precedenceClimbing = enabled;
+		return this;
+	}
+
+	/**
+	 * Sets whether the grammar is rewritten before generating the parser, so that left-recursive productions, which a
+	 * recursive descent parser cannot handle, and tail-recursive productions, which take one call for each element,
+	 * become repetitions. The language does not change, but the tree does.
+	 *
+	 * @param enabled True to rewrite recursion into repetitions, false otherwise.
+	 * @return This instance of GeneratorOptionsBuilder.
+	 */
+	public GeneratorOptionsBuilder rewriteRecursion(final boolean enabled) {
+		this.rewriteRecursion = enabled;
+		return this;
+	}
+
+	/**
+	 * Sets whether the flattened grammar is optimized before generating the parser, so that equal expressions share a
+	 * single production, and so a single parsing method and type, and productions which only rename a symbol used once
+	 * are replaced by it. The language does not change, but the tree does. Memoized productions are never removed.
+	 *
+	 * @param enabled True to optimize the grammar, false otherwise.
+	 * @return This instance of GeneratorOptionsBuilder.
+	 */
+	public GeneratorOptionsBuilder optimizeGrammar(final boolean enabled) {
+		this.optimizeGrammar = enabled;
+		return this;
+	}
+
+	/**
+	 * Sets whether the grammar is left-factored before generating the parser, so that alternatives starting with the
+	 * same symbols become a single alternative parsing those symbols once, followed by a choice between what comes
+	 * after them. Alternatives are grouped only where FIRST sets show that the order of the choice is kept. The language
+	 * does not change, but the tree does.
+	 *
+	 * @param enabled True to left-factor the grammar, false otherwise.
+	 * @return This instance of GeneratorOptionsBuilder.
+	 */
+	public GeneratorOptionsBuilder leftFactor(final boolean enabled) {
+		this.leftFactor = enabled;
+		return this;
+	}
+
+	/**
+	 * Creates a new GeneratorOptions object with the data contained.
+	 *
+	 * @return A new GeneratorOptions.
+	 */
+	public GeneratorOptions build() {
+		return new GeneratorOptions(
+				transitionEncoding,
+				tableByteBudget,
+				utf8Lexer,
+				memoization,
+				memoizedProductions,
+				cachedChildren,
+				flatTree,
+				eventListener,
+				reducer,
+				parserBackend,
+				adaptivePrediction,
+				precedenceClimbing,
+				rewriteRecursion,
+				optimizeGrammar,
+				leftFactor);
+	}
+}
@@ -17,8 +17,10 @@
  */
 package com.ledmington.generator;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -84,13 +86,148 @@ public final class GrammarChecker {
 		}
 	}
 
+	/**
+	 * Checks that the given EBNF grammar can be parsed by an LALR(1) parser, that is, that the next token is always
+	 * enough to choose between shifting it and reducing, and which rule to reduce, and that it accepts the same inputs
+	 * as the other backends. Throws an IllegalArgumentException listing the conflicts in case it's not.
+	 *
+	 * @param g The grammar to be checked.
+	 */
+	public static void checkLALR1(final Grammar g) {
+		checkConflicts(LALRAutomaton.of(g));
+		checkOrderedChoices(g);
+	}
+
+	/**
+	 * Throws an IllegalArgumentException listing the conflicts of the given LALR(1) automaton, if there are any.
+	 *
+	 * @param automaton The automaton to be checked.
+	 */
+	static void checkConflicts(final LALRAutomaton automaton) {
+		final List<String> conflicts = automaton.conflicts().stream().distinct().toList();
+		if (!conflicts.isEmpty()) {
+			throw new IllegalArgumentException("The grammar is not LALR(1):\n" + String.join("\n", conflicts));
+		}
+	}
+
+	/**
+	 * Throws an IllegalArgumentException listing the choices of the given grammar whose alternatives may start with the
+	 * same token, if there are any.
+	 *
+	 * @param g The grammar to be checked.
+	 */
+	static void checkOrderedChoices(final Grammar g) {
+		final List<String> overlapping = findOverlappingAlternatives(g);
+		if (!overlapping.isEmpty()) {
+			throw new IllegalArgumentException(
+					"The grammar depends on the order of its alternatives:\n" + String.join("\n", overlapping));
+		}
+	}
+
+	/*
+	The other backends try the alternatives of a choice in order and keep the first one which matches, while an LALR(1)
+	parser keeps all of them alive until the input decides. Whenever two alternatives may start with the same token, the
+	earlier one may match where the later one would have matched more, so the two parsers may accept different inputs.
+	Telling whether they really do is not worth it: any such choice is rejected, as is a choice with an alternative
+	matching the empty input before others, since those are never tried. Alternatives starting with their own production
+	are left out, since the other backends cannot run them at all.
+	 */
+	private static List<String> findOverlappingAlternatives(final Grammar g) {
+		final List<Production> productions = g.getParserProductions();
+		final Map<String, Expression> results = new HashMap<>();
+		for (final Production p : productions) {
+			results.put(p.start().name(), p.result());
+		}
+		final List<String> overlapping = new ArrayList<>();
+		for (final Production p : productions) {
+			if (!(p.result() instanceof final Or or)) {
+				continue;
+			}
+			final String name = p.start().name();
+			final List<Integer> indices = new ArrayList<>();
+			final List<Set<Terminal>> firstSets = new ArrayList<>();
+			for (int i = 0; i < or.expressions().size(); i++) {
+				final Expression alternative = or.expressions().get(i);
+				if (!startsWith(productions, results, alternative, name, new HashSet<>())) {
+					indices.add(i);
+					firstSets.add(GrammarUtils.computeFirstSet(productions, alternative));
+				}
+			}
+			for (int i = 0; i < indices.size(); i++) {
+				if (firstSets.get(i).contains(GrammarUtils.EMPTY_TERMINAL) && i < indices.size() - 1) {
+					overlapping.add(String.format(
+							"Alternative %,d of '%s' may match the empty input, so the ones after it are never tried.",
+							indices.get(i) + 1, name));
+					continue;
+				}
+				for (int j = i + 1; j < indices.size(); j++) {
+					final Set<Terminal> common = new HashSet<>(firstSets.get(i));
+					common.retainAll(firstSets.get(j));
+					common.remove(GrammarUtils.EMPTY_TERMINAL);
+					if (!common.isEmpty()) {
+						overlapping.add(String.format(
+								"Alternatives %,d and %,d of '%s' may both start with %s.",
+								indices.get(i) + 1,
+								indices.get(j) + 1,
+								name,
+								common.stream()
+										.map(t -> "'" + t.literal() + "'")
+										.sorted()
+										.collect(Collectors.joining(", "))));
+					}
+				}
+			}
+		}
+		return overlapping;
+	}
+
+	/*
+	Tells whether the given expression may start with the given production, looking past the parts which may be empty.
+	 */
+	private static boolean startsWith(
+			final List<Production> productions,
+			final Map<String, Expression> results,
+			final Expression exp,
+			final String target,
+			final Set<String> visited) {
+		return switch (exp) {
+			case NonTerminal nt ->
+				nt.name().equals(target)
+						|| (results.containsKey(nt.name())
+								&& visited.add(nt.name())
+								&& startsWith(productions, results, results.get(nt.name()), target, visited));
+			case Sequence s -> {
+				for (final Expression e : s.expressions()) {
+					if (startsWith(productions, results, e, target, visited)) {
+						yield true;
+					}
+					if (!GrammarUtils.computeFirstSet(productions, e).contains(GrammarUtils.EMPTY_TERMINAL)) {
+						yield false;
+					}
+				}
+				yield false;
+			}
+			case Or or -> or.expressions().stream().anyMatch(e -> startsWith(productions, results, e, target, visited));
+			case ZeroOrOne zoo -> startsWith(productions, results, zoo.inner(), target, visited);
+			case ZeroOrMore zom -> startsWith(productions, results, zom.inner(), target, visited);
+			case OneOrMore oom -> startsWith(productions, results, oom.inner(), target, visited);
+			default -> false;
+		};
+	}
+
 	private static <X> Set<X> without(final Set<X> s, final X toBeRemoved) {
 		final Set<X> c = new HashSet<>(s);
 		c.remove(toBeRemoved);
 		return c;
 	}
 
-	private static Set<NonTerminal> findAllNonTerminals(final Expression exp) {
+	/**
+	 * Returns the non-terminal symbols appearing anywhere in the given expression.
+	 *
+	 * @param exp The expression to be searched.
+	 * @return The non-terminal symbols of the expression.
+	 */
+	static Set<NonTerminal> findAllNonTerminals(final Expression exp) {
 		return switch (exp) {
 			case Terminal _ -> Set.of();
 			case NonTerminal nt -> Set.of(nt);
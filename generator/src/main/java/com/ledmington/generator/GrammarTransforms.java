@@ -0,0 +1,575 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.generator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.ledmington.ebnf.Expression;
+import com.ledmington.ebnf.Grammar;
+import com.ledmington.ebnf.NonTerminal;
+import com.ledmington.ebnf.OneOrMore;
+import com.ledmington.ebnf.Or;
+import com.ledmington.ebnf.Production;
+import com.ledmington.ebnf.Sequence;
+import com.ledmington.ebnf.Terminal;
+import com.ledmington.ebnf.ZeroOrMore;
+import com.ledmington.ebnf.ZeroOrOne;
+import com.ledmington.utils.GraphUtils;
+
+/** A collection of rewritings of EBNF grammars which keep the language they describe. */
+public final class GrammarTransforms {
+
+	private GrammarTransforms() {}
+
+	/**
+	 * Rewrites the recursion of the given grammar into repetitions. A left-recursive production, directly or through
+	 * other productions, becomes its other alternatives followed by a repetition of what comes after the recursion, so
+	 * that a recursive descent parser does not call itself forever. A tail-recursive production becomes a repetition of
+	 * what comes before the recursion, so that it is parsed by a loop instead of one call for each element. Tail
+	 * recursion is rewritten only when the next token is always enough to choose between the alternatives, since a
+	 * repetition never gives back what it matched.
+	 *
+	 * @param g The grammar to be rewritten.
+	 * @return A new grammar describing the same language.
+	 */
+	public static Grammar rewriteRecursion(final Grammar g) {
+		Objects.requireNonNull(g);
+
+		final Map<NonTerminal, Expression> productions = splitParserProductions(g);
+		final Map<NonTerminal, Expression> rewritten = new HashMap<>();
+		eliminateLeftRecursion(productions, rewritten);
+		eliminateTailRecursion(productions, rewritten);
+		final List<Production> result = withRewritten(g, rewritten);
+
+		// inlining may leave a production without anybody using it
+		final Map<NonTerminal, Set<NonTerminal>> graph = new HashMap<>();
+		for (final Production p : result) {
+			graph.put(p.start(), GrammarChecker.findAllNonTerminals(p.result()));
+		}
+		final Set<NonTerminal> reachable = GraphUtils.bfs(result.getFirst().start(), graph::get);
+		result.removeIf(p -> productions.containsKey(p.start()) && !reachable.contains(p.start()));
+		return new Grammar(result);
+	}
+
+	/**
+	 * Left-factors the alternatives of the given grammar: alternatives starting with the same symbols become a single
+	 * one, made of those symbols followed by a choice between what comes after them in each alternative, so that the
+	 * common prefix is parsed once instead of once for each alternative tried. Alternatives are grouped only when the
+	 * ones between them cannot start with the same token, since the first alternative to succeed wins and grouping moves
+	 * the later ones before them.
+	 *
+	 * @param g The grammar to be left-factored.
+	 * @return A new grammar describing the same language.
+	 */
+	public static Grammar leftFactor(final Grammar g) {
+		Objects.requireNonNull(g);
+
+		final Map<NonTerminal, Expression> productions = splitParserProductions(g);
+		final List<Production> view = productions.entrySet().stream()
+				.map(e -> new Production(e.getKey(), e.getValue()))
+				.toList();
+		final Map<NonTerminal, Expression> rewritten = new HashMap<>();
+		for (final Map.Entry<NonTerminal, Expression> e : productions.entrySet()) {
+			final Expression result = leftFactor(view, e.getValue());
+			if (!result.equals(e.getValue())) {
+				rewritten.put(e.getKey(), result);
+			}
+		}
+		return new Grammar(withRewritten(g, rewritten));
+	}
+
+	private static Expression leftFactor(final List<Production> view, final Expression exp) {
+		return switch (exp) {
+			case NonTerminal nt -> nt;
+			case Sequence s ->
+				new Sequence(s.expressions().stream()
+						.map(e -> leftFactor(view, e))
+						.toList());
+			case Or or ->
+				choice(leftFactor(
+						view,
+						or.expressions().stream()
+								.map(e -> symbols(leftFactor(view, e)))
+								.toList()));
+			case ZeroOrOne zoo -> new ZeroOrOne(leftFactor(view, zoo.inner()));
+			case ZeroOrMore zom -> new ZeroOrMore(leftFactor(view, zom.inner()));
+			case OneOrMore oom -> new OneOrMore(leftFactor(view, oom.inner()));
+			default -> throw new IllegalArgumentException(String.format("Unknown node: '%s'.", exp));
+		};
+	}
+
+	/*
+	Alternatives are grouped by their first symbol, and each group takes the place of its first alternative. Since the
+	same symbols are parsed in the same way at the same position, parsing the prefix once and then trying what follows
+	it in each alternative, in order, gives the same result as trying each whole alternative, as long as no alternative
+	is just the prefix: that one would succeed before the longer ones are even tried, so it can only be the last, where
+	it becomes the choice being optional.
+	 */
+	private static List<List<Expression>> leftFactor(
+			final List<Production> view, final List<List<Expression>> alternatives) {
+		final Map<Expression, List<Integer>> groups = new LinkedHashMap<>();
+		for (int i = 0; i < alternatives.size(); i++) {
+			groups.computeIfAbsent(alternatives.get(i).getFirst(), k -> new ArrayList<>()).add(i);
+		}
+		final Map<Integer, List<Expression>> factored = new HashMap<>();
+		final Set<Integer> merged = new HashSet<>();
+		for (final List<Integer> group : groups.values()) {
+			if (group.size() > 1 && canGroup(view, alternatives, group)) {
+				final List<List<Expression>> members =
+						group.stream().map(alternatives::get).toList();
+				final List<Expression> prefix = commonPrefix(members);
+				final List<List<Expression>> residuals = members.stream()
+						.map(m -> m.subList(prefix.size(), m.size()))
+						.toList();
+				final List<List<Expression>> nonEmpty =
+						residuals.stream().filter(r -> !r.isEmpty()).toList();
+				final int empty = residuals.size() - nonEmpty.size();
+				if (empty > 1 || (empty == 1 && !residuals.getLast().isEmpty())) {
+					continue;
+				}
+				final Expression rest = choice(leftFactor(view, nonEmpty));
+				factored.put(group.getFirst(), concat(prefix, List.of(empty == 1 ? new ZeroOrOne(rest) : rest)));
+				merged.addAll(group.subList(1, group.size()));
+			}
+		}
+		final List<List<Expression>> result = new ArrayList<>();
+		for (int i = 0; i < alternatives.size(); i++) {
+			if (!merged.contains(i)) {
+				result.add(factored.getOrDefault(i, alternatives.get(i)));
+			}
+		}
+		return result;
+	}
+
+	private static boolean canGroup(
+			final List<Production> view, final List<List<Expression>> alternatives, final List<Integer> group) {
+		final Set<Terminal> first =
+				GrammarUtils.computeFirstSet(view, alternatives.get(group.getFirst()).getFirst());
+		if (first.contains(GrammarUtils.EMPTY_TERMINAL)) {
+			return false;
+		}
+		for (int i = group.getFirst() + 1; i < group.getLast(); i++) {
+			if (!group.contains(i)) {
+				final Set<Terminal> other = GrammarUtils.computeFirstSet(view, sequence(alternatives.get(i)));
+				if (other.contains(GrammarUtils.EMPTY_TERMINAL) || other.stream().anyMatch(first::contains)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static List<Expression> commonPrefix(final List<List<Expression>> alternatives) {
+		int length = 0;
+		while (true) {
+			final int i = length;
+			if (alternatives.stream()
+					.anyMatch(a -> a.size() <= i || !a.get(i).equals(alternatives.getFirst().get(i)))) {
+				return alternatives.getFirst().subList(0, length);
+			}
+			length++;
+		}
+	}
+
+	/**
+	 * Optimizes the flattened productions of the given grammar, so that the parser needs fewer methods and types.
+	 * Composite expressions which appear more than once, and which flattening turns into a new production each time,
+	 * become a single production used by all of them. Productions which only rename another symbol and are used once
+	 * are replaced by that symbol. The language does not change, but the tree does: a shared production keeps the name
+	 * of its first occurrence, and a renaming production is no longer a node.
+	 *
+	 * @param g The grammar to be optimized.
+	 * @return A new grammar describing the same language.
+	 */
+	public static Grammar optimize(final Grammar g) {
+		return optimize(g, Set.of());
+	}
+
+	/**
+	 * Optimizes the flattened productions of the given grammar, so that the parser needs fewer methods and types,
+	 * without removing the given productions.
+	 *
+	 * @param g The grammar to be optimized.
+	 * @param preserved The names of the productions which must still exist in the new grammar.
+	 * @return A new grammar describing the same language.
+	 * @see #optimize(Grammar)
+	 */
+	public static Grammar optimize(final Grammar g, final Set<String> preserved) {
+		Objects.requireNonNull(g);
+		Objects.requireNonNull(preserved);
+
+		final NonTerminal start = new NonTerminal(g.getStartSymbol());
+		final Set<NonTerminal> named =
+				g.getProductions().stream().map(Production::start).collect(Collectors.toSet());
+		final Map<NonTerminal, Expression> productions = new LinkedHashMap<>();
+		for (final Production p : g.getParserProductions()) {
+			productions.put(p.start(), p.result());
+		}
+		// sharing may make two parents equal, and inlining may make two sequences equal, so both run until neither can
+		boolean changed = true;
+		while (changed) {
+			changed = shareCommonExpressions(productions, named);
+			changed |= inlineRenaming(productions, start, preserved);
+		}
+
+		// the grammar starts from its first production, and flattening the other ones again changes nothing
+		final Map<NonTerminal, Expression> anonymousTerminals = anonymousTerminals(g);
+		final List<Production> result = new ArrayList<>();
+		result.add(new Production(start, replace(productions.remove(start), anonymousTerminals)));
+		for (final Map.Entry<NonTerminal, Expression> e : productions.entrySet()) {
+			result.add(new Production(e.getKey(), replace(e.getValue(), anonymousTerminals)));
+		}
+		for (final Production p : g.getLexerProductions()) {
+			if (!anonymousTerminals.containsKey(p.start())) {
+				result.add(p);
+			}
+		}
+		return new Grammar(result);
+	}
+
+	/*
+	Flattening names each composite expression after its kind and a counter, so equal expressions end up in productions
+	with equal results but different names. The first production with a given result is kept, preferring the ones
+	written in the grammar, and every reference to the others is redirected to it. Productions written in the grammar are
+	never removed, since they are part of the tree.
+	 */
+	private static boolean shareCommonExpressions(
+			final Map<NonTerminal, Expression> productions, final Set<NonTerminal> named) {
+		final Map<Expression, NonTerminal> canonical = new HashMap<>();
+		for (final Map.Entry<NonTerminal, Expression> e : productions.entrySet()) {
+			if (named.contains(e.getKey())) {
+				canonical.putIfAbsent(e.getValue(), e.getKey());
+			}
+		}
+		final Map<NonTerminal, Expression> duplicates = new HashMap<>();
+		for (final Map.Entry<NonTerminal, Expression> e : productions.entrySet()) {
+			if (!named.contains(e.getKey())) {
+				final NonTerminal first = canonical.putIfAbsent(e.getValue(), e.getKey());
+				if (first != null) {
+					duplicates.put(e.getKey(), first);
+				}
+			}
+		}
+		if (duplicates.isEmpty()) {
+			return false;
+		}
+		productions.keySet().removeAll(duplicates.keySet());
+		productions.replaceAll((nt, result) -> replace(result, duplicates));
+		return true;
+	}
+
+	private static boolean inlineRenaming(
+			final Map<NonTerminal, Expression> productions, final NonTerminal start, final Set<String> preserved) {
+		final Map<NonTerminal, Integer> uses = new HashMap<>();
+		for (final Expression result : productions.values()) {
+			countUses(result, uses);
+		}
+		for (final Map.Entry<NonTerminal, Expression> e : productions.entrySet()) {
+			final NonTerminal renaming = e.getKey();
+			if (e.getValue() instanceof final NonTerminal renamed
+					&& !renaming.equals(start)
+					&& !renaming.equals(renamed)
+					&& !preserved.contains(renaming.name())
+					&& uses.getOrDefault(renaming, 0) == 1) {
+				productions.remove(renaming);
+				productions.replaceAll((nt, result) -> replace(result, Map.of(renaming, renamed)));
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void countUses(final Expression exp, final Map<NonTerminal, Integer> uses) {
+		switch (exp) {
+			case NonTerminal nt -> uses.merge(nt, 1, Integer::sum);
+			case Terminal ignored -> {}
+			case Sequence s -> s.expressions().forEach(e -> countUses(e, uses));
+			case Or or -> or.expressions().forEach(e -> countUses(e, uses));
+			case ZeroOrOne zoo -> countUses(zoo.inner(), uses);
+			case ZeroOrMore zom -> countUses(zom.inner(), uses);
+			case OneOrMore oom -> countUses(oom.inner(), uses);
+			default -> throw new IllegalArgumentException(String.format("Unknown node: '%s'.", exp));
+		}
+	}
+
+	private static Map<NonTerminal, Expression> splitParserProductions(final Grammar g) {
+		final List<Production> parserProductions = new ArrayList<>();
+		Grammar.splitProductions(g.getProductions(), new ArrayList<>(), parserProductions);
+		final Map<NonTerminal, Expression> productions = new LinkedHashMap<>();
+		for (final Production p : parserProductions) {
+			productions.put(p.start(), p.result());
+		}
+		return productions;
+	}
+
+	private static List<Production> withRewritten(final Grammar g, final Map<NonTerminal, Expression> rewritten) {
+		final Map<NonTerminal, Expression> anonymousTerminals = anonymousTerminals(g);
+		final List<Production> result = new ArrayList<>();
+		for (final Production p : g.getProductions()) {
+			result.add(
+					rewritten.containsKey(p.start())
+							? new Production(p.start(), replace(rewritten.get(p.start()), anonymousTerminals))
+							: p);
+		}
+		return result;
+	}
+
+	/*
+	Splitting the grammar turns the terminals written inside parser productions into tokens of their own. They are put
+	back as they were before building a new grammar, which splits them again.
+	 */
+	private static Map<NonTerminal, Expression> anonymousTerminals(final Grammar g) {
+		final Map<NonTerminal, Expression> anonymousTerminals = new HashMap<>();
+		for (final Production p : g.getLexerProductions()) {
+			if (g.getProductions().stream().noneMatch(x -> x.start().equals(p.start()))) {
+				anonymousTerminals.put(p.start(), p.result());
+			}
+		}
+		return anonymousTerminals;
+	}
+
+	/*
+	This is the classic algorithm: the left-recursive productions are taken in order, and each one gets the productions
+	before it which may start it inlined, so that any left recursion becomes direct and is then replaced by a
+	repetition. Only productions which are left-recursive together are inlined, since the others are already fine as they
+	are.
+	 */
+	private static void eliminateLeftRecursion(
+			final Map<NonTerminal, Expression> productions, final Map<NonTerminal, Expression> rewritten) {
+		final Map<NonTerminal, Set<NonTerminal>> leftCorners = new HashMap<>();
+		for (final Map.Entry<NonTerminal, Expression> e : productions.entrySet()) {
+			final Set<NonTerminal> heads = new HashSet<>();
+			for (final Expression alternative : alternatives(e.getValue())) {
+				final Expression head = symbols(alternative).getFirst();
+				if (head instanceof final NonTerminal nt && productions.containsKey(nt)) {
+					heads.add(nt);
+				}
+			}
+			leftCorners.put(e.getKey(), heads);
+		}
+		final Map<NonTerminal, Set<NonTerminal>> reachable = new HashMap<>();
+		for (final NonTerminal nt : productions.keySet()) {
+			final Set<NonTerminal> r = new HashSet<>();
+			for (final NonTerminal head : leftCorners.get(nt)) {
+				r.addAll(GraphUtils.bfs(head, leftCorners::get));
+			}
+			reachable.put(nt, r);
+		}
+		final List<NonTerminal> order = productions.keySet().stream()
+				.filter(nt -> reachable.get(nt).contains(nt))
+				.toList();
+
+		// what each production was rewritten into: the alternatives not starting with itself and the repetition after
+		final Map<NonTerminal, List<List<Expression>>> bases = new HashMap<>();
+		final Map<NonTerminal, Expression> loops = new HashMap<>();
+		for (int i = 0; i < order.size(); i++) {
+			final NonTerminal current = order.get(i);
+			List<List<Expression>> alternatives =
+					alternatives(productions.get(current)).stream().map(GrammarTransforms::symbols).toList();
+			for (int j = 0; j < i; j++) {
+				final NonTerminal previous = order.get(j);
+				if (reachable.get(previous).contains(current)) {
+					alternatives = inline(alternatives, previous, bases.get(previous), loops.get(previous));
+				}
+			}
+
+			final List<List<Expression>> recursive = new ArrayList<>();
+			final List<List<Expression>> others = new ArrayList<>();
+			for (final List<Expression> alternative : alternatives) {
+				if (!alternative.getFirst().equals(current)) {
+					others.add(alternative);
+				} else if (alternative.size() > 1) {
+					recursive.add(alternative.subList(1, alternative.size()));
+				}
+				// an alternative made only of the production itself matches nothing new, so it is dropped
+			}
+			if (recursive.isEmpty() || others.isEmpty()) {
+				// without an alternative to start from, the production matches nothing, and it is left as it is
+				bases.put(current, alternatives(productions.get(current)).stream()
+						.map(GrammarTransforms::symbols)
+						.toList());
+				continue;
+			}
+			final Expression loop = new ZeroOrMore(choice(recursive));
+			bases.put(current, others);
+			loops.put(current, loop);
+			final Expression result = others.size() == 1
+					? sequence(concat(others.getFirst(), List.of(loop)))
+					: new Sequence(choice(others), loop);
+			update(productions, rewritten, current, result);
+		}
+	}
+
+	private static List<List<Expression>> inline(
+			final List<List<Expression>> alternatives,
+			final NonTerminal inlined,
+			final List<List<Expression>> bases,
+			final Expression loop) {
+		final List<List<Expression>> result = new ArrayList<>();
+		for (final List<Expression> alternative : alternatives) {
+			if (!alternative.getFirst().equals(inlined)) {
+				result.add(alternative);
+				continue;
+			}
+			final List<Expression> rest = alternative.subList(1, alternative.size());
+			for (final List<Expression> base : bases) {
+				result.add(concat(concat(base, loop == null ? List.of() : List.of(loop)), rest));
+			}
+		}
+		return result;
+	}
+
+	/*
+	A production ending with an optional recursion, like 'list = item ( COMMA list )?', always becomes a repetition,
+	since the optional part gives back what it matched in the same way a repetition does. A production with alternatives
+	ending with a recursion, like 'list = item list | END', becomes a repetition of those alternatives followed by the
+	others, but only when each token can start one alternative at most: otherwise, the recursion would try the other
+	alternatives after one of them fails, which the repetition does not do.
+	 */
+	private static void eliminateTailRecursion(
+			final Map<NonTerminal, Expression> productions, final Map<NonTerminal, Expression> rewritten) {
+		for (final NonTerminal current : List.copyOf(productions.keySet())) {
+			final List<Production> view = productions.entrySet().stream()
+					.map(e -> new Production(e.getKey(), e.getValue()))
+					.toList();
+			final Expression result = productions.get(current);
+
+			final List<Expression> symbols = symbols(result);
+			if (result instanceof Sequence
+					&& symbols.size() > 1
+					&& symbols.getLast() instanceof final ZeroOrOne zoo
+					&& symbols(zoo.inner()).getLast().equals(current)) {
+				final List<Expression> prefix = symbols.subList(0, symbols.size() - 1);
+				final List<Expression> inner = symbols(zoo.inner());
+				final List<Expression> separator = inner.subList(0, inner.size() - 1);
+				final Expression repeated = sequence(concat(separator, prefix));
+				// a repetition of something which may match nothing would never stop
+				if (mayBeEmpty(view, sequence(prefix)) || mayBeEmpty(view, repeated)) {
+					continue;
+				}
+				final Expression loop = separator.isEmpty() ? new OneOrMore(repeated) : new ZeroOrMore(repeated);
+				update(
+						productions,
+						rewritten,
+						current,
+						separator.isEmpty() ? loop : sequence(concat(prefix, List.of(loop))));
+				continue;
+			}
+
+			if (!(result instanceof final Or or)) {
+				continue;
+			}
+			final List<List<Expression>> recursive = new ArrayList<>();
+			final List<Expression> others = new ArrayList<>();
+			for (final Expression alternative : or.expressions()) {
+				final List<Expression> s = symbols(alternative);
+				if (s.size() > 1 && s.getLast().equals(current)) {
+					recursive.add(s.subList(0, s.size() - 1));
+				} else {
+					others.add(alternative);
+				}
+			}
+			if (recursive.isEmpty() || others.isEmpty() || !isPredictive(view, or.expressions())) {
+				continue;
+			}
+			final Expression loop = new ZeroOrMore(choice(recursive));
+			update(
+					productions,
+					rewritten,
+					current,
+					others.size() == 1
+							? sequence(concat(List.of(loop), symbols(others.getFirst())))
+							: new Sequence(loop, new Or(others)));
+		}
+	}
+
+	private static void update(
+			final Map<NonTerminal, Expression> productions,
+			final Map<NonTerminal, Expression> rewritten,
+			final NonTerminal nt,
+			final Expression result) {
+		productions.put(nt, result);
+		rewritten.put(nt, result);
+	}
+
+	private static boolean mayBeEmpty(final List<Production> productions, final Expression exp) {
+		return GrammarUtils.computeFirstSet(productions, exp).contains(GrammarUtils.EMPTY_TERMINAL);
+	}
+
+	private static boolean isPredictive(final List<Production> productions, final List<Expression> alternatives) {
+		final Set<Terminal> seen = new HashSet<>();
+		for (final Expression alternative : alternatives) {
+			final Set<Terminal> first = GrammarUtils.computeFirstSet(productions, alternative);
+			if (first.contains(GrammarUtils.EMPTY_TERMINAL) || first.stream().anyMatch(t -> !seen.add(t))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static List<Expression> alternatives(final Expression exp) {
+		return exp instanceof final Or or ? or.expressions() : List.of(exp);
+	}
+
+	private static List<Expression> symbols(final Expression exp) {
+		return exp instanceof final Sequence s ? s.expressions() : List.of(exp);
+	}
+
+	private static Expression sequence(final List<Expression> symbols) {
+		return symbols.size() == 1 ? symbols.getFirst() : new Sequence(symbols);
+	}
+
+	private static Expression choice(final List<List<Expression>> alternatives) {
+		return alternatives.size() == 1
+				? sequence(alternatives.getFirst())
+				: new Or(alternatives.stream().map(GrammarTransforms::sequence).toList());
+	}
+
+	private static List<Expression> concat(final List<Expression> first, final List<Expression> second) {
+		final List<Expression> result = new ArrayList<>(first);
+		result.addAll(second);
+		return result;
+	}
+
+	private static Expression replace(final Expression exp, final Map<NonTerminal, Expression> replacements) {
+		return switch (exp) {
+			case NonTerminal nt -> replacements.getOrDefault(nt, nt);
+			case Terminal t -> t;
+			case Sequence s ->
+				new Sequence(s.expressions().stream()
+						.map(e -> replace(e, replacements))
+						.toList());
+			case Or or ->
+				new Or(or.expressions().stream()
+						.map(e -> replace(e, replacements))
+						.toList());
+			case ZeroOrOne zoo -> new ZeroOrOne(replace(zoo.inner(), replacements));
+			case ZeroOrMore zom -> new ZeroOrMore(replace(zom.inner(), replacements));
+			case OneOrMore oom -> new OneOrMore(replace(oom.inner(), replacements));
+			default -> throw new IllegalArgumentException(String.format("Unknown node: '%s'.", exp));
+		};
+	}
+}
@@ -17,12 +17,15 @@
  */
 package com.ledmington.generator;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import com.ledmington.ebnf.Expression;
 import com.ledmington.ebnf.Grammar;
@@ -77,7 +80,19 @@ public final class GrammarUtils {
 		return result;
 	}
 
-	private static Set<Terminal> computeFirstSet(final List<Production> parserProductions, final Expression expr) {
+	/**
+	 * Computes the FIRST set of the given expression, which may be nested and may refer to any of the given productions.
+	 *
+	 * @param parserProductions The parser productions the expression may refer to.
+	 * @param expr The expression to be analyzed.
+	 * @return The FIRST set of the expression.
+	 */
+	static Set<Terminal> computeFirstSet(final List<Production> parserProductions, final Expression expr) {
+		return computeFirstSet(parserProductions, expr, new HashSet<>());
+	}
+
+	private static Set<Terminal> computeFirstSet(
+			final List<Production> parserProductions, final Expression expr, final Set<NonTerminal> visiting) {
 		final Set<Terminal> firstSet = new HashSet<>();
 
 		switch (expr) {
@@ -86,8 +101,12 @@ public final class GrammarUtils {
 						.filter(p -> p.start().equals(nt))
 						.findFirst();
 				if (otherProd.isPresent()) {
-					firstSet.addAll(computeFirstSet(
-							parserProductions, otherProd.orElseThrow().result()));
+					// a left-recursive non-terminal adds nothing to its own FIRST set
+					if (visiting.add(nt)) {
+						firstSet.addAll(computeFirstSet(
+								parserProductions, otherProd.orElseThrow().result(), visiting));
+						visiting.remove(nt);
+					}
 				} else {
 					// if there are no production for this non-terminal, it is a fake one mapping directly to a lexer
 					// production
@@ -95,17 +114,19 @@ public final class GrammarUtils {
 				}
 			}
 			case Sequence s ->
-				firstSet.addAll(
-						computeFirstSet(parserProductions, s.expressions().getFirst()));
-			case Or or -> or.expressions().forEach(e -> firstSet.addAll(computeFirstSet(parserProductions, e)));
-			case OneOrMore oom -> firstSet.addAll(computeFirstSet(parserProductions, oom.inner()));
+				firstSet.addAll(computeFirstSet(
+						parserProductions, s.expressions().getFirst(), visiting));
+			case Or or ->
+				or.expressions()
+						.forEach(e -> firstSet.addAll(computeFirstSet(parserProductions, e, visiting)));
+			case OneOrMore oom -> firstSet.addAll(computeFirstSet(parserProductions, oom.inner(), visiting));
 			case ZeroOrOne zoo -> {
 				firstSet.add(EMPTY_TERMINAL);
-				firstSet.addAll(computeFirstSet(parserProductions, zoo.inner()));
+				firstSet.addAll(computeFirstSet(parserProductions, zoo.inner(), visiting));
 			}
 			case ZeroOrMore zom -> {
 				firstSet.add(EMPTY_TERMINAL);
-				firstSet.addAll(computeFirstSet(parserProductions, zom.inner()));
+				firstSet.addAll(computeFirstSet(parserProductions, zom.inner(), visiting));
 			}
 			default -> throw new AssertionError(String.format("Unknown node: '%s'.", expr));
 		}
@@ -113,6 +134,58 @@ public final class GrammarUtils {
 		return firstSet;
 	}
 
+	/**
+	 * Computes which alternatives of the given Or expression may succeed, depending on the type of the next token. An
+	 * alternative which may match the empty input may succeed on any token.
+	 *
+	 * @param g The grammar containing the Or expression.
+	 * @param or The Or expression to be analyzed.
+	 * @return The alternatives which may succeed on each type of token.
+	 */
+	static OrPrediction predict(final Grammar g, final Or or) {
+		final List<Expression> alternatives = or.expressions();
+		final List<Set<Terminal>> firstSets = alternatives.stream()
+				.map(e -> computeFirstSet(g.getParserProductions(), e))
+				.toList();
+
+		final List<Integer> otherwise = new ArrayList<>();
+		final Set<String> tokens = new TreeSet<>();
+		for (int i = 0; i < alternatives.size(); i++) {
+			if (containsEpsilon(firstSets.get(i))) {
+				otherwise.add(i);
+			}
+			withoutEpsilon(firstSets.get(i)).forEach(t -> tokens.add(t.literal()));
+		}
+
+		final Map<String, List<Integer>> byToken = new TreeMap<>();
+		for (final String token : tokens) {
+			final List<Integer> candidates = new ArrayList<>();
+			for (int i = 0; i < alternatives.size(); i++) {
+				final Set<Terminal> fs = firstSets.get(i);
+				if (containsEpsilon(fs) || fs.stream().anyMatch(t -> t.literal().equals(token))) {
+					candidates.add(i);
+				}
+			}
+			byToken.put(token, candidates);
+		}
+		return new OrPrediction(byToken, otherwise);
+	}
+
+	/**
+	 * Computes the names of the productions of the given grammar which choose between their alternatives by looking only
+	 * at the next token, without backtracking.
+	 *
+	 * @param g The grammar to be used.
+	 * @return The sorted names of the predictive productions.
+	 */
+	public static List<String> computePredictiveProductions(final Grammar g) {
+		return g.getParserProductions().stream()
+				.filter(p -> p.result() instanceof final Or or && predict(g, or).isPredictive())
+				.map(p -> p.start().name())
+				.sorted()
+				.toList();
+	}
+
 	/**
 	 * Checks that the given FOLLOW sets are valid for the given grammar, throwing an AssertionError if they are not.
 	 *
@@ -0,0 +1,516 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.generator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import com.ledmington.ebnf.Expression;
+import com.ledmington.ebnf.Grammar;
+import com.ledmington.ebnf.NonTerminal;
+import com.ledmington.ebnf.OneOrMore;
+import com.ledmington.ebnf.Or;
+import com.ledmington.ebnf.Production;
+import com.ledmington.ebnf.Sequence;
+import com.ledmington.ebnf.ZeroOrMore;
+import com.ledmington.ebnf.ZeroOrOne;
+
+/**
+ * The LALR(1) automaton of an EBNF grammar: the states of its LR(0) automaton, with the lookaheads which choose when
+ * to reduce propagated between them, and the resulting action and goto tables.
+ *
+ * <p>Each parser production becomes one or more rules: one for each alternative of an Or, an empty one for optional
+ * parts, and, for repetitions, a single rule over a hidden non-terminal which collects the repeated elements with a
+ * left-recursive rule, so that they take constant space on the stack.
+ */
+final class LALRAutomaton {
+
+	/** The action of a cell where the next token is not expected. */
+	static final int ERROR = -1;
+
+	/** The action of the cell where the whole input has been parsed. */
+	static final int ACCEPT = -2;
+
+	/** Reducing by rule r is encoded as the action {@code REDUCE - r}. */
+	static final int REDUCE = -3;
+
+	/**
+	 * A rule of the automaton.
+	 *
+	 * @param lhs The index of the non-terminal being reduced.
+	 * @param rhs The symbols to reduce: tokens are numbered from 0, non-terminals from the number of tokens plus one.
+	 */
+	record Rule(int lhs, int[] rhs) {
+
+		/**
+		 * Creates a new Rule.
+		 *
+		 * @param lhs The index of the non-terminal being reduced.
+		 * @param rhs The symbols to reduce.
+		 */
+		Rule {
+			rhs = Arrays.copyOf(Objects.requireNonNull(rhs), rhs.length);
+		}
+
+		@Override
+		public int[] rhs() {
+			return Arrays.copyOf(rhs, rhs.length);
+		}
+	}
+
+	private final List<String> tokenNames;
+	private final List<Production> productions;
+	private final Map<String, Integer> tokenIndices = new HashMap<>();
+	private final Map<String, Integer> productionIndices = new HashMap<>();
+	private final List<Integer> listOwners = new ArrayList<>();
+	private final List<Rule> rules = new ArrayList<>();
+	private final List<List<Integer>> rulesByLhs = new ArrayList<>();
+	private final int tokenCount;
+	private final int nonTerminalCount;
+	private final int acceptingRule;
+
+	private final boolean[] nullable;
+	private final BitSet[] firstSets;
+	private final int[] ruleFirstItem;
+	private final int[] itemRule;
+
+	private final List<BitSet> kernels = new ArrayList<>();
+	private final List<Map<Integer, Integer>> transitions = new ArrayList<>();
+	private final List<Map<Integer, BitSet>> lookaheads = new ArrayList<>();
+	private final List<String> conflicts = new ArrayList<>();
+	private int[][] actions;
+	private int[][] gotos;
+
+	private LALRAutomaton(final Grammar g) {
+		this.tokenNames = g.getLexerProductions().stream()
+				.map(p -> p.start().name())
+				.sorted()
+				.toList();
+		this.tokenCount = tokenNames.size();
+		for (int i = 0; i < tokenCount; i++) {
+			tokenIndices.put(tokenNames.get(i), i);
+		}
+		this.productions = g.getParserProductions();
+		for (int i = 0; i < productions.size(); i++) {
+			productionIndices.put(productions.get(i).start().name(), i);
+		}
+		for (int i = 0; i < productions.size(); i++) {
+			if (productions.get(i).result() instanceof ZeroOrMore
+					|| productions.get(i).result() instanceof OneOrMore) {
+				listOwners.add(i);
+			}
+		}
+		// the productions, the lists of the repetitions, then the start of the augmented grammar
+		this.nonTerminalCount = productions.size() + listOwners.size() + 1;
+		for (int i = 0; i < nonTerminalCount; i++) {
+			rulesByLhs.add(new ArrayList<>());
+		}
+		addRule(nonTerminalCount - 1, nonTerminalSymbol(productionIndices.get(g.getStartSymbol())));
+		this.acceptingRule = 0;
+		for (int i = 0; i < productions.size(); i++) {
+			addRules(i, productions.get(i).result());
+		}
+
+		this.nullable = new boolean[nonTerminalCount];
+		this.firstSets = new BitSet[nonTerminalCount];
+		computeFirstSets();
+
+		this.ruleFirstItem = new int[rules.size() + 1];
+		for (int r = 0; r < rules.size(); r++) {
+			ruleFirstItem[r + 1] = ruleFirstItem[r] + rules.get(r).rhs.length + 1;
+		}
+		this.itemRule = new int[ruleFirstItem[rules.size()]];
+		for (int r = 0; r < rules.size(); r++) {
+			Arrays.fill(itemRule, ruleFirstItem[r], ruleFirstItem[r + 1], r);
+		}
+
+		buildStates();
+		propagateLookaheads();
+		buildTables();
+	}
+
+	/**
+	 * Builds the LALR(1) automaton of the given grammar. Conflicts do not stop the construction: they are collected,
+	 * and the first action found is kept in their cells.
+	 *
+	 * @param g The grammar to be used.
+	 * @return The automaton of the grammar.
+	 */
+	static LALRAutomaton of(final Grammar g) {
+		return new LALRAutomaton(Objects.requireNonNull(g));
+	}
+
+	private int nonTerminalSymbol(final int nonTerminal) {
+		return tokenCount + 1 + nonTerminal;
+	}
+
+	private int symbol(final Expression exp) {
+		final String name = ((NonTerminal) exp).name();
+		return productionIndices.containsKey(name)
+				? nonTerminalSymbol(productionIndices.get(name))
+				: tokenIndices.get(name);
+	}
+
+	private boolean isToken(final int symbol) {
+		return symbol <= tokenCount;
+	}
+
+	private void addRule(final int lhs, final int... rhs) {
+		rulesByLhs.get(lhs).add(rules.size());
+		rules.add(new Rule(lhs, rhs));
+	}
+
+	private void addRules(final int production, final Expression result) {
+		switch (result) {
+			case NonTerminal nt -> addRule(production, symbol(nt));
+			case Sequence s ->
+				addRule(
+						production,
+						s.expressions().stream().mapToInt(this::symbol).toArray());
+			case Or or -> or.expressions().forEach(e -> addRule(production, symbol(e)));
+			case ZeroOrOne zoo -> {
+				addRule(production);
+				addRule(production, symbol(zoo.inner()));
+			}
+			case ZeroOrMore zom -> {
+				final int list = productions.size() + listOwners.indexOf(production);
+				addRule(production, nonTerminalSymbol(list));
+				addRule(list);
+				addRule(list, nonTerminalSymbol(list), symbol(zom.inner()));
+			}
+			case OneOrMore oom -> {
+				final int list = productions.size() + listOwners.indexOf(production);
+				addRule(production, nonTerminalSymbol(list));
+				addRule(list, symbol(oom.inner()));
+				addRule(list, nonTerminalSymbol(list), symbol(oom.inner()));
+			}
+			default -> throw new IllegalArgumentException(String.format("Unknown node: '%s'", result));
+		}
+	}
+
+	private void computeFirstSets() {
+		for (int i = 0; i < nonTerminalCount; i++) {
+			firstSets[i] = new BitSet();
+		}
+		boolean changed;
+		do {
+			changed = false;
+			for (final Rule rule : rules) {
+				final BitSet first = firstSets[rule.lhs];
+				final int before = first.cardinality();
+				final boolean empty = addFirst(rule.rhs, 0, first);
+				if (first.cardinality() != before || (empty && !nullable[rule.lhs])) {
+					nullable[rule.lhs] |= empty;
+					changed = true;
+				}
+			}
+		} while (changed);
+	}
+
+	/*
+	Adds the tokens which may start the given symbols, from the given index on, to the given set, and tells whether
+	all of them may be empty.
+	 */
+	private boolean addFirst(final int[] symbols, final int from, final BitSet first) {
+		for (int i = from; i < symbols.length; i++) {
+			if (isToken(symbols[i])) {
+				first.set(symbols[i]);
+				return false;
+			}
+			first.or(firstSets[symbols[i] - tokenCount - 1]);
+			if (!nullable[symbols[i] - tokenCount - 1]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int dot(final int item) {
+		return item - ruleFirstItem[itemRule[item]];
+	}
+
+	private int symbolAfterDot(final int item) {
+		final int[] rhs = rules.get(itemRule[item]).rhs;
+		final int dot = dot(item);
+		return dot < rhs.length ? rhs[dot] : -1;
+	}
+
+	private BitSet closure(final BitSet kernel) {
+		final BitSet items = (BitSet) kernel.clone();
+		final Deque<Integer> worklist = new ArrayDeque<>(kernel.stream().boxed().toList());
+		while (!worklist.isEmpty()) {
+			final int next = symbolAfterDot(worklist.pop());
+			if (next > tokenCount) {
+				for (final int r : rulesByLhs.get(next - tokenCount - 1)) {
+					if (!items.get(ruleFirstItem[r])) {
+						items.set(ruleFirstItem[r]);
+						worklist.push(ruleFirstItem[r]);
+					}
+				}
+			}
+		}
+		return items;
+	}
+
+	private void buildStates() {
+		final Map<BitSet, Integer> stateIndices = new HashMap<>();
+		final BitSet initial = new BitSet();
+		initial.set(ruleFirstItem[acceptingRule]);
+		kernels.add(initial);
+		stateIndices.put(initial, 0);
+		for (int s = 0; s < kernels.size(); s++) {
+			// the kernel of each target is made of the items moved past the symbol
+			final Map<Integer, BitSet> targets = new TreeMap<>();
+			closure(kernels.get(s)).stream().forEach(item -> {
+				final int next = symbolAfterDot(item);
+				if (next != -1) {
+					targets.computeIfAbsent(next, k -> new BitSet()).set(item + 1);
+				}
+			});
+			final Map<Integer, Integer> stateTransitions = new TreeMap<>();
+			for (final Map.Entry<Integer, BitSet> e : targets.entrySet()) {
+				final Integer target = stateIndices.computeIfAbsent(e.getValue(), k -> {
+					kernels.add(k);
+					return kernels.size() - 1;
+				});
+				stateTransitions.put(e.getKey(), target);
+			}
+			transitions.add(stateTransitions);
+		}
+	}
+
+	/*
+	The closure of items with lookaheads: an item expecting a non-terminal brings in the rules of the non-terminal,
+	which may be followed by whatever starts the rest of the item, and by the lookaheads of the item when the rest may
+	be empty.
+	 */
+	private Map<Integer, BitSet> closure(final Map<Integer, BitSet> kernel) {
+		final Map<Integer, BitSet> items = new TreeMap<>();
+		kernel.forEach((item, lookahead) -> items.put(item, (BitSet) lookahead.clone()));
+		final Deque<Integer> worklist = new ArrayDeque<>(items.keySet());
+		while (!worklist.isEmpty()) {
+			final int item = worklist.pop();
+			final int next = symbolAfterDot(item);
+			if (next <= tokenCount) {
+				continue;
+			}
+			final BitSet lookahead = new BitSet();
+			if (addFirst(rules.get(itemRule[item]).rhs, dot(item) + 1, lookahead)) {
+				lookahead.or(items.get(item));
+			}
+			for (final int r : rulesByLhs.get(next - tokenCount - 1)) {
+				final BitSet existing = items.get(ruleFirstItem[r]);
+				if (existing == null) {
+					items.put(ruleFirstItem[r], (BitSet) lookahead.clone());
+					worklist.push(ruleFirstItem[r]);
+				} else {
+					final int before = existing.cardinality();
+					existing.or(lookahead);
+					if (existing.cardinality() != before) {
+						worklist.push(ruleFirstItem[r]);
+					}
+				}
+			}
+		}
+		return items;
+	}
+
+	/*
+	The lookaheads of the kernel items are found by closing each of them over a placeholder token: the real tokens
+	reaching an item of the next state are generated there, while the placeholder means that the item receives all the
+	lookaheads of the kernel item it comes from.
+	 */
+	private void propagateLookaheads() {
+		final int placeholder = tokenCount + 1;
+		for (final BitSet kernel : kernels) {
+			final Map<Integer, BitSet> stateLookaheads = new TreeMap<>();
+			kernel.stream().forEach(item -> stateLookaheads.put(item, new BitSet()));
+			lookaheads.add(stateLookaheads);
+		}
+		lookaheads.getFirst().get(ruleFirstItem[acceptingRule]).set(tokenCount);
+
+		// each edge goes from a state and one of its kernel items to another state and one of its kernel items
+		final List<int[]> edges = new ArrayList<>();
+		for (int s = 0; s < kernels.size(); s++) {
+			final int state = s;
+			kernels.get(s).stream().forEach(kernelItem -> {
+				final BitSet marker = new BitSet();
+				marker.set(placeholder);
+				closure(Map.of(kernelItem, marker)).forEach((item, lookahead) -> {
+					final int next = symbolAfterDot(item);
+					if (next == -1) {
+						return;
+					}
+					final int target = transitions.get(state).get(next);
+					final BitSet generated = (BitSet) lookahead.clone();
+					generated.clear(placeholder);
+					lookaheads.get(target).get(item + 1).or(generated);
+					if (lookahead.get(placeholder)) {
+						edges.add(new int[] {state, kernelItem, target, item + 1});
+					}
+				});
+			});
+		}
+
+		boolean changed;
+		do {
+			changed = false;
+			for (final int[] edge : edges) {
+				final BitSet to = lookaheads.get(edge[2]).get(edge[3]);
+				final int before = to.cardinality();
+				to.or(lookaheads.get(edge[0]).get(edge[1]));
+				changed |= to.cardinality() != before;
+			}
+		} while (changed);
+	}
+
+	private void buildTables() {
+		actions = new int[kernels.size()][tokenCount + 1];
+		gotos = new int[kernels.size()][nonTerminalCount];
+		for (int s = 0; s < kernels.size(); s++) {
+			Arrays.fill(actions[s], ERROR);
+			Arrays.fill(gotos[s], -1);
+			for (final Map.Entry<Integer, Integer> e : transitions.get(s).entrySet()) {
+				if (isToken(e.getKey())) {
+					actions[s][e.getKey()] = e.getValue();
+				} else {
+					gotos[s][e.getKey() - tokenCount - 1] = e.getValue();
+				}
+			}
+			final int state = s;
+			closure(lookaheads.get(s)).forEach((item, lookahead) -> {
+				if (symbolAfterDot(item) != -1) {
+					return;
+				}
+				final int rule = itemRule[item];
+				final int action = rule == acceptingRule ? ACCEPT : REDUCE - rule;
+				lookahead.stream().forEach(token -> {
+					final int existing = actions[state][token];
+					if (existing == ERROR) {
+						actions[state][token] = action;
+					} else if (existing != action) {
+						conflicts.add(String.format(
+								"%s conflict on %s between %s and reducing '%s'.",
+								existing >= 0 ? "Shift/reduce" : "Reduce/reduce",
+								token == tokenCount ? "the end of the input" : "'" + tokenNames.get(token) + "'",
+								existing >= 0
+										? "shifting it"
+										: "reducing '" + describe(existing == ACCEPT ? acceptingRule : REDUCE - existing)
+												+ "'",
+								describe(rule)));
+					}
+				});
+			});
+		}
+	}
+
+	private String symbolName(final int symbol) {
+		if (isToken(symbol)) {
+			return tokenNames.get(symbol);
+		}
+		final int nonTerminal = symbol - tokenCount - 1;
+		if (nonTerminal < productions.size()) {
+			return productions.get(nonTerminal).start().name();
+		}
+		final int owner = listOwner(nonTerminal);
+		// the hidden non-terminals cannot clash with the names of the grammar
+		return owner == -1 ? "$start" : productions.get(owner).start().name() + "$list";
+	}
+
+	private String describe(final int rule) {
+		final Rule r = rules.get(rule);
+		return symbolName(tokenCount + 1 + r.lhs) + " ="
+				+ Arrays.stream(r.rhs).mapToObj(x -> " " + symbolName(x)).collect(Collectors.joining()) + " ;";
+	}
+
+	/**
+	 * Returns the conflicts found while building the tables, if any: a grammar is LALR(1) only if there are none.
+	 *
+	 * @return A description of each conflict.
+	 */
+	List<String> conflicts() {
+		return List.copyOf(conflicts);
+	}
+
+	/**
+	 * Returns the number of types of tokens. The column of the end of the input in the action table comes right after
+	 * them.
+	 *
+	 * @return The number of types of tokens.
+	 */
+	int tokenCount() {
+		return tokenCount;
+	}
+
+	/**
+	 * Returns the parser productions of the grammar, whose indices are the first non-terminals of the rules.
+	 *
+	 * @return The parser productions.
+	 */
+	List<Production> productions() {
+		return productions;
+	}
+
+	/**
+	 * Returns the production whose repeated elements are collected by the given non-terminal, if any.
+	 *
+	 * @param nonTerminal The index of the non-terminal.
+	 * @return The index of the repetition production, or -1 if the non-terminal is not a list.
+	 */
+	int listOwner(final int nonTerminal) {
+		final int list = nonTerminal - productions.size();
+		return list >= 0 && list < listOwners.size() ? listOwners.get(list) : -1;
+	}
+
+	/**
+	 * Returns the rules of the automaton. The first one reduces the start symbol at the end of the input.
+	 *
+	 * @return The rules of the automaton.
+	 */
+	List<Rule> rules() {
+		return List.copyOf(rules);
+	}
+
+	/**
+	 * Returns the action table: for each state and each type of token, followed by the end of the input, the state to
+	 * shift to, {@link #ERROR}, {@link #ACCEPT} or {@link #REDUCE} minus the rule to reduce.
+	 *
+	 * @return The action table.
+	 */
+	int[][] actions() {
+		return Arrays.stream(actions).map(int[]::clone).toArray(int[][]::new);
+	}
+
+	/**
+	 * Returns the goto table: for each state and each non-terminal, the state to go to after reducing it, or -1.
+	 *
+	 * @return The goto table.
+	 */
+	int[][] gotos() {
+		return Arrays.stream(gotos).map(int[]::clone).toArray(int[][]::new);
+	}
+}
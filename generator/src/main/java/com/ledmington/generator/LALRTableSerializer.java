@@ -0,0 +1,340 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.generator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.ledmington.ebnf.Expression;
+import com.ledmington.ebnf.Grammar;
+import com.ledmington.ebnf.NonTerminal;
+import com.ledmington.ebnf.OneOrMore;
+import com.ledmington.ebnf.Or;
+import com.ledmington.ebnf.Production;
+import com.ledmington.ebnf.Sequence;
+import com.ledmington.ebnf.ZeroOrMore;
+import com.ledmington.ebnf.ZeroOrOne;
+
+/**
+ * Generates an LALR(1) parser: a single loop shifts tokens and reduces rules, following the action and goto tables of
+ * the {@link LALRAutomaton} of the grammar. Unlike the other parsers, it accepts left-recursive grammars. The enclosing
+ * class must already contain the node types, the token stream, the stack of values and the helpers of the regular
+ * parser.
+ */
+@SuppressWarnings("PMD.AvoidDuplicateLiterals")
+final class LALRTableSerializer {
+
+	// the number of rules reduced by each method, small enough for the JIT to compile them
+	private static final int REDUCE_METHOD_SIZE = 128;
+
+	private final IndentedStringBuilder sb;
+	private final Set<String> tokenNames;
+
+	/**
+	 * Creates a new LALRTableSerializer.
+	 *
+	 * @param sb The StringBuilder to use.
+	 * @param tokenNames The set of non-terminals corresponding to lexer productions.
+	 */
+	LALRTableSerializer(final IndentedStringBuilder sb, final Set<String> tokenNames) {
+		this.sb = Objects.requireNonNull(sb);
+		this.tokenNames = Objects.requireNonNull(tokenNames);
+	}
+
+	/**
+	 * Generates the LALR(1) tables of the given grammar, the loop following them and the parsing method of the start
+	 * symbol, which runs the loop.
+	 *
+	 * @param g The grammar to be used.
+	 * @throws IllegalArgumentException If the grammar is not LALR(1), or if it depends on the order of its alternatives.
+	 */
+	void generateTableParser(final Grammar g) {
+		final LALRAutomaton automaton = LALRAutomaton.of(g);
+		GrammarChecker.checkConflicts(automaton);
+		GrammarChecker.checkOrderedChoices(g);
+
+		generateTables(automaton);
+		generateLoop(g.getStartSymbol());
+		generateReduce(automaton);
+	}
+
+	/*
+	Most cells of the action table are errors, and most of the others reduce the same rule in each state. Each row keeps
+	only the cells which differ from its most common reduction, sorted by token, and reducing in place of an error is
+	harmless: the error is found on the same token right after, before shifting it. Likewise, each column of the goto
+	table keeps only the states which do not go to its most common target, since the cells which are never used can
+	take any value.
+	 */
+	private void generateTables(final LALRAutomaton automaton) {
+		final int[][] actions = automaton.actions();
+		final int[][] gotos = automaton.gotos();
+		final int stateCount = actions.length;
+		final int nonTerminalCount = gotos.length == 0 ? 0 : gotos[0].length;
+
+		final int[] defaultActions = new int[stateCount];
+		final int[] rowStarts = new int[stateCount + 1];
+		final List<Integer> pairColumns = new ArrayList<>();
+		final List<Integer> pairActions = new ArrayList<>();
+		for (int s = 0; s < stateCount; s++) {
+			defaultActions[s] = mostCommon(
+					Arrays.stream(actions[s]).filter(a -> a <= LALRAutomaton.REDUCE).toArray(), LALRAutomaton.ERROR);
+			rowStarts[s] = pairColumns.size();
+			for (int token = 0; token < actions[s].length; token++) {
+				if (actions[s][token] != defaultActions[s] && actions[s][token] != LALRAutomaton.ERROR) {
+					pairColumns.add(token);
+					pairActions.add(actions[s][token]);
+				}
+			}
+		}
+		rowStarts[stateCount] = pairColumns.size();
+
+		final int[] defaultGotos = new int[nonTerminalCount];
+		final int[] gotoStarts = new int[nonTerminalCount + 1];
+		final List<Integer> gotoStates = new ArrayList<>();
+		final List<Integer> gotoTargets = new ArrayList<>();
+		for (int nt = 0; nt < nonTerminalCount; nt++) {
+			final int column = nt;
+			final int[] targets = Arrays.stream(gotos).mapToInt(row -> row[column]).toArray();
+			defaultGotos[nt] = mostCommon(Arrays.stream(targets).filter(t -> t != -1).toArray(), -1);
+			gotoStarts[nt] = gotoStates.size();
+			for (int s = 0; s < stateCount; s++) {
+				if (targets[s] != -1 && targets[s] != defaultGotos[nt]) {
+					gotoStates.add(s);
+					gotoTargets.add(targets[s]);
+				}
+			}
+		}
+		gotoStarts[nonTerminalCount] = gotoStates.size();
+
+		final List<LALRAutomaton.Rule> rules = automaton.rules();
+		final Map<String, int[]> arrays = new LinkedHashMap<>();
+		arrays.put("DEFAULT_ACTIONS", defaultActions);
+		arrays.put("ROW_STARTS", rowStarts);
+		arrays.put("PAIR_COLUMNS", pairColumns.stream().mapToInt(x -> x).toArray());
+		arrays.put("PAIR_ACTIONS", pairActions.stream().mapToInt(x -> x).toArray());
+		arrays.put("DEFAULT_GOTOS", defaultGotos);
+		arrays.put("GOTO_STARTS", gotoStarts);
+		arrays.put("GOTO_STATES", gotoStates.stream().mapToInt(x -> x).toArray());
+		arrays.put("GOTO_TARGETS", gotoTargets.stream().mapToInt(x -> x).toArray());
+		arrays.put(
+				"RULE_LENGTHS",
+				rules.stream().mapToInt(r -> r.rhs().length).toArray());
+		arrays.put("RULE_LHS", rules.stream().mapToInt(LALRAutomaton.Rule::lhs).toArray());
+
+		sb.append("private static final class ParseTables {\n")
+				.indent()
+				.append("private static final int TOKENS = " + automaton.tokenCount() + ";\n")
+				.append("private static final int ERROR = " + LALRAutomaton.ERROR + ";\n")
+				.append("private static final int ACCEPT = " + LALRAutomaton.ACCEPT + ";\n")
+				.append("private static final int REDUCE = " + LALRAutomaton.REDUCE + ";\n");
+		ParseTableSerializer.generateTableArrays(sb, arrays);
+		sb.append("private static int action(final int state, final int column) {\n")
+				.indent()
+				.append(
+						"final int i = Arrays.binarySearch(PAIR_COLUMNS, ROW_STARTS[state], ROW_STARTS[state + 1], column);\n")
+				.append("return i >= 0 ? PAIR_ACTIONS[i] : DEFAULT_ACTIONS[state];\n")
+				.deindent()
+				.append("}\n")
+				.append("private static int goTo(final int state, final int nonTerminal) {\n")
+				.indent()
+				.append(
+						"final int i = Arrays.binarySearch(GOTO_STATES, GOTO_STARTS[nonTerminal], GOTO_STARTS[nonTerminal + 1], state);\n")
+				.append("return i >= 0 ? GOTO_TARGETS[i] : DEFAULT_GOTOS[nonTerminal];\n")
+				.deindent()
+				.append("}\n")
+				.append("private ParseTables() {}\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	private static int mostCommon(final int[] values, final int fallback) {
+		final Map<Integer, Integer> counts = new TreeMap<>();
+		for (final int v : values) {
+			counts.merge(v, 1, Integer::sum);
+		}
+		int result = fallback;
+		int maxCount = 0;
+		for (final Map.Entry<Integer, Integer> e : counts.entrySet()) {
+			if (e.getValue() > maxCount) {
+				result = e.getKey();
+				maxCount = e.getValue();
+			}
+		}
+		return result;
+	}
+
+	private void generateLoop(final String startSymbol) {
+		sb.append("private int[] states = new int[16];\n")
+				.append("private int stateCount = 0;\n")
+				.append("private void pushState(final int state) {\n")
+				.indent()
+				.append("if (stateCount == states.length) {\n")
+				.indent()
+				.append("states = Arrays.copyOf(states, 2 * stateCount);\n")
+				.deindent()
+				.append("}\n")
+				.append("states[stateCount++] = state;\n")
+				.deindent()
+				.append("}\n")
+				.append("private " + startSymbol + " parse_" + startSymbol + "() {\n")
+				.indent()
+				.append("stateCount = 0;\n")
+				.append("pushState(0);\n")
+				.append("while (true) {\n")
+				.indent()
+				.append("final int next = peek();\n")
+				.append(
+						"final int action = ParseTables.action(states[stateCount - 1], next == EOF ? ParseTables.TOKENS : next);\n")
+				.append("if (action >= 0) {\n")
+				.indent()
+				.append("pushValue(parseTerminal(ParseTables.TOKEN_TYPES[next]));\n")
+				.append("pushState(action);\n")
+				.deindent()
+				.append("} else if (action == ParseTables.ACCEPT) {\n")
+				.indent()
+				.append("final " + startSymbol + " result = (" + startSymbol + ") values[0];\n")
+				.append("popValues(0);\n")
+				.append("return result;\n")
+				.deindent()
+				.append("} else if (action == ParseTables.ERROR) {\n")
+				.indent()
+				.append("failAt(pos);\n")
+				.append("popValues(0);\n")
+				.append("return null;\n")
+				.deindent()
+				.append("} else {\n")
+				.indent()
+				.append("final int rule = ParseTables.REDUCE - action;\n")
+				.append("final int base = valueCount - ParseTables.RULE_LENGTHS[rule];\n")
+				.append("final Object value = reduce(rule, base);\n")
+				.append("popValues(base);\n")
+				.append("pushValue(value);\n")
+				.append("stateCount -= ParseTables.RULE_LENGTHS[rule];\n")
+				.append("pushState(ParseTables.goTo(states[stateCount - 1], ParseTables.RULE_LHS[rule]));\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	/*
+	Reducing a rule builds the node of its production from the values of the symbols being reduced, or grows the list of
+	the elements of a repetition, which becomes a node only when the repetition is over. The rules are split among
+	methods small enough to be compiled by the JIT.
+	 */
+	private void generateReduce(final LALRAutomaton automaton) {
+		final List<LALRAutomaton.Rule> rules = automaton.rules();
+		final int methods = (rules.size() + REDUCE_METHOD_SIZE - 1) / REDUCE_METHOD_SIZE;
+		final boolean atLeastOneList = rules.stream().anyMatch(r -> automaton.listOwner(r.lhs()) != -1);
+		if (atLeastOneList) {
+			sb.append("@SuppressWarnings(\"unchecked\")\n")
+					.append("private <N> List<N> listAt(final int index) {\n")
+					.indent()
+					.append("return (List<N>) values[index];\n")
+					.deindent()
+					.append("}\n")
+					.append("private static List<Object> newList(final Object first) {\n")
+					.indent()
+					.append("final List<Object> list = new ArrayList<>();\n")
+					.append("list.add(first);\n")
+					.append("return list;\n")
+					.deindent()
+					.append("}\n")
+					.append("private Object append(final int base) {\n")
+					.indent()
+					.append("listAt(base).add(values[base + 1]);\n")
+					.append("return values[base];\n")
+					.deindent()
+					.append("}\n");
+		}
+		sb.append("private Object reduce(final int rule, final int base) {\n")
+				.indent()
+				.append("return switch (rule / " + REDUCE_METHOD_SIZE + ") {\n")
+				.indent();
+		for (int m = 0; m < methods; m++) {
+			sb.append("case " + m + " -> reduce_" + m + "(rule, base);\n");
+		}
+		sb.append("default -> throw new IllegalArgumentException(String.format(\"Unknown rule: %,d.\", rule));\n")
+				.deindent()
+				.append("};\n")
+				.deindent()
+				.append("}\n");
+		for (int m = 0; m < methods; m++) {
+			sb.append("private Object reduce_" + m + "(final int rule, final int base) {\n")
+					.indent()
+					.append("return switch (rule) {\n")
+					.indent();
+			// the first rule accepts the input instead of being reduced
+			for (int r = Math.max(1, m * REDUCE_METHOD_SIZE);
+					r < Math.min(rules.size(), (m + 1) * REDUCE_METHOD_SIZE);
+					r++) {
+				sb.append("case " + r + " -> " + reduction(automaton, rules.get(r)) + ";\n");
+			}
+			sb.append("default -> throw new IllegalArgumentException(String.format(\"Unknown rule: %,d.\", rule));\n")
+					.deindent()
+					.append("};\n")
+					.deindent()
+					.append("}\n");
+		}
+	}
+
+	private String resolveTypeName(final Expression exp) {
+		final String name = ((NonTerminal) exp).name();
+		return tokenNames.contains(name) ? "Terminal" : name;
+	}
+
+	private String reduction(final LALRAutomaton automaton, final LALRAutomaton.Rule rule) {
+		final int length = rule.rhs().length;
+		if (automaton.listOwner(rule.lhs()) != -1) {
+			return switch (length) {
+				case 0 -> "new ArrayList<>()";
+				case 1 -> "newList(values[base])";
+				default -> "append(base)";
+			};
+		}
+		final Production p = automaton.productions().get(rule.lhs());
+		final String name = p.start().name();
+		return switch (p.result()) {
+			case NonTerminal nt -> "new " + name + "((" + resolveTypeName(nt) + ") values[base])";
+			case Sequence s -> {
+				final List<String> children = new ArrayList<>();
+				for (int i = 0; i < s.expressions().size(); i++) {
+					children.add("(" + resolveTypeName(s.expressions().get(i)) + ") values["
+							+ (i == 0 ? "base" : "base + " + i) + "]");
+				}
+				yield "new " + name + "(" + String.join(", ", children) + ")";
+			}
+			case Or ignored -> "new " + name + "((Node) values[base])";
+			case ZeroOrOne zoo ->
+				length == 0
+						? "new " + name + "(null)"
+						: "new " + name + "((" + resolveTypeName(zoo.inner()) + ") values[base])";
+			case ZeroOrMore ignored -> "new " + name + "(listAt(base))";
+			case OneOrMore ignored -> "new " + name + "(listAt(base))";
+			default -> throw new IllegalArgumentException(String.format("Unknown node: '%s'", p.result()));
+		};
+	}
+}
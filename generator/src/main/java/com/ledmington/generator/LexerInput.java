@@ -0,0 +1,77 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.generator;
+
+import com.ledmington.automata.Alphabet;
+
+/**
+ * The kinds of input a generated lexer can run on. Each one knows the alphabet of its DFA, the Java types of the input
+ * and of its positions, and the expressions which read the length of the input and the symbol at position {@code pos}.
+ */
+enum LexerInput {
+
+	/** A sequence of UTF-16 code units. */
+	CHARS(Alphabet.UTF16, "CharSequence", "int", "input.length()", "input.charAt(pos)"),
+
+	/** The raw bytes of a UTF-8 encoded input. */
+	UTF8_BYTES(
+			Alphabet.UTF8,
+			"MemorySegment",
+			"long",
+			"input.byteSize()",
+			"(char) (input.get(ValueLayout.JAVA_BYTE, pos) & 0xff)");
+
+	private final Alphabet alphabet;
+	private final String type;
+	private final String positionType;
+	private final String length;
+	private final String symbolAt;
+
+	LexerInput(
+			final Alphabet alphabet,
+			final String type,
+			final String positionType,
+			final String length,
+			final String symbolAt) {
+		this.alphabet = alphabet;
+		this.type = type;
+		this.positionType = positionType;
+		this.length = length;
+		this.symbolAt = symbolAt;
+	}
+
+	Alphabet alphabet() {
+		return alphabet;
+	}
+
+	String type() {
+		return type;
+	}
+
+	String positionType() {
+		return positionType;
+	}
+
+	String length() {
+		return length;
+	}
+
+	String symbolAt() {
+		return symbolAt;
+	}
+}
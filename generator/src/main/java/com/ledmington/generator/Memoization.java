@@ -0,0 +1,37 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.generator;
+
+/** Which productions the generated parser remembers the result of, at each token position. */
+public enum Memoization {
+
+	/** Nothing is remembered: a production may be parsed many times at the same position while backtracking. */
+	NONE,
+
+	/**
+	 * Every production is remembered ("packrat" parsing), so each one is parsed at most once per position and the
+	 * parse takes linear time. Costs an int and a reference per production per token.
+	 */
+	ALL,
+
+	/**
+	 * Only the productions listed in {@link GeneratorOptions#memoizedProductions()} are remembered. Costs an int and a
+	 * reference per memoized production per token.
+	 */
+	SELECTED
+}
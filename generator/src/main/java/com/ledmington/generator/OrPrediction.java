@@ -0,0 +1,73 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.generator;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * The alternatives of an Or expression which may succeed, depending on the type of the next token. Any other
+ * alternative is bound to fail, so it does not need to be tried.
+ *
+ * @param byToken The indices, in order, of the alternatives which may succeed when the next token has the given type.
+ * @param otherwise The indices, in order, of the alternatives which may succeed on any other token or at the end of the
+ *     input: these are the ones which may match the empty input.
+ */
+record OrPrediction(Map<String, List<Integer>> byToken, List<Integer> otherwise) {
+
+	/**
+	 * Creates a new OrPrediction.
+	 *
+	 * @param byToken The indices of the alternatives which may succeed on each type of token.
+	 * @param otherwise The indices of the alternatives which may succeed on any other token.
+	 */
+	OrPrediction {
+		byToken = Map.copyOf(Objects.requireNonNull(byToken));
+		otherwise = List.copyOf(Objects.requireNonNull(otherwise));
+	}
+
+	/**
+	 * Checks whether a single token is always enough to choose the only alternative worth trying.
+	 *
+	 * @return True if at most one alternative may succeed on each token, false otherwise.
+	 */
+	boolean isPredictive() {
+		return otherwise.size() <= 1
+				&& byToken.values().stream().allMatch(alternatives -> alternatives.size() <= 1);
+	}
+
+	/**
+	 * Groups the types of tokens which do not lead to the same alternatives as any other token, so that each group can
+	 * become a single case of a switch. Groups appear in the order of their first token name.
+	 *
+	 * @return The names of the types of tokens, sorted, for each list of alternatives which may succeed on them.
+	 */
+	Map<List<Integer>, List<String>> cases() {
+		final Map<List<Integer>, List<String>> cases = new LinkedHashMap<>();
+		for (final Map.Entry<String, List<Integer>> e : new TreeMap<>(byToken).entrySet()) {
+			if (!e.getValue().equals(otherwise)) {
+				cases.computeIfAbsent(e.getValue(), k -> new ArrayList<>()).add(e.getKey());
+			}
+		}
+		return cases;
+	}
+}
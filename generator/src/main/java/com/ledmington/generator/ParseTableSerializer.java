@@ -0,0 +1,490 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.generator;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import com.ledmington.ebnf.Expression;
+import com.ledmington.ebnf.Grammar;
+import com.ledmington.ebnf.Node;
+import com.ledmington.ebnf.NonTerminal;
+import com.ledmington.ebnf.OneOrMore;
+import com.ledmington.ebnf.Or;
+import com.ledmington.ebnf.Production;
+import com.ledmington.ebnf.Sequence;
+import com.ledmington.ebnf.Terminal;
+import com.ledmington.ebnf.Utils;
+import com.ledmington.ebnf.ZeroOrMore;
+import com.ledmington.ebnf.ZeroOrOne;
+
+/**
+ * Generates an LL(1) parser: the choice of what to parse next, for each production and each type of the next token,
+ * is stored in a table, and a single loop shared by all productions follows it. The enclosing class must already
+ * contain the node types, the token stream, the stack of values and the helpers of the regular parser.
+ */
+@SuppressWarnings("PMD.AvoidDuplicateLiterals")
+final class ParseTableSerializer {
+
+	// the number of productions built by each method, small enough for the JIT to compile them
+	private static final int BUILD_METHOD_SIZE = 128;
+
+	private final IndentedStringBuilder sb;
+	private final Set<String> tokenNames;
+	private final Map<Node, String> globalNodeNames;
+	private final Map<String, Integer> tokenIndices = new HashMap<>();
+	private final Map<String, Integer> productionIndices = new HashMap<>();
+	private final List<int[]> rules = new ArrayList<>();
+	private int tokenCount;
+	private int productionCount;
+
+	/**
+	 * Creates a new ParseTableSerializer.
+	 *
+	 * @param sb The StringBuilder to use.
+	 * @param tokenNames The set of non-terminals corresponding to lexer productions.
+	 * @param nodeNames A map of the name for each node in the grammar.
+	 */
+	ParseTableSerializer(
+			final IndentedStringBuilder sb, final Set<String> tokenNames, final Map<Node, String> nodeNames) {
+		this.sb = Objects.requireNonNull(sb);
+		this.tokenNames = Objects.requireNonNull(tokenNames);
+		this.globalNodeNames = Objects.requireNonNull(nodeNames);
+	}
+
+	/**
+	 * Generates the parse table of the given grammar, the loop following it and the parsing method of the start
+	 * symbol, which runs the loop.
+	 *
+	 * @param g The grammar to be used.
+	 * @throws IllegalArgumentException If the grammar is not LL(1).
+	 */
+	void generateTableParser(final Grammar g) {
+		final List<String> sortedTokenTypes = g.getLexerProductions().stream()
+				.map(p -> p.start().name())
+				.sorted()
+				.toList();
+		for (int i = 0; i < sortedTokenTypes.size(); i++) {
+			tokenIndices.put(sortedTokenTypes.get(i), i);
+		}
+		final List<Production> parserProductions = g.getParserProductions();
+		for (int i = 0; i < parserProductions.size(); i++) {
+			productionIndices.put(parserProductions.get(i).start().name(), i);
+		}
+		this.tokenCount = sortedTokenTypes.size();
+		this.productionCount = parserProductions.size();
+
+		final Map<NonTerminal, Set<Terminal>> firstSets = GrammarUtils.computeFirstSets(g);
+		final Map<NonTerminal, Set<Terminal>> followSets = GrammarUtils.computeFollowSets(g);
+		final int[] defaultRules = new int[productionCount];
+		final List<SortedMap<Integer, Integer>> rows = new ArrayList<>();
+		for (int i = 0; i < productionCount; i++) {
+			final Production p = parserProductions.get(i);
+			final SortedMap<Integer, Integer> row = new TreeMap<>();
+			defaultRules[i] = fillRow(g, p, row, firstSets, followSets.get(p.start()));
+			rows.add(row);
+		}
+
+		generateTables(defaultRules, rows);
+		generateLoop(g.getStartSymbol());
+		generateBuild(parserProductions);
+	}
+
+	private boolean isToken(final Expression exp) {
+		return exp instanceof NonTerminal nt && this.tokenNames.contains(nt.name());
+	}
+
+	private String resolveTypeName(final Expression exp) {
+		return isToken(exp) ? "Terminal" : globalNodeNames.get(exp);
+	}
+
+	private int symbol(final Expression exp) {
+		final String name = globalNodeNames.get(exp);
+		return isToken(exp) ? tokenIndices.get(name) : tokenCount + productionIndices.get(name);
+	}
+
+	private int addRule(final int... symbols) {
+		rules.add(symbols);
+		return rules.size() - 1;
+	}
+
+	private int column(final String tokenName) {
+		return tokenName.equals(GrammarUtils.END_OF_INPUT_TERMINAL.literal()) ? tokenCount : tokenIndices.get(tokenName);
+	}
+
+	private Set<String> firstTokens(final Expression exp, final Map<NonTerminal, Set<Terminal>> firstSets) {
+		if (isToken(exp)) {
+			return Set.of(globalNodeNames.get(exp));
+		}
+		return firstSets.get((NonTerminal) exp).stream()
+				.filter(t -> !t.equals(GrammarUtils.EMPTY_TERMINAL))
+				.map(Terminal::literal)
+				.collect(Collectors.toSet());
+	}
+
+	private boolean isNullable(final Expression exp, final Map<NonTerminal, Set<Terminal>> firstSets) {
+		return !isToken(exp) && firstSets.get((NonTerminal) exp).contains(GrammarUtils.EMPTY_TERMINAL);
+	}
+
+	private static IllegalArgumentException notLL1(
+			final String productionName, final String tokenName, final String reason) {
+		return new IllegalArgumentException(String.format(
+				"The grammar is not LL(1): on token '%s', production '%s' %s.", tokenName, productionName, reason));
+	}
+
+	/*
+	Each cell of the table holds the rule to follow, that is the symbols to parse in place of the production. The
+	alternative chosen is the one the recursive parser would try first, and a cell is rejected when the recursive
+	parser might need to backtrack from it: two alternatives which both start with the token, or an optional part
+	starting with a token which may also follow it. Productions with a single rule use it on any token, and a wrong
+	token is then found by the first token the rule expects.
+	 */
+	private int fillRow(
+			final Grammar g,
+			final Production p,
+			final SortedMap<Integer, Integer> row,
+			final Map<NonTerminal, Set<Terminal>> firstSets,
+			final Set<Terminal> followSet) {
+		final String name = p.start().name();
+		final Set<String> follow = followSet.stream().map(Terminal::literal).collect(Collectors.toSet());
+		final int production = productionIndices.get(name);
+		switch (p.result()) {
+			case NonTerminal nt -> {
+				return addRule(symbol(nt));
+			}
+			case Sequence s -> {
+				return addRule(s.expressions().stream().mapToInt(this::symbol).toArray());
+			}
+			case Or or -> {
+				final List<Expression> alternatives = or.expressions();
+				final int[] alternativeRules = new int[alternatives.size()];
+				for (int i = 0; i < alternatives.size(); i++) {
+					alternativeRules[i] = addRule(symbol(alternatives.get(i)));
+				}
+				final OrPrediction prediction = GrammarUtils.predict(g, or);
+				for (final Map.Entry<String, List<Integer>> e : prediction.byToken().entrySet()) {
+					final List<Integer> candidates = e.getValue();
+					final int first = candidates.getFirst();
+					if (candidates.size() > 1 && !isNullable(alternatives.get(first), firstSets)) {
+						if (candidates.stream().filter(i -> !isNullable(alternatives.get(i), firstSets)).count()
+								> 1) {
+							throw notLL1(name, e.getKey(), "may start with more than one alternative");
+						}
+						if (follow.contains(e.getKey())) {
+							throw notLL1(name, e.getKey(), "may either start with an alternative or be empty");
+						}
+					}
+					row.put(column(e.getKey()), alternativeRules[first]);
+				}
+				if (prediction.otherwise().size() > 1) {
+					throw notLL1(name, "any", "may be empty in more than one way");
+				}
+				return prediction.otherwise().isEmpty() ? -1 : alternativeRules[prediction.otherwise().getFirst()];
+			}
+			case ZeroOrOne zoo -> {
+				fillOptional(name, zoo.inner(), addRule(symbol(zoo.inner())), row, firstSets, follow);
+				return addRule();
+			}
+			case ZeroOrMore zom -> {
+				final int more = addRule(symbol(zom.inner()), tokenCount + productionCount + production);
+				fillOptional(name, zom.inner(), more, row, firstSets, follow);
+				return addRule();
+			}
+			case OneOrMore oom -> {
+				final int more = addRule(symbol(oom.inner()), tokenCount + productionCount + production);
+				fillOptional(name, oom.inner(), more, row, firstSets, follow);
+				return -1;
+			}
+			default -> throw new IllegalArgumentException(String.format("Unknown node: '%s'", p.result()));
+		}
+	}
+
+	private void fillOptional(
+			final String name,
+			final Expression inner,
+			final int rule,
+			final SortedMap<Integer, Integer> row,
+			final Map<NonTerminal, Set<Terminal>> firstSets,
+			final Set<String> follow) {
+		for (final String token : firstTokens(inner, firstSets)) {
+			if (follow.contains(token)) {
+				throw notLL1(name, token, "may either continue or end");
+			}
+			row.put(column(token), rule);
+		}
+	}
+
+	/*
+	Symbols are numbered so that their kind is given by their range: first the tokens to match, then the productions to
+	parse, then the productions to parse once more for repetitions, then the nodes to build, each one below where its
+	children start. The rows of the table list only the tokens which do not lead to the rule the row uses by default,
+	sorted, so that the table grows with the grammar instead of with the product of productions and tokens.
+	 */
+	private void generateTables(final int[] defaultRules, final List<SortedMap<Integer, Integer>> rows) {
+		final int[] rowStarts = new int[productionCount + 1];
+		final List<Integer> pairColumns = new ArrayList<>();
+		final List<Integer> pairRules = new ArrayList<>();
+		for (int i = 0; i < productionCount; i++) {
+			rowStarts[i] = pairColumns.size();
+			pairColumns.addAll(rows.get(i).keySet());
+			pairRules.addAll(rows.get(i).values());
+		}
+		rowStarts[productionCount] = pairColumns.size();
+		final int[] ruleStarts = new int[rules.size() + 1];
+		final List<Integer> ruleSymbols = new ArrayList<>();
+		for (int i = 0; i < rules.size(); i++) {
+			ruleStarts[i] = ruleSymbols.size();
+			// the symbols are pushed on the stack from the last one, so that the first one is parsed first
+			final int[] rule = rules.get(i);
+			for (int j = rule.length - 1; j >= 0; j--) {
+				ruleSymbols.add(rule[j]);
+			}
+		}
+		ruleStarts[rules.size()] = ruleSymbols.size();
+
+		final Map<String, int[]> arrays = new LinkedHashMap<>();
+		arrays.put("DEFAULT_RULES", defaultRules);
+		arrays.put("ROW_STARTS", rowStarts);
+		arrays.put("PAIR_COLUMNS", pairColumns.stream().mapToInt(x -> x).toArray());
+		arrays.put("PAIR_RULES", pairRules.stream().mapToInt(x -> x).toArray());
+		arrays.put("RULE_STARTS", ruleStarts);
+		arrays.put("RULE_SYMBOLS", ruleSymbols.stream().mapToInt(x -> x).toArray());
+
+		sb.append("private static final class ParseTables {\n")
+				.indent()
+				.append("private static final int TOKENS = " + tokenCount + ";\n")
+				.append("private static final int PRODUCTIONS = " + productionCount + ";\n")
+				.append("private static final int LOOPS = TOKENS + PRODUCTIONS;\n")
+				.append("private static final int BUILDS = LOOPS + PRODUCTIONS;\n");
+		generateTableArrays(sb, arrays);
+		sb.append("private static int rule(final int production, final int column) {\n")
+				.indent()
+				.append(
+						"final int i = Arrays.binarySearch(PAIR_COLUMNS, ROW_STARTS[production], ROW_STARTS[production + 1], column);\n")
+				.append("return i >= 0 ? PAIR_RULES[i] : DEFAULT_RULES[production];\n")
+				.deindent()
+				.append("}\n")
+				.append("private ParseTables() {}\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	/**
+	 * Generates the arrays of a parse table, stored in a single string where each array is preceded by its length, and
+	 * decoded once per class, like the lexer tables. The types of tokens are stored alongside them.
+	 *
+	 * @param sb The StringBuilder to use, inside the class holding the tables.
+	 * @param arrays The arrays to store, by the name of their field.
+	 */
+	static void generateTableArrays(final IndentedStringBuilder sb, final Map<String, int[]> arrays) {
+		final ByteBuffer bb = ByteBuffer.allocate(arrays.values().stream()
+						.mapToInt(a -> Integer.BYTES * (1 + a.length))
+						.sum())
+				.order(ByteOrder.BIG_ENDIAN);
+		for (final int[] a : arrays.values()) {
+			bb.putInt(a.length);
+			for (final int x : a) {
+				bb.putInt(x);
+			}
+		}
+		final String encoded = Utils.getEscapedString(Base64.getEncoder().encodeToString(bb.array()));
+
+		sb.append("private static final TokenType[] TOKEN_TYPES = TokenType.values();\n");
+		for (final String name : arrays.keySet()) {
+			sb.append("private static final int[] " + name + ";\n");
+		}
+		sb.append("static {\n").indent();
+		DFASerializer.generateEncodedString(sb, encoded);
+		sb.append(
+				"final ByteBuffer bb = ByteBuffer.wrap(Base64.getDecoder().decode(encoded)).order(ByteOrder.BIG_ENDIAN);\n");
+		for (final String name : arrays.keySet()) {
+			sb.append(name + " = read(bb);\n");
+		}
+		sb.deindent()
+				.append("}\n")
+				.append("private static int[] read(final ByteBuffer bb) {\n")
+				.indent()
+				.append("final int[] array = new int[bb.getInt()];\n")
+				.append("for (int i = 0; i < array.length; i++) {\n")
+				.indent()
+				.append("array[i] = bb.getInt();\n")
+				.deindent()
+				.append("}\n")
+				.append("return array;\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	private void generateLoop(final String startSymbol) {
+		sb.append("private int[] symbols = new int[16];\n")
+				.append("private int symbolCount = 0;\n")
+				.append("private void pushSymbol(final int symbol) {\n")
+				.indent()
+				.append("if (symbolCount == symbols.length) {\n")
+				.indent()
+				.append("symbols = Arrays.copyOf(symbols, 2 * symbolCount);\n")
+				.deindent()
+				.append("}\n")
+				.append("symbols[symbolCount++] = symbol;\n")
+				.deindent()
+				.append("}\n")
+				.append("private " + startSymbol + " parse_" + startSymbol + "() {\n")
+				.indent()
+				.append("symbolCount = 0;\n")
+				.append("pushSymbol(ParseTables.TOKENS + " + productionIndices.get(startSymbol) + ");\n")
+				.append("while (symbolCount > 0) {\n")
+				.indent()
+				.append("final int symbol = symbols[--symbolCount];\n")
+				.append("if (symbol < ParseTables.TOKENS) {\n")
+				.indent()
+				.append("final Terminal t = parseTerminal(ParseTables.TOKEN_TYPES[symbol]);\n")
+				.append("if (t == null) {\n")
+				.indent()
+				.append("popValues(0);\n")
+				.append("return null;\n")
+				.deindent()
+				.append("}\n")
+				.append("pushValue(t);\n")
+				.deindent()
+				.append("} else if (symbol >= ParseTables.BUILDS) {\n")
+				.indent()
+				.append("final int base = symbols[--symbolCount];\n")
+				.append("final Node node = build(symbol - ParseTables.BUILDS, base);\n")
+				.append("popValues(base);\n")
+				.append("pushValue(node);\n")
+				.deindent()
+				.append("} else {\n")
+				.indent()
+				.append("final boolean loop = symbol >= ParseTables.LOOPS;\n")
+				.append("final int production = symbol - (loop ? ParseTables.LOOPS : ParseTables.TOKENS);\n")
+				.append("final int next = peek();\n")
+				.append("final int rule = ParseTables.rule(production, next == EOF ? ParseTables.TOKENS : next);\n")
+				.append("if (rule == -1) {\n")
+				.indent()
+				// a repetition which cannot go on is simply over
+				.append("if (loop) {\n")
+				.indent()
+				.append("continue;\n")
+				.deindent()
+				.append("}\n")
+				.append("failAt(pos);\n")
+				.append("popValues(0);\n")
+				.append("return null;\n")
+				.deindent()
+				.append("}\n")
+				.append("if (!loop) {\n")
+				.indent()
+				.append("pushSymbol(valueCount);\n")
+				.append("pushSymbol(ParseTables.BUILDS + production);\n")
+				.deindent()
+				.append("}\n")
+				.append("for (int i = ParseTables.RULE_STARTS[rule]; i < ParseTables.RULE_STARTS[rule + 1]; i++) {\n")
+				.indent()
+				.append("pushSymbol(ParseTables.RULE_SYMBOLS[i]);\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n")
+				.append("final " + startSymbol + " result = (" + startSymbol + ") values[0];\n")
+				.append("popValues(0);\n")
+				.append("return result;\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	/*
+	Building the nodes is the only part which depends on the productions, one line each. The lines are split among
+	methods small enough to be compiled by the JIT.
+	 */
+	private void generateBuild(final List<Production> parserProductions) {
+		final int methods = (productionCount + BUILD_METHOD_SIZE - 1) / BUILD_METHOD_SIZE;
+		sb.append("@SuppressWarnings(\"unchecked\")\n")
+				.append("private <N> List<N> nodesFrom(final int base) {\n")
+				.indent()
+				.append("final List<N> nodes = new ArrayList<>(valueCount - base);\n")
+				.append("for (int i = base; i < valueCount; i++) {\n")
+				.indent()
+				.append("nodes.add((N) values[i]);\n")
+				.deindent()
+				.append("}\n")
+				.append("return nodes;\n")
+				.deindent()
+				.append("}\n")
+				.append("private Node build(final int production, final int base) {\n")
+				.indent()
+				.append("return switch (production / " + BUILD_METHOD_SIZE + ") {\n")
+				.indent();
+		for (int m = 0; m < methods; m++) {
+			sb.append("case " + m + " -> build_" + m + "(production, base);\n");
+		}
+		sb.append(
+						"default -> throw new IllegalArgumentException(String.format(\"Unknown production: %,d.\", production));\n")
+				.deindent()
+				.append("};\n")
+				.deindent()
+				.append("}\n");
+		for (int m = 0; m < methods; m++) {
+			sb.append("private Node build_" + m + "(final int production, final int base) {\n")
+					.indent()
+					.append("return switch (production) {\n")
+					.indent();
+			for (int i = m * BUILD_METHOD_SIZE; i < Math.min(productionCount, (m + 1) * BUILD_METHOD_SIZE); i++) {
+				final Production p = parserProductions.get(i);
+				sb.append("case " + i + " -> new " + p.start().name() + "(" + buildArguments(p.result()) + ");\n");
+			}
+			sb.append(
+							"default -> throw new IllegalArgumentException(String.format(\"Unknown production: %,d.\", production));\n")
+					.deindent()
+					.append("};\n")
+					.deindent()
+					.append("}\n");
+		}
+	}
+
+	private String buildArguments(final Expression result) {
+		return switch (result) {
+			case NonTerminal nt -> "(" + resolveTypeName(nt) + ") values[base]";
+			case Sequence s -> {
+				final List<String> children = new ArrayList<>();
+				for (int i = 0; i < s.expressions().size(); i++) {
+					children.add("(" + resolveTypeName(s.expressions().get(i)) + ") values["
+							+ (i == 0 ? "base" : "base + " + i) + "]");
+				}
+				yield String.join(", ", children);
+			}
+			case Or ignored -> "(Node) values[base]";
+			case ZeroOrOne zoo -> "valueCount > base ? (" + resolveTypeName(zoo.inner()) + ") values[base] : null";
+			case ZeroOrMore ignored -> "nodesFrom(base)";
+			case OneOrMore ignored -> "nodesFrom(base)";
+			default -> throw new IllegalArgumentException(String.format("Unknown node: '%s'", result));
+		};
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.generator;
+
+/** The possible ways for a generated parser to run the productions of its grammar. */
+public enum ParserBackend {
+
+	/** Each production becomes a method which calls the methods of its children. Deep nesting may overflow the stack. */
+	RECURSIVE_DESCENT,
+
+	/**
+	 * Each production becomes a set of states of a machine running on a stack of its own, stored in the heap, so that
+	 * the nesting of the input is limited only by the heap.
+	 */
+	EXPLICIT_STACK,
+
+	/**
+	 * An LL(1) parse table, stored like the lexer tables, drives a single loop shared by all productions, so that the
+	 * generated class barely grows with the grammar. Only grammars which never need to look further than the next
+	 * token are accepted.
+	 */
+	LL1_TABLE,
+
+	/**
+	 * LALR(1) action and goto tables drive a single loop which shifts tokens and reduces productions, in linear time.
+	 * Left-recursive grammars are accepted, while grammars where the next token is not enough to choose what to reduce
+	 * are not.
+	 *
+	 * <p>The other backends keep the first alternative of a choice which matches, while the tables keep all of them
+	 * until the input decides, so grammars with a choice whose alternatives may start with the same token, or with an
+	 * alternative which may be empty before others, are rejected. Repetitions and optional parts, which the other
+	 * backends match greedily without giving anything back, may still make the tables accept more inputs. The error
+	 * position of a rejected input is the first token which the tables have no action for, which may come before the
+	 * furthest token reached by the other backends.
+	 */
+	LALR1_TABLE
+}
@@ -45,9 +45,15 @@ public final class ParserSerializer {
 	private final IndentedStringBuilder sb;
 	private final Set<String> tokenNames;
 	private final Map<Node, String> globalNodeNames;
+	private final List<String> memoizedProductions;
+	private final ParserBackend backend;
+	private final boolean cachedChildren;
+	private final boolean adaptivePrediction;
+	private final boolean precedenceClimbing;
+	private final List<String> decisions = new ArrayList<>();
 
 	/**
-	 * Creates a new ParserSerializer.
+	 * Creates a new ParserSerializer with the default options and no memoized productions.
 	 *
 	 * @param sb The StringBuilder to use.
 	 * @param tokenNames The set of non-terminals corresponding to lexer productions.
@@ -55,9 +61,32 @@ public final class ParserSerializer {
 	 */
 	public ParserSerializer(
 			final IndentedStringBuilder sb, final Set<String> tokenNames, final Map<Node, String> nodeNames) {
+		this(sb, tokenNames, nodeNames, List.of(), GeneratorOptions.builder().build());
+	}
+
+	/**
+	 * Creates a new ParserSerializer.
+	 *
+	 * @param sb The StringBuilder to use.
+	 * @param tokenNames The set of non-terminals corresponding to lexer productions.
+	 * @param nodeNames A map of the name for each node in the grammar.
+	 * @param memoizedProductions The names of the productions whose results are remembered at each position.
+	 * @param options The options deciding how the parser runs the productions of the grammar.
+	 */
+	public ParserSerializer(
+			final IndentedStringBuilder sb,
+			final Set<String> tokenNames,
+			final Map<Node, String> nodeNames,
+			final List<String> memoizedProductions,
+			final GeneratorOptions options) {
 		this.sb = Objects.requireNonNull(sb);
 		this.tokenNames = Objects.requireNonNull(tokenNames);
 		this.globalNodeNames = Objects.requireNonNull(nodeNames);
+		this.memoizedProductions = List.copyOf(memoizedProductions);
+		this.backend = options.parserBackend();
+		this.cachedChildren = options.cachedChildren();
+		this.adaptivePrediction = options.adaptivePrediction();
+		this.precedenceClimbing = options.precedenceClimbing();
 	}
 
 	private boolean isToken(final String tokenName) {
@@ -80,7 +109,77 @@ public final class ParserSerializer {
 
 		generateTypes(parserProductions);
 		generateTerminalSymbolParsing();
-		generateProductions(parserProductions);
+		if (!memoizedProductions.isEmpty()) {
+			generateMemoTable();
+		}
+		switch (backend) {
+			case RECURSIVE_DESCENT -> generateProductions(g);
+			// nesting is limited only by the heap, since parsing a child does not take a frame of the call stack
+			case EXPLICIT_STACK -> new StackMachineSerializer(sb, tokenNames, globalNodeNames).generateMachine(g);
+			case LL1_TABLE -> new ParseTableSerializer(sb, tokenNames, globalNodeNames).generateTableParser(g);
+			case LALR1_TABLE -> new LALRTableSerializer(sb, tokenNames).generateTableParser(g);
+		}
+	}
+
+	/*
+	The memo table stores, for each token position and each memoized production, where the production ended (plus
+	one, so that zero means "not parsed yet", and -1 means "failed") and the node it produced. Positions are the rows
+	of the table, so that it can grow as tokens are pulled from the lexer. Only the used part is cleared between
+	parses.
+	 */
+	private void generateMemoTable() {
+		sb.append("private static final int MEMOIZED_PRODUCTIONS = " + memoizedProductions.size() + ";\n")
+				.append("private int[] memoEnds = new int[64 * MEMOIZED_PRODUCTIONS];\n")
+				.append("private Node[] memoNodes = new Node[64 * MEMOIZED_PRODUCTIONS];\n")
+				.append("private int memoLimit = 0;\n")
+				.append("private void clearMemo() {\n")
+				.indent()
+				.append("Arrays.fill(memoEnds, 0, memoLimit, 0);\n")
+				.append("Arrays.fill(memoNodes, 0, memoLimit, null);\n")
+				.append("memoLimit = 0;\n")
+				.deindent()
+				.append("}\n")
+				.append("private void memoize(final int key, final Node result) {\n")
+				.indent()
+				.append("if (key >= memoEnds.length) {\n")
+				.indent()
+				.append("final int newLength = Math.max(2 * memoEnds.length, key + MEMOIZED_PRODUCTIONS);\n")
+				.append("memoEnds = Arrays.copyOf(memoEnds, newLength);\n")
+				.append("memoNodes = Arrays.copyOf(memoNodes, newLength);\n")
+				.deindent()
+				.append("}\n")
+				.append("memoEnds[key] = result == null ? -1 : pos + 1;\n")
+				.append("memoNodes[key] = result;\n")
+				.append("memoLimit = Math.max(memoLimit, key + 1);\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	private IndentedStringBuilder openParseMethod(final String productionName) {
+		final int index = memoizedProductions.indexOf(productionName);
+		if (index == -1) {
+			return sb.append("private " + productionName + " parse_" + productionName + "() {\n");
+		}
+		sb.append("private " + productionName + " parse_" + productionName + "() {\n")
+				.indent()
+				.append("final int key = pos * MEMOIZED_PRODUCTIONS + " + index + ";\n")
+				.append("if (key < memoEnds.length && memoEnds[key] != 0) {\n")
+				.indent()
+				.append("if (memoEnds[key] == -1) {\n")
+				.indent()
+				.append("return null;\n")
+				.deindent()
+				.append("}\n")
+				.append("pos = memoEnds[key] - 1;\n")
+				.append("return (" + productionName + ") memoNodes[key];\n")
+				.deindent()
+				.append("}\n")
+				.append("final " + productionName + " result = parse_" + productionName + "_unmemoized();\n")
+				.append("memoize(key, result);\n")
+				.append("return result;\n")
+				.deindent()
+				.append("}\n");
+		return sb.append("private " + productionName + " parse_" + productionName + "_unmemoized() {\n");
 	}
 
 	@SuppressWarnings("PMD.AvoidLiteralsInIfCondition")
@@ -111,57 +210,11 @@ public final class ParserSerializer {
 							.append("}\n")
 							.deindent()
 							.append("}\n");
-				case Sequence(final List<Expression> expressions) -> {
-					final Map<String, Integer> typeCounts = new HashMap<>();
-					for (final Expression exp : expressions) {
-						final String typeName = resolveTypeName(exp);
-						final String nodeName = globalNodeNames.get(exp);
-						final String fullName = typeName + " " + nodeName;
-						typeCounts.put(fullName, typeCounts.getOrDefault(fullName, 0) + 1);
-					}
-					final Map<String, Integer> nameCounter = new HashMap<>();
-					final List<String> nodeNames = new ArrayList<>();
-					for (final Expression exp : expressions) {
-						final String typeName = resolveTypeName(exp);
-						final String nodeName = globalNodeNames.get(exp);
-						final String fullName = typeName + " " + nodeName;
-						if (typeCounts.get(fullName) == 1) {
-							nodeNames.add(nodeName);
-						} else {
-							final int count = nameCounter.getOrDefault(fullName, 0);
-							nodeNames.add(nodeName + "_" + count);
-							nameCounter.put(fullName, count + 1);
-						}
-					}
-					sb.append("public record ")
-							.append(newNodeName)
-							.append('(')
-							.append(IntStream.range(0, expressions.size())
-									.mapToObj(i -> resolveTypeName(expressions.get(i)) + " " + nodeNames.get(i))
-									.collect(Collectors.joining(", ")))
-							.append(") implements Sequence {\n")
-							.indent()
-							.append("@Override\n")
-							.append("public String name() {\n")
-							.indent()
-							.append("return \"")
-							.append(newNodeName)
-							.append("\";\n")
-							.deindent()
-							.append("}\n")
-							.append("@Override\n")
-							.append("public List<Node> nodes() {\n")
-							.indent()
-							.append("return List.of(")
-							.append(IntStream.range(0, expressions.size())
-									.mapToObj(nodeNames::get)
-									.collect(Collectors.joining(", ")))
-							.append(");\n")
-							.deindent()
-							.append("}\n")
-							.deindent()
-							.append("}\n");
-				}
+				case Sequence(final List<Expression> expressions) ->
+					generateSequenceType(
+							newNodeName,
+							expressions.stream().map(this::resolveTypeName).toList(),
+							componentNames(expressions, globalNodeNames));
 				case Or ignored ->
 					sb.append("public record ")
 							.append(newNodeName)
@@ -216,12 +269,20 @@ public final class ParserSerializer {
 							.append("\";\n")
 							.deindent()
 							.append("}\n")
+							.append("public " + newNodeName + " {\n")
+							.indent()
+							.append(globalNodeNames.get(inner) + " = Collections.unmodifiableList(" + globalNodeNames.get(inner)
+									+ ");\n")
+							.deindent()
+							.append("}\n")
 							.append("@Override\n")
+							.append("@SuppressWarnings(\"unchecked\")\n")
 							.append("public List<Node> nodes() {\n")
 							.indent()
-							.append("return ")
+							// the list cannot be modified, so it can be seen as a list of any of its supertypes
+							.append("return (List<Node>) (List<? extends Node>) ")
 							.append(globalNodeNames.get(inner))
-							.append(".stream().map(n -> (Node) n).toList();\n")
+							.append(";\n")
 							.deindent()
 							.append("}\n")
 							.deindent()
@@ -243,12 +304,20 @@ public final class ParserSerializer {
 							.append("\";\n")
 							.deindent()
 							.append("}\n")
+							.append("public " + newNodeName + " {\n")
+							.indent()
+							.append(globalNodeNames.get(inner) + " = Collections.unmodifiableList(" + globalNodeNames.get(inner)
+									+ ");\n")
+							.deindent()
+							.append("}\n")
 							.append("@Override\n")
+							.append("@SuppressWarnings(\"unchecked\")\n")
 							.append("public List<Node> nodes() {\n")
 							.indent()
-							.append("return ")
+							// the list cannot be modified, so it can be seen as a list of any of its supertypes
+							.append("return (List<Node>) (List<? extends Node>) ")
 							.append(globalNodeNames.get(inner))
-							.append(".stream().map(n -> (Node) n).toList();\n")
+							.append(";\n")
 							.deindent()
 							.append("}\n")
 							.deindent()
@@ -258,32 +327,191 @@ public final class ParserSerializer {
 		}
 	}
 
-	private void generateProductions(final List<Production> parserProductions) {
-		for (final Production p : parserProductions) {
+	/**
+	 * Returns the names of the children of a sequence, which are the names of their nodes. When the same node appears
+	 * more than once, each occurrence gets its index as a suffix.
+	 *
+	 * @param expressions The children of the sequence.
+	 * @param nodeNames A map of the name for each node in the grammar.
+	 * @return The name of each child, in order.
+	 */
+	@SuppressWarnings("PMD.AvoidLiteralsInIfCondition")
+	static List<String> componentNames(final List<Expression> expressions, final Map<Node, String> nodeNames) {
+		final Map<String, Integer> nameCounts = new HashMap<>();
+		for (final Expression exp : expressions) {
+			nameCounts.merge(nodeNames.get(exp), 1, Integer::sum);
+		}
+		final Map<String, Integer> nameCounter = new HashMap<>();
+		final List<String> names = new ArrayList<>();
+		for (final Expression exp : expressions) {
+			final String nodeName = nodeNames.get(exp);
+			if (nameCounts.get(nodeName) == 1) {
+				names.add(nodeName);
+			} else {
+				final int count = nameCounter.getOrDefault(nodeName, 0);
+				names.add(nodeName + "_" + count);
+				nameCounter.put(nodeName, count + 1);
+			}
+		}
+		return names;
+	}
+
+	/*
+	When the children are cached, a sequence is a class rather than a record only because it needs one more field: the
+	list of its children is built once, when the node is, instead of every time somebody walks the tree. Everything else
+	behaves like a record, except for record patterns, which is why records stay the default.
+	 */
+	private void generateSequenceType(
+			final String newNodeName, final List<String> typeNames, final List<String> nodeNames) {
+		if (!cachedChildren) {
+			sb.append("public record " + newNodeName + "("
+							+ IntStream.range(0, nodeNames.size())
+									.mapToObj(i -> typeNames.get(i) + " " + nodeNames.get(i))
+									.collect(Collectors.joining(", "))
+							+ ") implements Sequence {\n")
+					.indent()
+					.append("@Override\n")
+					.append("public String name() {\n")
+					.indent()
+					.append("return \"" + newNodeName + "\";\n")
+					.deindent()
+					.append("}\n")
+					.append("@Override\n")
+					.append("public List<Node> nodes() {\n")
+					.indent()
+					.append("return List.of(" + String.join(", ", nodeNames) + ");\n")
+					.deindent()
+					.append("}\n")
+					.deindent()
+					.append("}\n");
+			return;
+		}
+		sb.append("public static final class " + newNodeName + " implements Sequence {\n").indent();
+		for (int i = 0; i < nodeNames.size(); i++) {
+			sb.append("private final " + typeNames.get(i) + " " + nodeNames.get(i) + ";\n");
+		}
+		sb.append("private final List<Node> nodes;\n")
+				.append("public " + newNodeName + "("
+						+ IntStream.range(0, nodeNames.size())
+								.mapToObj(i -> "final " + typeNames.get(i) + " " + nodeNames.get(i))
+								.collect(Collectors.joining(", "))
+						+ ") {\n")
+				.indent();
+		for (final String nodeName : nodeNames) {
+			sb.append("this." + nodeName + " = " + nodeName + ";\n");
+		}
+		sb.append("this.nodes = List.of(" + String.join(", ", nodeNames) + ");\n")
+				.deindent()
+				.append("}\n");
+		for (int i = 0; i < nodeNames.size(); i++) {
+			sb.append("public " + typeNames.get(i) + " " + nodeNames.get(i) + "() {\n")
+					.indent()
+					.append("return " + nodeNames.get(i) + ";\n")
+					.deindent()
+					.append("}\n");
+		}
+		sb.append("@Override\n")
+				.append("public String name() {\n")
+				.indent()
+				.append("return \"" + newNodeName + "\";\n")
+				.deindent()
+				.append("}\n")
+				.append("@Override\n")
+				.append("public List<Node> nodes() {\n")
+				.indent()
+				.append("return nodes;\n")
+				.deindent()
+				.append("}\n")
+				.append("@Override\n")
+				.append("public boolean equals(final Object other) {\n")
+				.indent()
+				.append("return other instanceof " + newNodeName + " s && nodes.equals(s.nodes);\n")
+				.deindent()
+				.append("}\n")
+				.append("@Override\n")
+				.append("public int hashCode() {\n")
+				.indent()
+				.append("return nodes.hashCode();\n")
+				.deindent()
+				.append("}\n")
+				.append("@Override\n")
+				.append("public String toString() {\n")
+				.indent()
+				.append("return \"" + newNodeName + "["
+						+ nodeNames.stream().map(n -> n + "=\" + " + n).collect(Collectors.joining(" + \", "))
+						+ " + \"]\";\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	private void generateProductions(final Grammar g) {
+		if (adaptivePrediction) {
+			// the choices which a single token is enough for gain nothing from looking further
+			for (final Production p : g.getParserProductions()) {
+				if (p.result() instanceof final Or or && !GrammarUtils.predict(g, or).isPredictive()) {
+					decisions.add(p.start().name());
+				}
+			}
+			if (!decisions.isEmpty()) {
+				new AdaptivePredictionSerializer(sb, tokenNames).generatePrediction(g, decisions);
+			}
+		}
+		final PrecedenceClimbingSerializer climbing = precedenceClimbing
+				? new PrecedenceClimbingSerializer(sb, tokenNames, globalNodeNames, g, memoizedProductions)
+				: null;
+		for (final Production p : g.getParserProductions()) {
 			final NonTerminal start = p.start();
 			final Expression result = p.result();
 			final String productionName = start.name();
 
 			switch (result) {
 				case NonTerminal nt -> generateNonTerminal(start, nt);
-				case Sequence s -> generateSequence(productionName, s);
-				case Or or -> generateOr(productionName, or);
+				case Sequence s -> {
+					if (climbing != null && climbing.isLevel(productionName)) {
+						climbing.generateLevel(productionName);
+					} else {
+						generateSequence(productionName, s);
+					}
+				}
+				case Or or -> {
+					if (decisions.contains(productionName)) {
+						generateAdaptiveOr(productionName, or, decisions.indexOf(productionName));
+					} else {
+						generateOr(productionName, or, GrammarUtils.predict(g, or));
+					}
+				}
 				case ZeroOrOne zoo -> generateZeroOrOne(productionName, zoo);
 				case ZeroOrMore zom -> generateZeroOrMore(productionName, zom);
 				case OneOrMore oom -> generateOneOrMore(productionName, oom);
 				default -> throw new IllegalArgumentException(String.format("Unknown node: '%s'", result));
 			}
 		}
+		if (climbing != null) {
+			climbing.generateChains();
+		}
 	}
 
 	private void generateTerminalSymbolParsing() {
 		sb.append("private Terminal parseTerminal(final TokenType expected) {\n")
 				.indent()
-				.append("if (pos < v.length && v[pos].type() == expected) {\n")
+				.append("if (peek() == expected.ordinal()) {\n")
+				.indent()
+				.append("final int i = pos++;\n")
+				// backtracking may match the same token many times, but it becomes a terminal only once
+				.append("if (tokens.node(i) instanceof Terminal cached) {\n")
 				.indent()
-				.append("return new Terminal(v[pos++].content());\n")
+				.append("return cached;\n")
 				.deindent()
 				.append("}\n")
+				.append(
+						"final Terminal t = tokens.input() != null ? new Terminal(tokens.input(), tokens.start(i), tokens.end(i)) : new Terminal(tokens.bytes(), tokens.start(i), tokens.end(i));\n")
+				.append("tokens.node(i, t);\n")
+				.append("return t;\n")
+				.deindent()
+				.append("}\n")
+				.append("failAt(pos);\n")
 				.append("return null;\n")
 				.deindent()
 				.append("}\n");
@@ -299,14 +527,72 @@ public final class ParserSerializer {
 		};
 	}
 
-	private void generateOr(final String productionName, final Or or) {
-		sb.append("private " + productionName + " parse_" + productionName + "() {\n")
+	/*
+	Alternatives are tried in order and the first one to succeed wins. Those which cannot start with the next token are
+	bound to fail, so a switch on the type of the next token skips them: when at most one alternative remains for each
+	token, the choice needs no backtracking at all.
+	 */
+	private void generateOr(final String productionName, final Or or, final OrPrediction prediction) {
+		openParseMethod(productionName)
+				.indent();
+		final List<Expression> expressions = or.expressions();
+		if (prediction.otherwise().size() == expressions.size()) {
+			generateAlternatives(productionName, expressions, prediction.otherwise());
+			sb.append("return null;\n").deindent().append("}\n");
+			return;
+		}
+
+		sb.append("final TokenType next = pos < tokens.size() || fill(pos) ? tokens.type(pos) : null;\n")
+				.append("switch (next) {\n")
+				.indent();
+		// tokens with the same alternatives share the same case
+		for (final Map.Entry<List<Integer>, List<String>> e : prediction.cases().entrySet()) {
+			sb.append("case " + String.join(", ", e.getValue()) + " -> {\n").indent();
+			generateAlternatives(productionName, expressions, e.getKey());
+			sb.deindent().append("}\n");
+		}
+		if (prediction.otherwise().isEmpty()) {
+			sb.append("case null, default -> failAt(pos);\n");
+		} else {
+			sb.append("case null, default -> {\n").indent();
+			generateAlternatives(productionName, expressions, prediction.otherwise());
+			sb.deindent().append("}\n");
+		}
+		sb.deindent().append("}\n").append("return null;\n").deindent().append("}\n");
+	}
+
+	/*
+	When the next token is not enough to choose, the alternatives are run as automata over the upcoming tokens for as
+	long as needed to rule out those which cannot match, and only the others are tried, still in order.
+	 */
+	private void generateAdaptiveOr(final String productionName, final Or or, final int decision) {
+		openParseMethod(productionName)
+				.indent()
+				.append("for (final int alternative : predict(" + decision + ")) {\n")
+				.indent()
+				.append("switch (alternative) {\n")
 				.indent();
 		final List<Expression> expressions = or.expressions();
 		for (int i = 0; i < expressions.size(); i++) {
-			final Expression exp = expressions.get(i);
+			sb.append("case " + i + " -> {\n").indent();
+			generateAlternatives(productionName, expressions, List.of(i));
+			sb.deindent().append("}\n");
+		}
+		sb.append("default -> throw new IllegalStateException(String.format(\"Unknown alternative: %,d.\", alternative));\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n")
+				.append("return null;\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	private void generateAlternatives(
+			final String productionName, final List<Expression> expressions, final List<Integer> alternatives) {
+		for (final int i : alternatives) {
 			final String nodeName = "n_" + i;
-			generateParseCall(exp, nodeName);
+			generateParseCall(expressions.get(i), nodeName);
 			sb.append("if (" + nodeName + " != null) {\n")
 					.indent()
 					.append("return new ")
@@ -315,14 +601,13 @@ public final class ParserSerializer {
 					.deindent()
 					.append("}\n");
 		}
-		sb.append("return null;\n").deindent().append("}\n");
 	}
 
 	private void generateZeroOrMore(final String productionName, final ZeroOrMore zom) {
 		final Expression inner = zom.inner();
 		final String innerTypeName = resolveTypeName(inner);
 
-		sb.append("private " + productionName + " parse_" + productionName + "() {\n")
+		openParseMethod(productionName)
 				.indent()
 				.append("final List<" + innerTypeName + "> nodes = new ArrayList<>();\n")
 				.append("while (true) {\n")
@@ -349,7 +634,7 @@ public final class ParserSerializer {
 		final Expression inner = oom.inner();
 		final String innerTypeName = resolveTypeName(inner);
 
-		sb.append("private " + productionName + " parse_" + productionName + "() {\n")
+		openParseMethod(productionName)
 				.indent();
 		generateParseCall(inner, "n_0");
 		if (canBeNull(inner)) {
@@ -380,9 +665,9 @@ public final class ParserSerializer {
 	}
 
 	private void generateSequence(final String productionName, final Sequence s) {
-		sb.append("private " + productionName + " parse_" + productionName + "() {\n")
+		openParseMethod(productionName)
 				.indent()
-				.append("stack.push(this.pos);\n");
+				.append("push(this.pos);\n");
 
 		final List<Expression> seq = s.expressions();
 		for (int i = 0; i < seq.size(); i++) {
@@ -393,14 +678,14 @@ public final class ParserSerializer {
 			if (canBeNull(exp)) {
 				sb.append("if (" + nodeName + " == null) {\n")
 						.indent()
-						.append("this.pos = stack.pop();\n")
+						.append("this.pos = pop();\n")
 						.append("return null;\n")
 						.deindent()
 						.append("}\n");
 			}
 		}
 
-		sb.append("stack.pop();\n")
+		sb.append("pop();\n")
 				.append("return new " + productionName + "("
 						+ IntStream.range(0, seq.size()).mapToObj(i -> "n_" + i).collect(Collectors.joining(", "))
 						+ ");\n")
@@ -411,7 +696,7 @@ public final class ParserSerializer {
 	private void generateNonTerminal(final NonTerminal start, final Expression result) {
 		final String typeName = globalNodeNames.get(start);
 
-		sb.append("private " + typeName + " parse_" + typeName + "() {\n").indent();
+		openParseMethod(typeName).indent();
 		generateParseCall(result, "inner");
 		if (canBeNull(result)) {
 			sb.append("if (inner == null) {\n")
@@ -426,7 +711,7 @@ public final class ParserSerializer {
 	private void generateZeroOrOne(final String productionName, final ZeroOrOne zoo) {
 		final Expression inner = zoo.inner();
 
-		sb.append("private " + productionName + " parse_" + productionName + "() {\n")
+		openParseMethod(productionName)
 				.indent();
 		generateParseCall(inner, "inner");
 		sb.append("return new " + productionName + "(inner);\n").deindent().append("}\n");
@@ -0,0 +1,340 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.generator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.ledmington.ebnf.Expression;
+import com.ledmington.ebnf.Grammar;
+import com.ledmington.ebnf.Node;
+import com.ledmington.ebnf.NonTerminal;
+import com.ledmington.ebnf.Or;
+import com.ledmington.ebnf.Production;
+import com.ledmington.ebnf.Sequence;
+import com.ledmington.ebnf.ZeroOrMore;
+
+/**
+ * Generates precedence climbing for the operator productions of a grammar. An operator production has the shape
+ * {@code level = operand ( operator operand )*}, where the operator is a token or a choice between tokens: when its
+ * operand is itself an operator production, the two are levels of the same chain, the outer one binding less tightly.
+ * A whole chain is parsed by a single loop which reads an operand, then looks up the level of the operator following
+ * it in a table, so that an expression costs one call per operand and per operator instead of one call per level. The
+ * tree is the same that the productions would build.
+ */
+@SuppressWarnings("PMD.AvoidDuplicateLiterals")
+final class PrecedenceClimbingSerializer {
+
+	/**
+	 * A level of a chain of operator productions.
+	 *
+	 * @param name The name of the production.
+	 * @param rest The name of the repetition of the operators and operands after the first operand.
+	 * @param pair The name of the sequence of an operator and its operand.
+	 * @param operator The operator, either a token or a choice between tokens.
+	 * @param operand The operand, either the next level or what ends the chain.
+	 * @param operatorTokens The names of the tokens which are operators of this level.
+	 */
+	private record Level(
+			String name, String rest, String pair, NonTerminal operator, NonTerminal operand, Set<String> operatorTokens) {}
+
+	private final IndentedStringBuilder sb;
+	private final Set<String> tokenNames;
+	private final Map<Node, String> nodeNames;
+	private final Map<String, List<Level>> chains = new LinkedHashMap<>();
+	private final Map<String, String> chainOf = new HashMap<>();
+
+	/**
+	 * Creates a new PrecedenceClimbingSerializer and finds the chains of operator productions of the given grammar.
+	 *
+	 * @param sb The StringBuilder to use.
+	 * @param tokenNames The set of non-terminals corresponding to lexer productions.
+	 * @param nodeNames A map of the name for each node in the grammar.
+	 * @param g The grammar to be used.
+	 * @param excluded The names of the productions which must keep their own parsing method.
+	 */
+	PrecedenceClimbingSerializer(
+			final IndentedStringBuilder sb,
+			final Set<String> tokenNames,
+			final Map<Node, String> nodeNames,
+			final Grammar g,
+			final List<String> excluded) {
+		this.sb = Objects.requireNonNull(sb);
+		this.tokenNames = Objects.requireNonNull(tokenNames);
+		this.nodeNames = Objects.requireNonNull(nodeNames);
+
+		final Map<String, Expression> productions = new HashMap<>();
+		for (final Production p : g.getParserProductions()) {
+			productions.put(p.start().name(), p.result());
+		}
+		final Map<String, Level> levels = new LinkedHashMap<>();
+		for (final Production p : g.getParserProductions()) {
+			final String name = p.start().name();
+			if (!excluded.contains(name)) {
+				final Level level = findLevel(name, p.result(), productions);
+				if (level != null) {
+					levels.put(name, level);
+				}
+			}
+		}
+
+		// the top of a chain is a level which is not the operand of another one
+		final Set<String> operands =
+				levels.values().stream().map(l -> l.operand().name()).collect(Collectors.toSet());
+		for (final Level top : levels.values()) {
+			if (operands.contains(top.name())) {
+				continue;
+			}
+			final List<Level> chain = new ArrayList<>();
+			final Set<String> operators = new HashSet<>();
+			Level current = top;
+			// a token which is an operator of two levels could be either, so the chain stops before the second one
+			while (current != null
+					&& !chain.contains(current)
+					&& current.operatorTokens().stream().noneMatch(operators::contains)) {
+				chain.add(current);
+				operators.addAll(current.operatorTokens());
+				current = levels.get(current.operand().name());
+			}
+			chains.put(top.name(), chain);
+			for (final Level level : chain) {
+				chainOf.putIfAbsent(level.name(), top.name());
+			}
+		}
+	}
+
+	private Level findLevel(final String name, final Expression result, final Map<String, Expression> productions) {
+		if (!(result instanceof final Sequence s)
+				|| s.expressions().size() != 2
+				|| !(s.expressions().getFirst() instanceof final NonTerminal operand)
+				|| !(s.expressions().getLast() instanceof final NonTerminal rest)
+				|| !(productions.get(rest.name()) instanceof final ZeroOrMore zom)
+				|| !(zom.inner() instanceof final NonTerminal pair)
+				|| !(productions.get(pair.name()) instanceof final Sequence ps)
+				|| ps.expressions().size() != 2
+				|| !operand.equals(ps.expressions().getLast())
+				|| !(ps.expressions().getFirst() instanceof final NonTerminal operator)) {
+			return null;
+		}
+		final Set<String> operatorTokens = new HashSet<>();
+		if (isToken(operator.name())) {
+			operatorTokens.add(operator.name());
+		} else if (productions.get(operator.name()) instanceof final Or or
+				&& or.expressions().stream()
+						.allMatch(e -> e instanceof final NonTerminal nt && isToken(nt.name()))) {
+			for (final Expression e : or.expressions()) {
+				if (!operatorTokens.add(((NonTerminal) e).name())) {
+					return null;
+				}
+			}
+		} else {
+			return null;
+		}
+		return new Level(name, rest.name(), pair.name(), operator, operand, operatorTokens);
+	}
+
+	private boolean isToken(final String name) {
+		return tokenNames.contains(name);
+	}
+
+	private String typeName(final NonTerminal nt) {
+		return isToken(nt.name()) ? "Terminal" : nt.name();
+	}
+
+	private String parseCall(final NonTerminal nt) {
+		return isToken(nt.name()) ? "parseTerminal(TokenType." + nt.name() + ")" : "parse_" + nodeNames.get(nt) + "()";
+	}
+
+	/**
+	 * Checks whether the given production is parsed by the loop of a chain.
+	 *
+	 * @param productionName The name of the production.
+	 * @return True if the production is a level of a chain, false otherwise.
+	 */
+	boolean isLevel(final String productionName) {
+		return chainOf.containsKey(productionName);
+	}
+
+	/**
+	 * Generates the parsing method of the given level, which runs the loop of its chain from that level.
+	 *
+	 * @param productionName The name of the production, which must be a level of a chain.
+	 */
+	void generateLevel(final String productionName) {
+		final String top = chainOf.get(productionName);
+		final List<String> names = chains.get(top).stream().map(Level::name).toList();
+		sb.append("private " + productionName + " parse_" + productionName + "() {\n")
+				.indent()
+				.append("return (" + productionName + ") climb_" + top + "(" + names.indexOf(productionName) + ");\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	/** Generates the loop of each chain. */
+	void generateChains() {
+		final Set<String> emptyRests = new HashSet<>();
+		for (final List<Level> chain : chains.values()) {
+			for (final Level level : chain) {
+				if (emptyRests.add(level.rest())) {
+					// a bare operand has no operators after it, and an empty repetition can be shared by all of them
+					sb.append("private static final " + level.rest() + " EMPTY_" + level.rest() + " = new "
+							+ level.rest() + "(List.of());\n");
+				}
+			}
+		}
+		for (final Map.Entry<String, List<Level>> e : chains.entrySet()) {
+			generateChain(e.getKey(), e.getValue());
+		}
+	}
+
+	/*
+	Each level keeps its first operand, the operators and operands read so far, and the operator waiting for its operand,
+	if any: the levels tighter than the one of the last operator are always empty. When an operator is read, the tighter
+	levels are closed one by one, each becoming the operand of the next, until the level of the operator, which then
+	waits for its own operand. When no operator follows, every level is closed. When an operator is not followed by an
+	operand, the operator is given back, just like the repetition containing it would have done: its position waits on
+	the backtracking stack, so that the tokens from the operator on are not discarded while the operand is parsed.
+	 */
+	private void generateChain(final String top, final List<Level> chain) {
+		final int innermost = chain.size() - 1;
+		final NonTerminal primary = chain.getLast().operand();
+
+		sb.append("private Node climb_" + top + "(final int minLevel) {\n").indent();
+		for (int i = 0; i < chain.size(); i++) {
+			final Level level = chain.get(i);
+			sb.append(typeName(level.operand()) + " first_" + i + " = null;\n")
+					.append("List<" + level.pair() + "> rest_" + i + " = null;\n")
+					.append(typeName(level.operator()) + " operator_" + i + " = null;\n");
+		}
+		sb.append("int pending = -1;\n")
+				.append("while (true) {\n")
+				.indent()
+				.append("final " + typeName(primary) + " primary = " + parseCall(primary) + ";\n")
+				.append("final int before = pending == -1 ? pos : pop();\n")
+				.append("Node operand = primary;\n")
+				.append("int from = " + innermost + ";\n")
+				.append("int stop;\n")
+				.append("if (primary == null) {\n")
+				.indent()
+				.append("if (pending == -1) {\n")
+				.indent()
+				.append("return null;\n")
+				.deindent()
+				.append("}\n")
+				.append("pos = before;\n")
+				.append("from = pending;\n")
+				.append("stop = minLevel - 1;\n")
+				.deindent()
+				.append("} else {\n")
+				.indent()
+				.append("final TokenType next = pos < tokens.size() || fill(pos) ? tokens.type(pos) : null;\n")
+				.append("stop = switch (next) {\n")
+				.indent();
+		for (int i = 0; i < chain.size(); i++) {
+			sb.append("case " + String.join(", ", chain.get(i).operatorTokens().stream().sorted().toList()) + " -> " + i
+					+ ";\n");
+		}
+		sb.append("case null, default -> -1;\n")
+				.deindent()
+				.append("};\n")
+				.append("if (stop < minLevel) {\n")
+				.indent()
+				.append("failAt(pos);\n")
+				.append("stop = minLevel - 1;\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n")
+				.append("for (int level = from; level > stop; level--) {\n")
+				.indent()
+				.append("switch (level) {\n")
+				.indent();
+		for (int i = 0; i < chain.size(); i++) {
+			final Level level = chain.get(i);
+			sb.append("case " + i + " -> {\n").indent();
+			generatePlacement(i, level);
+			sb.append("operand = new " + level.name() + "(first_" + i + ", rest_" + i + " == null ? EMPTY_"
+							+ level.rest() + " : new " + level.rest() + "(rest_" + i + "));\n")
+					.append("first_" + i + " = null;\n")
+					.append("rest_" + i + " = null;\n")
+					.deindent()
+					.append("}\n");
+		}
+		sb.append("default -> throw new IllegalStateException(String.format(\"Unknown level: %,d.\", level));\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n")
+				.append("if (stop < minLevel) {\n")
+				.indent()
+				.append("return operand;\n")
+				.deindent()
+				.append("}\n")
+				.append("pending = stop;\n")
+				.append("push(pos);\n")
+				.append("switch (stop) {\n")
+				.indent();
+		for (int i = 0; i < chain.size(); i++) {
+			final Level level = chain.get(i);
+			sb.append("case " + i + " -> {\n").indent();
+			generatePlacement(i, level);
+			sb.append("operator_" + i + " = " + parseCall(level.operator()) + ";\n")
+					.deindent()
+					.append("}\n");
+		}
+		sb.append("default -> throw new IllegalStateException(String.format(\"Unknown level: %,d.\", stop));\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	private void generatePlacement(final int i, final Level level) {
+		final String operandType = typeName(level.operand());
+		sb.append("if (operator_" + i + " == null) {\n")
+				.indent()
+				.append("first_" + i + " = (" + operandType + ") operand;\n")
+				.deindent()
+				.append("} else {\n")
+				.indent()
+				// the operand is missing only when the operator is given back
+				.append("if (operand != null) {\n")
+				.indent()
+				.append("if (rest_" + i + " == null) {\n")
+				.indent()
+				.append("rest_" + i + " = new ArrayList<>();\n")
+				.deindent()
+				.append("}\n")
+				.append("rest_" + i + ".add(new " + level.pair() + "(operator_" + i + ", (" + operandType
+						+ ") operand));\n")
+				.deindent()
+				.append("}\n")
+				.append("operator_" + i + " = null;\n")
+				.deindent()
+				.append("}\n");
+	}
+}
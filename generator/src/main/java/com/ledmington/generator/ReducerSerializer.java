@@ -0,0 +1,349 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.generator;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import com.ledmington.ebnf.Expression;
+import com.ledmington.ebnf.Grammar;
+import com.ledmington.ebnf.Node;
+import com.ledmington.ebnf.NonTerminal;
+import com.ledmington.ebnf.OneOrMore;
+import com.ledmington.ebnf.Or;
+import com.ledmington.ebnf.Production;
+import com.ledmington.ebnf.Sequence;
+import com.ledmington.ebnf.ZeroOrMore;
+import com.ledmington.ebnf.ZeroOrOne;
+
+/**
+ * Generates the reducer interface, with one method for each production and for each token, and a parsing method for
+ * each production which folds what it matched into a value through a reducer instead of building a node. The enclosing
+ * class must already contain the token stream, the stack of values and the helpers of the regular parser.
+ */
+@SuppressWarnings("PMD.AvoidDuplicateLiterals")
+final class ReducerSerializer {
+
+	private final IndentedStringBuilder sb;
+	private final Set<String> tokenNames;
+	private final Map<Node, String> globalNodeNames;
+
+	/**
+	 * Creates a new ReducerSerializer.
+	 *
+	 * @param sb The StringBuilder to use.
+	 * @param tokenNames The set of non-terminals corresponding to lexer productions.
+	 * @param nodeNames A map of the name for each node in the grammar.
+	 */
+	ReducerSerializer(final IndentedStringBuilder sb, final Set<String> tokenNames, final Map<Node, String> nodeNames) {
+		this.sb = Objects.requireNonNull(sb);
+		this.tokenNames = Objects.requireNonNull(tokenNames);
+		this.globalNodeNames = Objects.requireNonNull(nodeNames);
+	}
+
+	/**
+	 * Generates the reducer interface, the helpers to reduce the values on the stack and a reducing method for each
+	 * production of the given grammar.
+	 *
+	 * @param g The grammar to be used.
+	 */
+	void generateReducer(final Grammar g) {
+		final List<Production> parserProductions = g.getParserProductions();
+		final SortedSet<String> usedTokens = usedTokens(parserProductions);
+		generateInterface(parserProductions, usedTokens);
+		generateReducingHelpers(usedTokens);
+		for (final Production p : parserProductions) {
+			final String productionName = p.start().name();
+			switch (p.result()) {
+				case NonTerminal nt -> generateNonTerminal(productionName, nt);
+				case Sequence s -> generateSequence(productionName, s);
+				case Or or -> generateOr(productionName, or, GrammarUtils.predict(g, or));
+				case ZeroOrOne zoo -> generateZeroOrOne(productionName, zoo);
+				case ZeroOrMore zom -> generateZeroOrMore(productionName, zom);
+				case OneOrMore oom -> generateOneOrMore(productionName, oom);
+				default -> throw new IllegalArgumentException(String.format("Unknown node: '%s'", p.result()));
+			}
+		}
+	}
+
+	private boolean isToken(final String tokenName) {
+		return this.tokenNames.contains(tokenName);
+	}
+
+	private SortedSet<String> usedTokens(final List<Production> parserProductions) {
+		final SortedSet<String> usedTokens = new TreeSet<>();
+		for (final Production p : parserProductions) {
+			final List<Expression> children =
+					switch (p.result()) {
+						case NonTerminal nt -> List.of(nt);
+						case Sequence s -> s.expressions();
+						case Or or -> or.expressions();
+						case ZeroOrOne zoo -> List.of(zoo.inner());
+						case ZeroOrMore zom -> List.of(zom.inner());
+						case OneOrMore oom -> List.of(oom.inner());
+						default -> List.of();
+					};
+			for (final Expression exp : children) {
+				if (exp instanceof NonTerminal nt && isToken(nt.name())) {
+					usedTokens.add(nt.name());
+				}
+			}
+		}
+		return usedTokens;
+	}
+
+	/*
+	The methods are named after the productions and their parameters after the components of the corresponding nodes,
+	so that a reducer reads like a walk over the regular tree. Choices, optional parts and productions renaming another
+	one pass their value through unless overridden, and tokens are worth nothing unless asked for: only sequences and
+	repetitions must be reduced explicitly.
+	 */
+	private void generateInterface(final List<Production> parserProductions, final SortedSet<String> usedTokens) {
+		sb.append("public interface Reducer<T> {\n").indent();
+		for (final Production p : parserProductions) {
+			final String name = p.start().name();
+			switch (p.result()) {
+				case NonTerminal nt -> generatePassThrough(name, nt.name());
+				case Sequence s ->
+					sb.append("T " + name + "("
+							+ String.join(
+									", ",
+									ParserSerializer.componentNames(s.expressions(), globalNodeNames).stream()
+											.map(n -> "T " + n)
+											.toList())
+							+ ");\n");
+				case Or ignored -> generatePassThrough(name, "match");
+				case ZeroOrOne zoo -> generatePassThrough(name, globalNodeNames.get(zoo.inner()));
+				case ZeroOrMore zom -> sb.append("T " + name + "(List<T> " + globalNodeNames.get(zom.inner()) + ");\n");
+				case OneOrMore oom -> sb.append("T " + name + "(List<T> " + globalNodeNames.get(oom.inner()) + ");\n");
+				default -> throw new IllegalArgumentException(String.format("Unknown node: '%s'", p.result()));
+			}
+		}
+		for (final String token : usedTokens) {
+			sb.append("default T " + token + "(final String text) {\n")
+					.indent()
+					.append("return null;\n")
+					.deindent()
+					.append("}\n");
+		}
+		sb.deindent().append("}\n");
+	}
+
+	private void generatePassThrough(final String name, final String parameter) {
+		sb.append("default T " + name + "(final T " + parameter + ") {\n")
+				.indent()
+				.append("return " + parameter + ";\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	/*
+	Each successful reducing method leaves exactly one value on the stack, and each failing one leaves the stack as it
+	found it, so the values of the children of a node are always the topmost ones when the node is reduced. Values of
+	alternatives which are later abandoned are dropped, but the reducer has already been called for them: reducers
+	should not have side effects.
+	 */
+	private void generateReducingHelpers(final SortedSet<String> usedTokens) {
+		// each value was produced by a reducer of the same type
+		sb.append("@SuppressWarnings(\"unchecked\")\n")
+				.append("private <T> T valueAt(final int index) {\n")
+				.indent()
+				.append("return (T) values[index];\n")
+				.deindent()
+				.append("}\n")
+				.append("private <T> List<T> valuesFrom(final int base) {\n")
+				.indent()
+				.append("final List<T> list = new ArrayList<>(valueCount - base);\n")
+				.append("for (int i = base; i < valueCount; i++) {\n")
+				.indent()
+				.append("list.add(valueAt(i));\n")
+				.deindent()
+				.append("}\n")
+				.append("return list;\n")
+				.deindent()
+				.append("}\n")
+				.append("private boolean reduced(final int base, final Object value) {\n")
+				.indent()
+				.append("popValues(base);\n")
+				.append("pushValue(value);\n")
+				.append("return true;\n")
+				.deindent()
+				.append("}\n")
+				.append("private <T> boolean reduceTerminal(final Reducer<T> reducer, final TokenType expected) {\n")
+				.indent()
+				.append("if (peek() != expected.ordinal()) {\n")
+				.indent()
+				.append("failAt(pos);\n")
+				.append("return false;\n")
+				.deindent()
+				.append("}\n")
+				.append("final String text = tokens.content(pos++);\n")
+				.append("pushValue(switch (expected) {\n")
+				.indent();
+		for (final String token : usedTokens) {
+			sb.append("case " + token + " -> reducer." + token + "(text);\n");
+		}
+		sb.append("default -> null;\n")
+				.deindent()
+				.append("});\n")
+				.append("return true;\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	private String call(final Expression exp) {
+		final String name = globalNodeNames.get(exp);
+		return exp instanceof NonTerminal && isToken(name)
+				? "reduceTerminal(reducer, TokenType." + name + ")"
+				: "reduce_" + name + "(reducer)";
+	}
+
+	private boolean canFail(final Expression exp) {
+		return !(exp instanceof ZeroOrMore) && !(exp instanceof ZeroOrOne);
+	}
+
+	private IndentedStringBuilder openReduceMethod(final String productionName) {
+		return sb.append("private <T> boolean reduce_" + productionName + "(final Reducer<T> reducer) {\n")
+				.indent();
+	}
+
+	private void generateNonTerminal(final String productionName, final NonTerminal nt) {
+		openReduceMethod(productionName)
+				.append("if (!" + call(nt) + ") {\n")
+				.indent()
+				.append("return false;\n")
+				.deindent()
+				.append("}\n")
+				.append("return reduced(valueCount - 1, reducer." + productionName + "(valueAt(valueCount - 1)));\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	private void generateSequence(final String productionName, final Sequence s) {
+		final List<Expression> expressions = s.expressions();
+		openReduceMethod(productionName).append("final int base = valueCount;\n").append("push(this.pos);\n");
+		for (final Expression exp : expressions) {
+			if (canFail(exp)) {
+				sb.append("if (!" + call(exp) + ") {\n")
+						.indent()
+						.append("this.pos = pop();\n")
+						.append("popValues(base);\n")
+						.append("return false;\n")
+						.deindent()
+						.append("}\n");
+			} else {
+				sb.append(call(exp) + ";\n");
+			}
+		}
+		final StringBuilder arguments = new StringBuilder();
+		for (int i = 0; i < expressions.size(); i++) {
+			if (i > 0) {
+				arguments.append(", ");
+			}
+			arguments.append(i == 0 ? "valueAt(base)" : "valueAt(base + " + i + ")");
+		}
+		sb.append("pop();\n")
+				.append("return reduced(base, reducer." + productionName + "(" + arguments + "));\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	private void generateOr(final String productionName, final Or or, final OrPrediction prediction) {
+		openReduceMethod(productionName);
+		final List<Expression> expressions = or.expressions();
+		if (prediction.otherwise().size() == expressions.size()) {
+			generateAlternatives(productionName, expressions, prediction.otherwise());
+			sb.append("return false;\n").deindent().append("}\n");
+			return;
+		}
+
+		sb.append("final TokenType next = pos < tokens.size() || fill(pos) ? tokens.type(pos) : null;\n")
+				.append("switch (next) {\n")
+				.indent();
+		// tokens with the same alternatives share the same case
+		for (final Map.Entry<List<Integer>, List<String>> e : prediction.cases().entrySet()) {
+			sb.append("case " + String.join(", ", e.getValue()) + " -> {\n").indent();
+			generateAlternatives(productionName, expressions, e.getKey());
+			sb.deindent().append("}\n");
+		}
+		if (prediction.otherwise().isEmpty()) {
+			sb.append("case null, default -> failAt(pos);\n");
+		} else {
+			sb.append("case null, default -> {\n").indent();
+			generateAlternatives(productionName, expressions, prediction.otherwise());
+			sb.deindent().append("}\n");
+		}
+		sb.deindent().append("}\n").append("return false;\n").deindent().append("}\n");
+	}
+
+	private void generateAlternatives(
+			final String productionName, final List<Expression> expressions, final List<Integer> alternatives) {
+		for (final int i : alternatives) {
+			sb.append("if (" + call(expressions.get(i)) + ") {\n")
+					.indent()
+					.append("return reduced(valueCount - 1, reducer." + productionName + "(valueAt(valueCount - 1)));\n")
+					.deindent()
+					.append("}\n");
+		}
+	}
+
+	private void generateZeroOrOne(final String productionName, final ZeroOrOne zoo) {
+		openReduceMethod(productionName)
+				.append("final int base = valueCount;\n")
+				.append("return reduced(base, reducer." + productionName + "(" + call(zoo.inner())
+						+ " ? valueAt(base) : null));\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	private void generateZeroOrMore(final String productionName, final ZeroOrMore zom) {
+		openReduceMethod(productionName)
+				.append("final int base = valueCount;\n")
+				.append("while (" + call(zom.inner()) + ") {\n")
+				.indent()
+				.append("// keep matching\n")
+				.deindent()
+				.append("}\n")
+				.append("return reduced(base, reducer." + productionName + "(valuesFrom(base)));\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	private void generateOneOrMore(final String productionName, final OneOrMore oom) {
+		final String call = call(oom.inner());
+		openReduceMethod(productionName)
+				.append("final int base = valueCount;\n")
+				.append("if (!" + call + ") {\n")
+				.indent()
+				.append("return false;\n")
+				.deindent()
+				.append("}\n")
+				.append("while (" + call + ") {\n")
+				.indent()
+				.append("// keep matching\n")
+				.deindent()
+				.append("}\n")
+				.append("return reduced(base, reducer." + productionName + "(valuesFrom(base)));\n")
+				.deindent()
+				.append("}\n");
+	}
+}
@@ -0,0 +1,497 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.generator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import com.ledmington.ebnf.Expression;
+import com.ledmington.ebnf.Grammar;
+import com.ledmington.ebnf.Node;
+import com.ledmington.ebnf.NonTerminal;
+import com.ledmington.ebnf.OneOrMore;
+import com.ledmington.ebnf.Or;
+import com.ledmington.ebnf.Production;
+import com.ledmington.ebnf.Sequence;
+import com.ledmington.ebnf.ZeroOrMore;
+import com.ledmington.ebnf.ZeroOrOne;
+
+/**
+ * Generates a parser which does not recurse: each production becomes a set of states of a machine, and the stack of
+ * the productions being parsed is an array on the heap. The enclosing class must already contain the node types, the
+ * token stream, the stack of values and the helpers of the regular parser.
+ */
+@SuppressWarnings("PMD.AvoidDuplicateLiterals")
+final class StackMachineSerializer {
+
+	private final IndentedStringBuilder sb;
+	private final Set<String> tokenNames;
+	private final Map<Node, String> globalNodeNames;
+	private final Map<String, Integer> entries = new HashMap<>();
+
+	/**
+	 * Creates a new StackMachineSerializer.
+	 *
+	 * @param sb The StringBuilder to use.
+	 * @param tokenNames The set of non-terminals corresponding to lexer productions.
+	 * @param nodeNames A map of the name for each node in the grammar.
+	 */
+	StackMachineSerializer(
+			final IndentedStringBuilder sb, final Set<String> tokenNames, final Map<Node, String> nodeNames) {
+		this.sb = Objects.requireNonNull(sb);
+		this.tokenNames = Objects.requireNonNull(tokenNames);
+		this.globalNodeNames = Objects.requireNonNull(nodeNames);
+	}
+
+	/**
+	 * Generates the states of each production of the given grammar, the machine running them and the parsing method
+	 * of the start symbol, which runs the machine.
+	 *
+	 * @param g The grammar to be used.
+	 */
+	void generateMachine(final Grammar g) {
+		final List<Production> parserProductions = g.getParserProductions();
+		final Map<Or, OrPrediction> predictions = new HashMap<>();
+		final List<Integer> firstStates = new ArrayList<>();
+		int states = 0;
+		for (final Production p : parserProductions) {
+			if (p.result() instanceof Or or) {
+				predictions.put(or, GrammarUtils.predict(g, or));
+			}
+			entries.put(p.start().name(), states);
+			firstStates.add(states);
+			states += stateCount(p.result(), predictions);
+		}
+		firstStates.add(states);
+
+		generateFrames();
+		generateRun(parserProductions, firstStates, g.getStartSymbol());
+		for (final Production p : parserProductions) {
+			final String productionName = p.start().name();
+			final int entry = entries.get(productionName);
+			sb.append("private int step_" + productionName + "(final int state) {\n")
+					.indent()
+					.append("switch (state) {\n")
+					.indent();
+			switch (p.result()) {
+				case NonTerminal nt -> generateNonTerminal(productionName, entry, nt);
+				case Sequence s -> generateSequence(productionName, entry, s);
+				case Or or -> generateOr(productionName, entry, or, predictions.get(or));
+				case ZeroOrOne zoo -> generateZeroOrOne(productionName, entry, zoo);
+				case ZeroOrMore zom -> generateZeroOrMore(productionName, entry, zom);
+				case OneOrMore oom -> generateOneOrMore(productionName, entry, oom);
+				default -> throw new IllegalArgumentException(String.format("Unknown node: '%s'", p.result()));
+			}
+			sb.deindent()
+					.append("}\n")
+					.append("throw new IllegalArgumentException(String.format(\"Unknown state: %,d.\", state));\n")
+					.deindent()
+					.append("}\n");
+		}
+	}
+
+	private boolean isToken(final Expression exp) {
+		return exp instanceof NonTerminal nt && this.tokenNames.contains(nt.name());
+	}
+
+	private String resolveTypeName(final Expression exp) {
+		return isToken(exp) ? "Terminal" : globalNodeNames.get(exp);
+	}
+
+	private boolean canBeNull(final Expression exp) {
+		return !(exp instanceof ZeroOrMore) && !(exp instanceof ZeroOrOne);
+	}
+
+	/*
+	Every reference to a production, apart from tokens which are matched on the spot, needs a state to continue from
+	once that production is done. Repetitions continue from the same state at each iteration.
+	 */
+	private int stateCount(final Expression result, final Map<Or, OrPrediction> predictions) {
+		return 1
+				+ switch (result) {
+					case NonTerminal nt -> isToken(nt) ? 0 : 1;
+					case Sequence s ->
+						(int) s.expressions().stream().filter(e -> !isToken(e)).count();
+					case Or or ->
+						groups(or, predictions.get(or)).stream()
+								.mapToInt(group -> (int) group.stream()
+										.filter(i -> !isToken(or.expressions().get(i)))
+										.count())
+								.sum();
+					case ZeroOrOne zoo -> isToken(zoo.inner()) ? 0 : 1;
+					case ZeroOrMore zom -> isToken(zom.inner()) ? 0 : 1;
+					case OneOrMore oom -> isToken(oom.inner()) ? 0 : 1;
+					default -> throw new IllegalArgumentException(String.format("Unknown node: '%s'", result));
+				};
+	}
+
+	private static List<List<Integer>> groups(final Or or, final OrPrediction prediction) {
+		if (prediction.otherwise().size() == or.expressions().size()) {
+			return List.of(prediction.otherwise());
+		}
+		final List<List<Integer>> groups = new ArrayList<>(prediction.cases().keySet());
+		groups.add(prediction.otherwise());
+		return groups;
+	}
+
+	/*
+	The frames hold the state to continue from once the production being parsed is done, below which a repetition
+	keeps where its values start. The values of the children of a node are the topmost ones when the node is built,
+	exactly like the locals of the recursive parsing methods were.
+	 */
+	private void generateFrames() {
+		sb.append("private int[] frames = new int[16];\n")
+				.append("private int frameCount = 0;\n")
+				.append("private boolean matched = false;\n")
+				.append("private void pushFrame(final int value) {\n")
+				.indent()
+				.append("if (frameCount == frames.length) {\n")
+				.indent()
+				.append("frames = Arrays.copyOf(frames, 2 * frameCount);\n")
+				.deindent()
+				.append("}\n")
+				.append("frames[frameCount++] = value;\n")
+				.deindent()
+				.append("}\n")
+				.append("private int popFrame() {\n")
+				.indent()
+				.append("return frames[--frameCount];\n")
+				.deindent()
+				.append("}\n")
+				.append("private int call(final int entry, final int continuation) {\n")
+				.indent()
+				.append("pushFrame(continuation);\n")
+				.append("return entry;\n")
+				.deindent()
+				.append("}\n")
+				.append("private int returnFrom(final boolean result) {\n")
+				.indent()
+				.append("matched = result;\n")
+				.append("return popFrame();\n")
+				.deindent()
+				.append("}\n")
+				.append("private int produce(final int base, final Node node) {\n")
+				.indent()
+				.append("popValues(base);\n")
+				.append("pushValue(node);\n")
+				.append("return returnFrom(true);\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	private void generateRun(
+			final List<Production> parserProductions, final List<Integer> firstStates, final String startSymbol) {
+		sb.append("private " + startSymbol + " parse_" + startSymbol + "() {\n")
+				.indent()
+				.append("frameCount = 0;\n")
+				.append("pushFrame(-1);\n")
+				.append("int state = " + entries.get(startSymbol) + ";\n")
+				.append("while (state != -1) {\n")
+				.indent()
+				.append("state = switch (state) {\n")
+				.indent();
+		for (int i = 0; i < parserProductions.size(); i++) {
+			final List<String> states = new ArrayList<>();
+			for (int s = firstStates.get(i); s < firstStates.get(i + 1); s++) {
+				states.add(String.valueOf(s));
+			}
+			sb.append("case " + String.join(", ", states) + " -> step_"
+					+ parserProductions.get(i).start().name() + "(state);\n");
+		}
+		sb.append("default -> throw new IllegalArgumentException(String.format(\"Unknown state: %,d.\", state));\n")
+				.deindent()
+				.append("};\n")
+				.deindent()
+				.append("}\n")
+				.append("final " + startSymbol + " result = matched ? (" + startSymbol + ") values[0] : null;\n")
+				.append("popValues(0);\n")
+				.append("return result;\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	private String entry(final Expression exp) {
+		return String.valueOf(entries.get(globalNodeNames.get(exp)));
+	}
+
+	private String parseTerminal(final Expression exp) {
+		return "parseTerminal(TokenType." + globalNodeNames.get(exp) + ")";
+	}
+
+	private IndentedStringBuilder openState(final int state) {
+		return sb.append("case " + state + " -> {\n").indent();
+	}
+
+	private void closeState() {
+		sb.deindent().append("}\n");
+	}
+
+	private void generateNonTerminal(final String productionName, final int entry, final NonTerminal nt) {
+		openState(entry);
+		if (isToken(nt)) {
+			sb.append("final Terminal inner = " + parseTerminal(nt) + ";\n")
+					.append("if (inner == null) {\n")
+					.indent()
+					.append("return returnFrom(false);\n")
+					.deindent()
+					.append("}\n")
+					.append("return produce(valueCount, new " + productionName + "(inner));\n");
+			closeState();
+			return;
+		}
+		sb.append("return call(" + entry(nt) + ", " + (entry + 1) + ");\n");
+		closeState();
+		openState(entry + 1)
+				.append("if (!matched) {\n")
+				.indent()
+				.append("return returnFrom(false);\n")
+				.deindent()
+				.append("}\n")
+				.append("return produce(valueCount - 1, new " + productionName + "((" + resolveTypeName(nt)
+						+ ") values[valueCount - 1]));\n");
+		closeState();
+	}
+
+	private void generateSequence(final String productionName, final int entry, final Sequence s) {
+		final List<Expression> expressions = s.expressions();
+		final int[] continuations = new int[expressions.size()];
+		int state = entry;
+		for (int i = 0; i < expressions.size(); i++) {
+			continuations[i] = isToken(expressions.get(i)) ? -1 : ++state;
+		}
+
+		openState(entry).append("push(this.pos);\n");
+		generateSequenceFrom(productionName, expressions, continuations, 0);
+		closeState();
+		for (int i = 0; i < expressions.size(); i++) {
+			if (continuations[i] == -1) {
+				continue;
+			}
+			openState(continuations[i]);
+			if (canBeNull(expressions.get(i))) {
+				sb.append("if (!matched) {\n").indent();
+				generateSequenceFailure(i);
+				sb.deindent().append("}\n");
+			}
+			generateSequenceFrom(productionName, expressions, continuations, i + 1);
+			closeState();
+		}
+	}
+
+	private void generateSequenceFailure(final int matchedChildren) {
+		sb.append("this.pos = pop();\n");
+		if (matchedChildren > 0) {
+			sb.append("popValues(valueCount - " + matchedChildren + ");\n");
+		}
+		sb.append("return returnFrom(false);\n");
+	}
+
+	private void generateSequenceFrom(
+			final String productionName,
+			final List<Expression> expressions,
+			final int[] continuations,
+			final int first) {
+		for (int i = first; i < expressions.size(); i++) {
+			final Expression exp = expressions.get(i);
+			if (continuations[i] != -1) {
+				sb.append("return call(" + entry(exp) + ", " + continuations[i] + ");\n");
+				return;
+			}
+			sb.append("final Terminal n_" + i + " = " + parseTerminal(exp) + ";\n")
+					.append("if (n_" + i + " == null) {\n")
+					.indent();
+			generateSequenceFailure(i);
+			sb.deindent().append("}\n").append("pushValue(n_" + i + ");\n");
+		}
+		final List<String> children = new ArrayList<>();
+		for (int i = 0; i < expressions.size(); i++) {
+			final String index = i == 0 ? "base" : "base + " + i;
+			children.add("(" + resolveTypeName(expressions.get(i)) + ") values[" + index + "]");
+		}
+		sb.append("pop();\n")
+				.append("final int base = valueCount - " + expressions.size() + ";\n")
+				.append("return produce(base, new " + productionName + "(" + String.join(", ", children) + "));\n");
+	}
+
+	/*
+	The alternatives worth trying for each group of tokens are tried in order, like the recursive parser does: when one
+	of them fails, the next one is tried from the state where the failed one returns to.
+	 */
+	private void generateOr(final String productionName, final int entry, final Or or, final OrPrediction prediction) {
+		final List<Expression> expressions = or.expressions();
+		final List<List<Integer>> groups = groups(or, prediction);
+		final List<int[]> continuations = new ArrayList<>();
+		int state = entry;
+		for (final List<Integer> group : groups) {
+			final int[] groupContinuations = new int[group.size()];
+			for (int j = 0; j < group.size(); j++) {
+				groupContinuations[j] = isToken(expressions.get(group.get(j))) ? -1 : ++state;
+			}
+			continuations.add(groupContinuations);
+		}
+
+		openState(entry);
+		if (groups.size() == 1 && prediction.otherwise().size() == expressions.size()) {
+			generateAlternativesFrom(productionName, expressions, groups.getFirst(), continuations.getFirst(), 0);
+		} else {
+			sb.append("final TokenType next = pos < tokens.size() || fill(pos) ? tokens.type(pos) : null;\n")
+					.append("switch (next) {\n")
+					.indent();
+			// tokens with the same alternatives share the same case
+			int g = 0;
+			for (final List<String> tokens : prediction.cases().values()) {
+				sb.append("case " + String.join(", ", tokens) + " -> {\n").indent();
+				generateAlternativesFrom(productionName, expressions, groups.get(g), continuations.get(g), 0);
+				sb.deindent().append("}\n");
+				g++;
+			}
+			sb.append("case null, default -> {\n").indent();
+			if (prediction.otherwise().isEmpty()) {
+				sb.append("failAt(pos);\n");
+			}
+			generateAlternativesFrom(productionName, expressions, groups.get(g), continuations.get(g), 0);
+			sb.deindent().append("}\n").deindent().append("}\n");
+		}
+		closeState();
+
+		for (int g = 0; g < groups.size(); g++) {
+			final List<Integer> group = groups.get(g);
+			final int[] groupContinuations = continuations.get(g);
+			for (int j = 0; j < group.size(); j++) {
+				if (groupContinuations[j] == -1) {
+					continue;
+				}
+				openState(groupContinuations[j])
+						.append("if (matched) {\n")
+						.indent()
+						.append("return produce(valueCount - 1, new " + productionName + "(("
+								+ resolveTypeName(expressions.get(group.get(j))) + ") values[valueCount - 1]));\n")
+						.deindent()
+						.append("}\n");
+				generateAlternativesFrom(productionName, expressions, group, groupContinuations, j + 1);
+				closeState();
+			}
+		}
+	}
+
+	private void generateAlternativesFrom(
+			final String productionName,
+			final List<Expression> expressions,
+			final List<Integer> group,
+			final int[] continuations,
+			final int first) {
+		for (int j = first; j < group.size(); j++) {
+			final int i = group.get(j);
+			final Expression exp = expressions.get(i);
+			if (continuations[j] != -1) {
+				sb.append("return call(" + entry(exp) + ", " + continuations[j] + ");\n");
+				return;
+			}
+			sb.append("final Terminal n_" + i + " = " + parseTerminal(exp) + ";\n")
+					.append("if (n_" + i + " != null) {\n")
+					.indent()
+					.append("return produce(valueCount, new " + productionName + "(n_" + i + "));\n")
+					.deindent()
+					.append("}\n");
+		}
+		sb.append("return returnFrom(false);\n");
+	}
+
+	private void generateZeroOrOne(final String productionName, final int entry, final ZeroOrOne zoo) {
+		final Expression inner = zoo.inner();
+		openState(entry);
+		if (isToken(inner)) {
+			sb.append("return produce(valueCount, new " + productionName + "(" + parseTerminal(inner) + "));\n");
+			closeState();
+			return;
+		}
+		sb.append("return call(" + entry(inner) + ", " + (entry + 1) + ");\n");
+		closeState();
+		openState(entry + 1)
+				.append("if (matched) {\n")
+				.indent()
+				.append("return produce(valueCount - 1, new " + productionName + "((" + resolveTypeName(inner)
+						+ ") values[valueCount - 1]));\n")
+				.deindent()
+				.append("}\n")
+				.append("return produce(valueCount, new " + productionName + "(null));\n");
+		closeState();
+	}
+
+	private void generateZeroOrMore(final String productionName, final int entry, final ZeroOrMore zom) {
+		generateRepetition(productionName, entry, zom.inner(), false);
+	}
+
+	private void generateOneOrMore(final String productionName, final int entry, final OneOrMore oom) {
+		generateRepetition(productionName, entry, oom.inner(), true);
+	}
+
+	private void generateRepetition(
+			final String productionName, final int entry, final Expression inner, final boolean atLeastOne) {
+		final String innerTypeName = resolveTypeName(inner);
+		openState(entry);
+		if (isToken(inner)) {
+			// tokens are matched on the spot, so the whole repetition fits in a single state
+			sb.append("final List<Terminal> nodes = new ArrayList<>();\n")
+					.append("for (Terminal n = " + parseTerminal(inner) + "; n != null; n = " + parseTerminal(inner)
+							+ ") {\n")
+					.indent()
+					.append("nodes.add(n);\n")
+					.deindent()
+					.append("}\n");
+			if (atLeastOne) {
+				sb.append("if (nodes.isEmpty()) {\n")
+						.indent()
+						.append("return returnFrom(false);\n")
+						.deindent()
+						.append("}\n");
+			}
+			sb.append("return produce(valueCount, new " + productionName + "(nodes));\n");
+			closeState();
+			return;
+		}
+		sb.append("pushFrame(valueCount);\n").append("return call(" + entry(inner) + ", " + (entry + 1) + ");\n");
+		closeState();
+		openState(entry + 1)
+				.append("if (matched) {\n")
+				.indent()
+				.append("return call(" + entry(inner) + ", " + (entry + 1) + ");\n")
+				.deindent()
+				.append("}\n")
+				.append("final int base = popFrame();\n");
+		if (atLeastOne) {
+			sb.append("if (valueCount == base) {\n")
+					.indent()
+					.append("return returnFrom(false);\n")
+					.deindent()
+					.append("}\n");
+		}
+		sb.append("final List<" + innerTypeName + "> nodes = new ArrayList<>(valueCount - base);\n")
+				.append("for (int i = base; i < valueCount; i++) {\n")
+				.indent()
+				.append("nodes.add((" + innerTypeName + ") values[i]);\n")
+				.deindent()
+				.append("}\n")
+				.append("return produce(base, new " + productionName + "(nodes));\n");
+		closeState();
+	}
+}
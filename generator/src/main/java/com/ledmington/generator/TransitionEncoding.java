@@ -0,0 +1,50 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.generator;
+
+/** The possible ways of encoding the transitions of a generated lexer. */
+public enum TransitionEncoding {
+
+	/** Each state has a sorted list of symbols which is scanned linearly. Smallest tables, slowest lookup. */
+	LINEAR,
+
+	/** Each state has a sorted list of symbols which is searched with a binary search. */
+	BINARY_SEARCH,
+
+	/**
+	 * A dense table with one row per state and one column per character equivalence class. Constant-time lookup, but
+	 * the table grows with the product of states and classes.
+	 */
+	DENSE,
+
+	/**
+	 * A row-displacement ("comb") compressed version of the dense table: rows are overlapped so that their non-empty
+	 * entries do not collide. Constant-time lookup with a table close to the number of actual transitions.
+	 */
+	COMB,
+
+	/**
+	 * No table at all: each state becomes a {@code switch} on the current character, with the accept and skip
+	 * decisions inlined. Falls back to {@link #AUTO} when the generated method would be too large to be compiled by
+	 * the JIT.
+	 */
+	DIRECT,
+
+	/** Picks one of the table encodings based on the number of states, the alphabet size and the table byte budget. */
+	AUTO
+}
@@ -0,0 +1,494 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.generator;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import com.ledmington.automata.DFA;
+import com.ledmington.automata.State;
+
+/**
+ * The transitions of a DFA, encoded in one of the possible {@link TransitionEncoding}s. Each implementation knows how
+ * to serialize itself into the lexer tables and how to generate the code to decode and query them.
+ */
+sealed interface TransitionTable permits TransitionTable.Sparse, TransitionTable.Dense, TransitionTable.Comb {
+
+	/**
+	 * Above this number of transitions in a single state, a binary search is expected to be faster than a linear
+	 * scan.
+	 */
+	int BINARY_SEARCH_THRESHOLD = 16;
+
+	/**
+	 * Encodes the transitions of the given DFA.
+	 *
+	 * @param encoding The encoding to use. {@link TransitionEncoding#AUTO} picks the encoding which best fits the
+	 *     given byte budget. {@link TransitionEncoding#DIRECT} is treated as AUTO, since it reaches here only when
+	 *     the direct-coded lexer would be too large.
+	 * @param dfa The DFA to be encoded.
+	 * @param states The states of the DFA, indexed by their position in the list.
+	 * @param tableByteBudget The maximum size of the tables when choosing the encoding automatically.
+	 * @return The encoded transitions.
+	 */
+	static TransitionTable of(
+			final TransitionEncoding encoding, final DFA dfa, final List<State> states, final int tableByteBudget) {
+		return switch (encoding) {
+			case LINEAR -> Sparse.of(dfa, states, false);
+			case BINARY_SEARCH -> Sparse.of(dfa, states, true);
+			case DENSE -> Dense.of(dfa, states);
+			case COMB -> Comb.of(dfa, states);
+			case AUTO, DIRECT -> {
+				// prefer the fastest lookup which fits the budget
+				final Dense dense = Dense.of(dfa, states);
+				if (dense.byteSize() <= tableByteBudget) {
+					yield dense;
+				}
+				final Comb comb = Comb.of(dfa, states);
+				if (comb.byteSize() <= tableByteBudget) {
+					yield comb;
+				}
+				final int maxTransitions = states.stream()
+						.mapToInt(s -> dfa.neighbors(s).size())
+						.max()
+						.orElse(0);
+				yield Sparse.of(dfa, states, maxTransitions > BINARY_SEARCH_THRESHOLD);
+			}
+		};
+	}
+
+	/**
+	 * Returns the encoding actually used by this table.
+	 *
+	 * @return The encoding of this table.
+	 */
+	TransitionEncoding encoding();
+
+	/**
+	 * Returns the number of bytes needed to serialize this table.
+	 *
+	 * @return The number of bytes needed to serialize this table.
+	 */
+	int byteSize();
+
+	/**
+	 * Serializes this table into the given buffer.
+	 *
+	 * @param bb The buffer to write into.
+	 */
+	void writeTo(ByteBuffer bb);
+
+	/**
+	 * Generates the declarations of the static fields holding the decoded table.
+	 *
+	 * @param sb The StringBuilder to place the generated code into.
+	 */
+	void generateFields(IndentedStringBuilder sb);
+
+	/**
+	 * Generates the code which decodes the table from a ByteBuffer called {@code bb}, after the common header and the
+	 * per-state tables have been read.
+	 *
+	 * @param sb The StringBuilder to place the generated code into.
+	 */
+	void generateDecoding(IndentedStringBuilder sb);
+
+	/**
+	 * Generates the method {@code transition(currentState, symbol)} which returns the next state or -1.
+	 *
+	 * @param sb The StringBuilder to place the generated code into.
+	 */
+	void generateTransition(IndentedStringBuilder sb);
+
+	private static void generateCharToClassDecoding(final IndentedStringBuilder sb) {
+		sb.append("final int num_chars = bb.getInt();\n")
+				.append("CHAR_TO_CLASS = new char[num_chars];\n")
+				.append("for (int i = 0; i < num_chars; i++) {\n")
+				.indent()
+				.append("CHAR_TO_CLASS[i] = bb.getChar();\n")
+				.deindent()
+				.append("}\n");
+	}
+
+	private static void generateCharClassLookup(final IndentedStringBuilder sb) {
+		// characters outside of the map never appear in a transition, so they belong to class 0
+		sb.append("final int charClass = symbol < Tables.CHAR_TO_CLASS.length ? Tables.CHAR_TO_CLASS[symbol] : 0;\n");
+	}
+
+	/**
+	 * Per-state sorted lists of symbols and destinations.
+	 *
+	 * @param binarySearch True to look up symbols with a binary search, false to scan them linearly.
+	 * @param offsets The index of the first transition of each state, plus one final element for the end.
+	 * @param symbols The symbols of the transitions, sorted within each state.
+	 * @param destinations The destinations of the transitions.
+	 */
+	record Sparse(boolean binarySearch, int[] offsets, char[] symbols, int[] destinations) implements TransitionTable {
+
+		static Sparse of(final DFA dfa, final List<State> states, final boolean binarySearch) {
+			final Map<State, Integer> stateIndex = DFASerializer.indexStates(states);
+			final int allTransitions =
+					states.stream().mapToInt(s -> dfa.neighbors(s).size()).sum();
+			final int[] offsets = new int[states.size() + 1];
+			final char[] symbols = new char[allTransitions];
+			final int[] destinations = new int[allTransitions];
+			int idx = 0;
+			for (int i = 0; i < states.size(); i++) {
+				offsets[i] = idx;
+				for (final Map.Entry<Character, State> e : dfa.neighbors(states.get(i)).entrySet().stream()
+						.sorted(Map.Entry.comparingByKey())
+						.toList()) {
+					symbols[idx] = e.getKey();
+					destinations[idx] = stateIndex.get(e.getValue());
+					idx++;
+				}
+			}
+			offsets[states.size()] = idx;
+			return new Sparse(binarySearch, offsets, symbols, destinations);
+		}
+
+		@Override
+		public TransitionEncoding encoding() {
+			return binarySearch ? TransitionEncoding.BINARY_SEARCH : TransitionEncoding.LINEAR;
+		}
+
+		@Override
+		public int byteSize() {
+			return Integer.BYTES
+					+ Integer.BYTES * offsets.length
+					+ Character.BYTES * symbols.length
+					+ Integer.BYTES * destinations.length;
+		}
+
+		@Override
+		public void writeTo(final ByteBuffer bb) {
+			bb.putInt(symbols.length);
+			for (final int off : offsets) {
+				bb.putInt(off);
+			}
+			for (final char sym : symbols) {
+				bb.putChar(sym);
+			}
+			for (final int dest : destinations) {
+				bb.putInt(dest);
+			}
+		}
+
+		@Override
+		public void generateFields(final IndentedStringBuilder sb) {
+			sb.append("private static final int[] OFFSETS;\n")
+					.append("private static final char[] SYMBOLS;\n")
+					.append("private static final int[] DESTINATIONS;\n");
+		}
+
+		@Override
+		public void generateDecoding(final IndentedStringBuilder sb) {
+			sb.append("final int num_transitions = bb.getInt();\n")
+					.append("OFFSETS = new int[num_states + 1];\n")
+					.append("SYMBOLS = new char[num_transitions];\n")
+					.append("DESTINATIONS = new int[num_transitions];\n")
+					.append("for (int i = 0; i < num_states + 1; i++) {\n")
+					.indent()
+					.append("OFFSETS[i] = bb.getInt();\n")
+					.deindent()
+					.append("}\n")
+					.append("for (int i = 0; i < num_transitions; i++) {\n")
+					.indent()
+					.append("SYMBOLS[i] = bb.getChar();\n")
+					.deindent()
+					.append("}\n")
+					.append("for (int i = 0; i < num_transitions; i++) {\n")
+					.indent()
+					.append("DESTINATIONS[i] = bb.getInt();\n")
+					.deindent()
+					.append("}\n");
+		}
+
+		@Override
+		public void generateTransition(final IndentedStringBuilder sb) {
+			sb.append("private int transition(final int currentState, final char symbol) {\n")
+					.indent();
+			if (binarySearch) {
+				sb.append("int lo = Tables.OFFSETS[currentState];\n")
+						.append("int hi = Tables.OFFSETS[currentState + 1] - 1;\n")
+						.append("while (lo <= hi) {\n")
+						.indent()
+						.append("final int mid = (lo + hi) >>> 1;\n")
+						.append("final char midSymbol = Tables.SYMBOLS[mid];\n")
+						.append("if (midSymbol < symbol) {\n")
+						.indent()
+						.append("lo = mid + 1;\n")
+						.deindent()
+						.append("} else if (midSymbol > symbol) {\n")
+						.indent()
+						.append("hi = mid - 1;\n")
+						.deindent()
+						.append("} else {\n")
+						.indent()
+						.append("return Tables.DESTINATIONS[mid];\n")
+						.deindent()
+						.append("}\n")
+						.deindent()
+						.append("}\n");
+			} else {
+				sb.append("final int end = Tables.OFFSETS[currentState + 1];\n")
+						.append("for (int i = Tables.OFFSETS[currentState]; i < end; i++) {\n")
+						.indent()
+						.append("if (Tables.SYMBOLS[i] == symbol) {\n")
+						.indent()
+						.append("return Tables.DESTINATIONS[i];\n")
+						.deindent()
+						.append("}\n")
+						.deindent()
+						.append("}\n");
+			}
+			sb.append("return -1;\n").deindent().append("}\n");
+		}
+	}
+
+	/**
+	 * A dense state x character class table.
+	 *
+	 * @param charToClass The map from each character to its equivalence class.
+	 * @param numClasses The number of equivalence classes.
+	 * @param transitions The destination of each state and class, -1 for no transition.
+	 */
+	record Dense(char[] charToClass, int numClasses, int[] transitions) implements TransitionTable {
+
+		static Dense of(final DFA dfa, final List<State> states) {
+			final Map<State, Integer> stateIndex = DFASerializer.indexStates(states);
+			final CharacterClasses classes = CharacterClasses.of(dfa, states);
+			final int numClasses = classes.numClasses();
+			final int[] transitions = new int[states.size() * numClasses];
+			for (int i = 0; i < states.size(); i++) {
+				final Map<Character, State> neighbors = dfa.neighbors(states.get(i));
+				transitions[i * numClasses] = -1;
+				for (int c = 1; c < numClasses; c++) {
+					final State dest = neighbors.get(classes.representative(c));
+					transitions[i * numClasses + c] = dest == null ? -1 : stateIndex.get(dest);
+				}
+			}
+			return new Dense(classes.charToClass(), numClasses, transitions);
+		}
+
+		@Override
+		public TransitionEncoding encoding() {
+			return TransitionEncoding.DENSE;
+		}
+
+		@Override
+		public int byteSize() {
+			return Integer.BYTES + Character.BYTES * charToClass.length + Integer.BYTES * transitions.length;
+		}
+
+		@Override
+		public void writeTo(final ByteBuffer bb) {
+			bb.putInt(charToClass.length);
+			for (final char charClass : charToClass) {
+				bb.putChar(charClass);
+			}
+			for (final int dest : transitions) {
+				bb.putInt(dest);
+			}
+		}
+
+		@Override
+		public void generateFields(final IndentedStringBuilder sb) {
+			sb.append("private static final int NUM_CLASSES = " + numClasses + ";\n")
+					.append("private static final char[] CHAR_TO_CLASS;\n")
+					.append("private static final int[] TRANSITIONS;\n");
+		}
+
+		@Override
+		public void generateDecoding(final IndentedStringBuilder sb) {
+			generateCharToClassDecoding(sb);
+			sb.append("TRANSITIONS = new int[num_states * NUM_CLASSES];\n")
+					.append("for (int i = 0; i < TRANSITIONS.length; i++) {\n")
+					.indent()
+					.append("TRANSITIONS[i] = bb.getInt();\n")
+					.deindent()
+					.append("}\n");
+		}
+
+		@Override
+		public void generateTransition(final IndentedStringBuilder sb) {
+			sb.append("private int transition(final int currentState, final char symbol) {\n")
+					.indent();
+			generateCharClassLookup(sb);
+			sb.append("return Tables.TRANSITIONS[currentState * Tables.NUM_CLASSES + charClass];\n")
+					.deindent()
+					.append("}\n");
+		}
+	}
+
+	/**
+	 * A row-displacement compressed state x character class table. The entry for state s and class c lives at index
+	 * {@code base[s] + c} and is valid only when {@code check[base[s] + c] == s}.
+	 *
+	 * @param charToClass The map from each character to its equivalence class.
+	 * @param base The displacement of each row.
+	 * @param next The destinations of the overlapped rows.
+	 * @param check The owner state of each entry of {@code next}, -1 for unused entries.
+	 */
+	record Comb(char[] charToClass, int[] base, int[] next, int[] check) implements TransitionTable {
+
+		static Comb of(final DFA dfa, final List<State> states) {
+			final Map<State, Integer> stateIndex = DFASerializer.indexStates(states);
+			final CharacterClasses classes = CharacterClasses.of(dfa, states);
+			final int numClasses = classes.numClasses();
+			final int numStates = states.size();
+
+			final int[][] rows = new int[numStates][];
+			for (int i = 0; i < numStates; i++) {
+				final Map<Character, State> neighbors = dfa.neighbors(states.get(i));
+				rows[i] = IntStream.range(1, numClasses)
+						.filter(c -> neighbors.containsKey(classes.representative(c)))
+						.toArray();
+			}
+
+			// place the densest rows first: they are the hardest to fit
+			final List<Integer> order = IntStream.range(0, numStates)
+					.boxed()
+					.sorted(Comparator.<Integer>comparingInt(i -> rows[i].length)
+							.reversed()
+							.thenComparingInt(i -> i))
+					.toList();
+
+			final int[] base = new int[numStates];
+			final BitSet used = new BitSet();
+			int maxBase = 0;
+			for (final int s : order) {
+				if (rows[s].length == 0) {
+					continue;
+				}
+				int candidate = 0;
+				while (!fits(used, rows[s], candidate)) {
+					candidate++;
+				}
+				base[s] = candidate;
+				for (final int c : rows[s]) {
+					used.set(candidate + c);
+				}
+				maxBase = Math.max(maxBase, candidate);
+			}
+
+			final int length = maxBase + numClasses;
+			final int[] next = new int[length];
+			final int[] check = new int[length];
+			Arrays.fill(check, -1);
+			for (int s = 0; s < numStates; s++) {
+				final Map<Character, State> neighbors = dfa.neighbors(states.get(s));
+				for (final int c : rows[s]) {
+					next[base[s] + c] = stateIndex.get(neighbors.get(classes.representative(c)));
+					check[base[s] + c] = s;
+				}
+			}
+			return new Comb(classes.charToClass(), base, next, check);
+		}
+
+		private static boolean fits(final BitSet used, final int[] row, final int candidate) {
+			for (final int c : row) {
+				if (used.get(candidate + c)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public TransitionEncoding encoding() {
+			return TransitionEncoding.COMB;
+		}
+
+		@Override
+		public int byteSize() {
+			return Integer.BYTES
+					+ Character.BYTES * charToClass.length
+					+ Integer.BYTES * base.length
+					+ Integer.BYTES
+					+ Integer.BYTES * next.length
+					+ Integer.BYTES * check.length;
+		}
+
+		@Override
+		public void writeTo(final ByteBuffer bb) {
+			bb.putInt(charToClass.length);
+			for (final char charClass : charToClass) {
+				bb.putChar(charClass);
+			}
+			for (final int b : base) {
+				bb.putInt(b);
+			}
+			bb.putInt(next.length);
+			for (final int n : next) {
+				bb.putInt(n);
+			}
+			for (final int c : check) {
+				bb.putInt(c);
+			}
+		}
+
+		@Override
+		public void generateFields(final IndentedStringBuilder sb) {
+			sb.append("private static final char[] CHAR_TO_CLASS;\n")
+					.append("private static final int[] BASE;\n")
+					.append("private static final int[] NEXT;\n")
+					.append("private static final int[] CHECK;\n");
+		}
+
+		@Override
+		public void generateDecoding(final IndentedStringBuilder sb) {
+			generateCharToClassDecoding(sb);
+			sb.append("BASE = new int[num_states];\n")
+					.append("for (int i = 0; i < num_states; i++) {\n")
+					.indent()
+					.append("BASE[i] = bb.getInt();\n")
+					.deindent()
+					.append("}\n")
+					.append("final int table_length = bb.getInt();\n")
+					.append("NEXT = new int[table_length];\n")
+					.append("CHECK = new int[table_length];\n")
+					.append("for (int i = 0; i < table_length; i++) {\n")
+					.indent()
+					.append("NEXT[i] = bb.getInt();\n")
+					.deindent()
+					.append("}\n")
+					.append("for (int i = 0; i < table_length; i++) {\n")
+					.indent()
+					.append("CHECK[i] = bb.getInt();\n")
+					.deindent()
+					.append("}\n");
+		}
+
+		@Override
+		public void generateTransition(final IndentedStringBuilder sb) {
+			sb.append("private int transition(final int currentState, final char symbol) {\n")
+					.indent();
+			generateCharClassLookup(sb);
+			sb.append("final int idx = Tables.BASE[currentState] + charClass;\n")
+					.append("return Tables.CHECK[idx] == currentState ? Tables.NEXT[idx] : -1;\n")
+					.deindent()
+					.append("}\n");
+		}
+	}
+}
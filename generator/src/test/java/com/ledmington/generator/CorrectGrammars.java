@@ -121,7 +121,17 @@ public final class CorrectGrammars {
 			Arguments.of(
 					g(p("start", seq(t("\\"), or(t("n"), t("t"))))),
 					List.of("\\n", "\\t"),
-					List.of("", "\\", "\n", "\t", "n", "t")));
+					List.of("", "\\", "\n", "\t", "n", "t")),
+			// the grammar of integration/03_expression
+			Arguments.of(
+					g(
+							p("start", nt("expression")),
+							p("expression", seq(nt("term"), zero_or_more(seq(or(t("+"), t("-")), nt("term"))))),
+							p("term", seq(nt("factor"), zero_or_more(seq(or(t("*"), t("/")), nt("factor"))))),
+							p("factor", or(seq(t("("), nt("expression"), t(")")), nt("number"))),
+							p("number", one_or_more(or(t("1"), t("2"), t("3"))))),
+					List.of("1", "12", "1+2", "1-2*3", "(1+2)*3", "3*(2-1)/12", "((1))", "1+2+3-1*2/3"),
+					List.of("", "+1", "1+", "1**2", "(1", "1)", "()", "1(2)", "4")));
 
 	static Grammar g(final Production... productions) {
 		return new Grammar(List.of(productions));
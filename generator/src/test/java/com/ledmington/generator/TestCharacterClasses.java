@@ -0,0 +1,79 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.generator;
+
+import static com.ledmington.generator.CorrectGrammars.TEST_CASES;
+import static com.ledmington.generator.CorrectGrammars.g;
+import static com.ledmington.generator.CorrectGrammars.nt;
+import static com.ledmington.generator.CorrectGrammars.or;
+import static com.ledmington.generator.CorrectGrammars.p;
+import static com.ledmington.generator.CorrectGrammars.t;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import com.ledmington.automata.AutomataConversions;
+import com.ledmington.automata.DFA;
+import com.ledmington.automata.State;
+import com.ledmington.ebnf.Grammar;
+
+public final class TestCharacterClasses {
+
+	private static Stream<Arguments> onlyGrammars() {
+		return TEST_CASES.stream().map(tc -> Arguments.of(tc.get()[0]));
+	}
+
+	@ParameterizedTest
+	@MethodSource("onlyGrammars")
+	void representativesPreserveTransitions(final Grammar g) {
+		final DFA dfa = AutomataConversions.convertGrammarToMinimizedDFA(g.getLexerProductions());
+		final List<State> states = new ArrayList<>(dfa.states());
+		final CharacterClasses classes = CharacterClasses.of(dfa, states);
+
+		for (final State s : states) {
+			for (final Map.Entry<Character, State> e : dfa.neighbors(s).entrySet()) {
+				final int charClass = classes.classOf(e.getKey());
+				assertEquals(
+						e.getValue(),
+						dfa.neighbors(s).get(classes.representative(charClass)),
+						() -> String.format(
+								"Character '%c' and its representative have different transitions.", e.getKey()));
+			}
+		}
+	}
+
+	@Test
+	void equivalentCharactersShareOneClass() {
+		final Grammar g = g(p("start", nt("LETTER")), p("LETTER", or(t("a"), t("b"), t("c"), t("d"))));
+		final DFA dfa = AutomataConversions.convertGrammarToMinimizedDFA(g.getLexerProductions());
+		final CharacterClasses classes = CharacterClasses.of(dfa, new ArrayList<>(dfa.states()));
+
+		// one class for the letters plus class 0
+		assertEquals(2, classes.numClasses());
+		assertEquals(classes.classOf('a'), classes.classOf('d'));
+		assertEquals(0, classes.classOf('z'));
+	}
+}
@@ -20,21 +20,35 @@ package com.ledmington.generator;
 import static com.ledmington.generator.CorrectGrammars.TEST_CASES;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Random;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -49,11 +63,13 @@ import javax.tools.SimpleJavaFileObject;
 import javax.tools.StandardJavaFileManager;
 import javax.tools.ToolProvider;
 
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
 import com.ledmington.ebnf.Grammar;
+import com.ledmington.ebnf.Parser;
 import com.ledmington.ebnf.Utils;
 
 @SuppressWarnings({"PMD.AvoidDuplicateLiterals", "PMD.MissingStaticMethodInNonInstantiatableClass"})
@@ -81,6 +97,48 @@ public final class TestGenerator {
 		});
 	}
 
+	public static Stream<Arguments> allCases() {
+		return TEST_CASES.stream().map(tc -> Arguments.of(tc.get()[0], tc.get()[1], tc.get()[2]));
+	}
+
+	public static Stream<Arguments> nonRecursiveBackends() {
+		return Stream.of(ParserBackend.values())
+				.filter(b -> b != ParserBackend.RECURSIVE_DESCENT)
+				.map(Arguments::of);
+	}
+
+	// options which must not change the inputs the parser accepts, each with whether the errors must be reported at
+	// the same position: the table backends report them where they stop, not at the furthest token tried
+	private static final List<Arguments> RESULT_KEEPING_OPTIONS = List.of(
+			Arguments.of(GeneratorOptions.builder().memoization(Memoization.ALL).build(), true),
+			Arguments.of(GeneratorOptions.builder().cachedChildren(true).build(), true),
+			Arguments.of(GeneratorOptions.builder().flatTree(true).build(), true),
+			Arguments.of(GeneratorOptions.builder().eventListener(true).build(), true),
+			Arguments.of(GeneratorOptions.builder().reducer(true).build(), true),
+			Arguments.of(GeneratorOptions.builder().parserBackend(ParserBackend.EXPLICIT_STACK).build(), true),
+			// every test grammar is LL(1) and LALR(1) with disjoint alternatives, so rejecting any of them is a bug
+			Arguments.of(GeneratorOptions.builder().parserBackend(ParserBackend.LL1_TABLE).build(), false),
+			Arguments.of(GeneratorOptions.builder().parserBackend(ParserBackend.LALR1_TABLE).build(), false),
+			Arguments.of(GeneratorOptions.builder().adaptivePrediction(true).build(), true),
+			Arguments.of(GeneratorOptions.builder().precedenceClimbing(true).build(), true),
+			Arguments.of(GeneratorOptions.builder().rewriteRecursion(true).build(), true),
+			Arguments.of(GeneratorOptions.builder().optimizeGrammar(true).build(), true),
+			Arguments.of(GeneratorOptions.builder().leftFactor(true).build(), true));
+
+	public static Stream<Arguments> casesWithOptions() {
+		return RESULT_KEEPING_OPTIONS.stream().flatMap(o -> TEST_CASES.stream()
+				.map(tc -> Arguments.of(tc.get()[0], tc.get()[1], tc.get()[2], o.get()[0], o.get()[1])));
+	}
+
+	public static Stream<Arguments> encodings() {
+		return Stream.of(TransitionEncoding.values()).map(Arguments::of);
+	}
+
+	public static Stream<Arguments> casesWithEncodings() {
+		return TEST_CASES.stream().flatMap(tc -> Stream.of(TransitionEncoding.values())
+				.map(e -> Arguments.of(tc.get()[0], tc.get()[1], tc.get()[2], e)));
+	}
+
 	private static final class JavaSourceFromString extends SimpleJavaFileObject {
 
 		private final String code;
@@ -242,4 +300,1080 @@ public final class TestGenerator {
 						"The generator generated two different sources for the following grammar.\n%s\n\n --- Source 1 --- \n%s\n --- \n --- Source 2 --- \n%s\n --- ",
 						Utils.prettyPrint(g), text1, text2));
 	}
+
+	@ParameterizedTest
+	@MethodSource("casesWithEncodings")
+	void transitionEncodings(
+			final Grammar g,
+			final List<String> correctInputs,
+			final List<String> wrongInputs,
+			final TransitionEncoding encoding)
+			throws NoSuchMethodException, InvocationTargetException, IllegalAccessException, InstantiationException {
+		final String className = "MyEncodedParser";
+		final String sourceCode = Generator.generate(
+				g,
+				className,
+				"",
+				"\t",
+				false,
+				GeneratorOptions.builder().transitionEncoding(encoding).build());
+
+		final Class<?> klass = compileJavaSource(className, sourceCode);
+		final Object instance = klass.getConstructors()[0].newInstance();
+		final Method entrypoint = klass.getMethod("parse", String.class);
+
+		for (final String correctInput : correctInputs) {
+			assertNotNull(
+					entrypoint.invoke(instance, correctInput),
+					() -> String.format(
+							"Expected the following grammar with %s encoding to be able to parse the input '%s' but it did not.%n%s%n",
+							encoding, correctInput, Utils.prettyPrint(g)));
+		}
+		for (final String wrongInput : wrongInputs) {
+			assertNull(
+					entrypoint.invoke(instance, wrongInput),
+					() -> String.format(
+							"Expected the following grammar with %s encoding to NOT be able to parse the input '%s' but it did.%n%s%n",
+							encoding, wrongInput, Utils.prettyPrint(g)));
+		}
+	}
+
+	@Test
+	void directEncodingFallsBackToTablesForHugeLexers()
+			throws NoSuchMethodException, InvocationTargetException, IllegalAccessException, InstantiationException {
+		final Random rng = new Random(42);
+		final List<String> words = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			final StringBuilder word = new StringBuilder();
+			for (int j = 0; j < 8; j++) {
+				word.append((char) ('a' + rng.nextInt(26)));
+			}
+			words.add(word.toString());
+		}
+		final Grammar g = Parser.parse("start = WORD ;\nWORD = "
+				+ words.stream().map(w -> "\"" + w + "\"").collect(Collectors.joining(" | ")) + " ;\n");
+
+		final String className = "MyHugeParser";
+		final String sourceCode = Generator.generate(
+				g,
+				className,
+				"",
+				"\t",
+				false,
+				GeneratorOptions.builder()
+						.transitionEncoding(TransitionEncoding.DIRECT)
+						.build());
+		assertTrue(
+				sourceCode.contains("private static final class Tables"),
+				"Expected the generated lexer to fall back to tables.");
+
+		final Class<?> klass = compileJavaSource(className, sourceCode);
+		final Object instance = klass.getConstructors()[0].newInstance();
+		final Method entrypoint = klass.getMethod("parse", String.class);
+		for (final String w : words) {
+			assertNotNull(entrypoint.invoke(instance, w), () -> String.format("Expected '%s' to be parsed.", w));
+		}
+	}
+
+	@Test
+	void tokenBufferIsReusedAcrossInputs() throws ReflectiveOperationException {
+		final Grammar g = Parser.parse("start = WORD+ ;\nWORD = ( \"a\" | \"b\" )+ ;\n_SPACE = \" \" ;\n");
+		final String className = "MyTokenizingParser";
+		final Class<?> klass = compileJavaSource(className, Generator.generate(g, className, "", "\t", false));
+		final ClassLoader loader = klass.getClassLoader();
+		final Class<?> lexerClass = loader.loadClass(className + "$" + className + "_Lexer");
+		final Class<?> bufferClass = loader.loadClass(className + "$TokenBuffer");
+
+		final Object lexer = lexerClass.getConstructor().newInstance();
+		final Object buffer = bufferClass.getConstructor().newInstance();
+		final Method tokenize = lexerClass.getMethod("tokenize", String.class, bufferClass);
+		final Method size = bufferClass.getMethod("size");
+		final Method content = bufferClass.getMethod("content", int.class);
+
+		tokenize.invoke(lexer, "ab ba aab", buffer);
+		assertEquals(3, size.invoke(buffer));
+		assertEquals("aab", content.invoke(buffer, 2));
+
+		tokenize.invoke(lexer, "b", buffer);
+		assertEquals(1, size.invoke(buffer));
+		assertEquals("b", content.invoke(buffer, 0));
+	}
+
+	@Test
+	void backtrackingOverLongInputs() throws ReflectiveOperationException {
+		final Grammar g = Parser.parse("start = list B | list C ;\nlist = A+ ;\nA = \"a\" ;\nB = \"b\" ;\nC = \"c\" ;\n");
+		final String className = "MyBacktrackingParser";
+		final Class<?> klass = compileJavaSource(className, Generator.generate(g, className, "", "\t", false));
+		final Object instance = klass.getConstructors()[0].newInstance();
+		final Method entrypoint = klass.getMethod("parse", String.class);
+
+		final String as = "a".repeat(10_000);
+		assertNotNull(entrypoint.invoke(instance, as + "b"));
+		assertNotNull(entrypoint.invoke(instance, as + "c"));
+		assertNull(entrypoint.invoke(instance, as + "d"));
+		assertNull(entrypoint.invoke(instance, as));
+		assertNull(entrypoint.invoke(instance, "b" + as));
+	}
+
+	@ParameterizedTest
+	@MethodSource("encodings")
+	void longestMatchRollsBackToLastAcceptingPosition(final TransitionEncoding encoding)
+			throws ReflectiveOperationException {
+		final Grammar g = Parser.parse("start = ( A | AB )+ ;\nA = \"a\" ;\nAB = \"a\"+ \"b\" ;\n");
+		final String className = "MyRollbackParser";
+		final Class<?> klass = compileJavaSource(
+				className,
+				Generator.generate(
+						g,
+						className,
+						"",
+						"\t",
+						false,
+						GeneratorOptions.builder().transitionEncoding(encoding).build()));
+		final ClassLoader loader = klass.getClassLoader();
+		final Class<?> lexerClass = loader.loadClass(className + "$" + className + "_Lexer");
+		final Class<?> bufferClass = loader.loadClass(className + "$TokenBuffer");
+
+		final Object lexer = lexerClass.getConstructor().newInstance();
+		final Object buffer = bufferClass.getConstructor().newInstance();
+		final Method tokenize = lexerClass.getMethod("tokenize", String.class, bufferClass);
+		final Method size = bufferClass.getMethod("size");
+		final Method content = bufferClass.getMethod("content", int.class);
+
+		tokenize.invoke(lexer, "aabaa", buffer);
+		assertEquals(3, size.invoke(buffer));
+		assertEquals("aab", content.invoke(buffer, 0));
+		assertEquals("a", content.invoke(buffer, 1));
+		assertEquals("a", content.invoke(buffer, 2));
+
+		// each token scans to the end of the input before rolling back, unless the failed scans are remembered
+		final int n = 200_000;
+		tokenize.invoke(lexer, "a".repeat(n), buffer);
+		assertEquals(n, size.invoke(buffer));
+		tokenize.invoke(lexer, "a".repeat(n) + "b", buffer);
+		assertEquals(1, size.invoke(buffer));
+
+		final InvocationTargetException ite =
+				assertThrows(InvocationTargetException.class, () -> tokenize.invoke(lexer, "aac", buffer));
+		assertInstanceOf(IllegalArgumentException.class, ite.getCause());
+
+		final Method parse = klass.getMethod("parse", String.class);
+		final Object parser = klass.getConstructors()[0].newInstance();
+		assertNotNull(parse.invoke(parser, "aabaa"));
+		assertNull(parse.invoke(parser, "aac"));
+	}
+
+	@ParameterizedTest
+	@MethodSource("encodings")
+	void streamingLongestMatchRollsBackInLinearTime(final TransitionEncoding encoding)
+			throws ReflectiveOperationException {
+		final Grammar g = Parser.parse("start = ( A | AB )+ ;\nA = \"a\" ;\nAB = \"a\"+ \"b\" ;\n");
+		final String className = "MyStreamingRollbackParser";
+		final Class<?> klass = compileJavaSource(
+				className,
+				Generator.generate(
+						g,
+						className,
+						"",
+						"\t",
+						false,
+						GeneratorOptions.builder().transitionEncoding(encoding).build()));
+		final Class<?> lexerClass = klass.getClassLoader().loadClass(className + "$" + className + "_Lexer");
+		final Object lexer = lexerClass.getConstructor().newInstance();
+		final Method tokenize = lexerClass.getMethod("tokenize", Reader.class, Consumer.class);
+
+		// the failed scans must be remembered across tokens and across refills of the streaming window
+		final int n = 200_000;
+		final List<Object> tokens = new ArrayList<>();
+		final Consumer<Object> consumer = tokens::add;
+		tokenize.invoke(lexer, new StringReader("a".repeat(n)), consumer);
+		assertEquals(n, tokens.size());
+
+		final String input = "a".repeat(n) + "b" + "a".repeat(n);
+		tokens.clear();
+		tokenize.invoke(lexer, new StringReader(input), consumer);
+		assertEquals(lexerClass.getMethod("tokenize", String.class).invoke(lexer, input), tokens);
+		assertEquals(n + 1, tokens.size());
+	}
+
+	@Test
+	void disjointAlternativesArePredicted() throws ReflectiveOperationException {
+		final Grammar g = Parser.parse(String.join(
+				"\n",
+				"start = statement+ ;",
+				"statement = assignment | output | block | choice ;",
+				"assignment = ID EQUALS ID SEMICOLON ;",
+				"output = BANG ID SEMICOLON ;",
+				"block = LEFT statement* RIGHT ;",
+				"choice = TAG ID | TAG BANG ;",
+				"ID = \"x\" | \"y\" ;",
+				"EQUALS = \"=\" ;",
+				"SEMICOLON = \";\" ;",
+				"BANG = \"!\" ;",
+				"LEFT = \"{\" ;",
+				"RIGHT = \"}\" ;",
+				"TAG = \"#\" ;",
+				"_WHITESPACE = \" \"+ ;",
+				""));
+		assertEquals(List.of("statement"), GrammarUtils.computePredictiveProductions(g));
+
+		final String className = "MyPredictiveParser";
+		final String sourceCode = Generator.generate(g, className, "", "\t", false);
+		assertTrue(sourceCode.contains("switch (next)"), "Expected the generated parser to switch on the next token.");
+
+		final Class<?> klass = compileJavaSource(className, sourceCode);
+		final Object instance = klass.getConstructors()[0].newInstance();
+		final Method entrypoint = klass.getMethod("parse", String.class);
+		for (final String input : List.of("x = y ;", "! x ; { x = x ; { } } # y # !", "{ } # x")) {
+			assertNotNull(entrypoint.invoke(instance, input), () -> String.format("Expected '%s' to be parsed.", input));
+		}
+		for (final String input : List.of("", "x = ;", "# ;", "{ x = y ;", "}")) {
+			assertNull(
+					entrypoint.invoke(instance, input), () -> String.format("Expected '%s' to NOT be parsed.", input));
+		}
+	}
+
+	private static void assertSameResults(
+			final Grammar g,
+			final GeneratorOptions options,
+			final List<String> correctInputs,
+			final List<String> wrongInputs,
+			final boolean compareErrorPosition)
+			throws ReflectiveOperationException {
+		final Class<?> reference = compileJavaSource(
+				"MyReferenceParser", Generator.generate(g, "MyReferenceParser", "", "\t", false));
+		final Class<?> tested =
+				compileJavaSource("MyTestedParser", Generator.generate(g, "MyTestedParser", "", "\t", false, options));
+		final Object referenceInstance = reference.getConstructors()[0].newInstance();
+		final Object testedInstance = tested.getConstructors()[0].newInstance();
+		final Method referenceParse = reference.getMethod("parse", String.class);
+		final Method testedParse = tested.getMethod("parse", String.class);
+		// the node types are not the same classes, but they print the same unless the grammar was transformed
+		final boolean compareTree = !options.rewriteRecursion() && !options.optimizeGrammar() && !options.leftFactor();
+
+		for (final String input : correctInputs) {
+			final Object actual = testedParse.invoke(testedInstance, input);
+			assertNotNull(
+					actual,
+					() -> String.format(
+							"Expected the following grammar with %s to be able to parse the input '%s' but it did not.%n%s%n",
+							options, input, Utils.prettyPrint(g)));
+			if (compareTree) {
+				assertEquals(
+						String.valueOf(referenceParse.invoke(referenceInstance, input)), String.valueOf(actual));
+			}
+		}
+		for (final String input : wrongInputs) {
+			assertNull(
+					testedParse.invoke(testedInstance, input),
+					() -> String.format(
+							"Expected the following grammar with %s to NOT be able to parse the input '%s' but it did.%n%s%n",
+							options, input, Utils.prettyPrint(g)));
+			if (compareErrorPosition) {
+				referenceParse.invoke(referenceInstance, input);
+				assertEquals(
+						reference.getMethod("errorPosition").invoke(referenceInstance),
+						tested.getMethod("errorPosition").invoke(testedInstance));
+			}
+		}
+	}
+
+	@ParameterizedTest
+	@MethodSource("casesWithOptions")
+	void optionsKeepTheSameResults(
+			final Grammar g,
+			final List<String> correctInputs,
+			final List<String> wrongInputs,
+			final GeneratorOptions options,
+			final boolean compareErrorPosition)
+			throws ReflectiveOperationException {
+		assertSameResults(g, options, correctInputs, wrongInputs, compareErrorPosition);
+	}
+
+	@Test
+	void memoizationKeepsNestedExpressionsLinear() throws ReflectiveOperationException {
+		final Grammar g = Parser.parse(String.join(
+				"\n",
+				"start = expression ;",
+				"expression = term PLUS expression | term MINUS expression | term ;",
+				"term = LEFT expression RIGHT | NUMBER ;",
+				"PLUS = \"+\" ;",
+				"MINUS = \"-\" ;",
+				"LEFT = \"(\" ;",
+				"RIGHT = \")\" ;",
+				"NUMBER = \"1\" ;",
+				""));
+		// without memoization, each level of parentheses parses the inner one three times
+		final int depth = 500;
+		final String input = "(".repeat(depth) + "1" + ")".repeat(depth) + "+1";
+
+		for (final GeneratorOptions options : List.of(
+				GeneratorOptions.builder().memoization(Memoization.ALL).build(),
+				GeneratorOptions.builder().memoizedProductions(List.of("term")).build())) {
+			final String className = "MyMemoizedParser";
+			final Class<?> klass = compileJavaSource(className, Generator.generate(g, className, "", "\t", false, options));
+			final Object instance = klass.getConstructors()[0].newInstance();
+			final Method entrypoint = klass.getMethod("parse", String.class);
+			assertNotNull(entrypoint.invoke(instance, input));
+			assertNull(entrypoint.invoke(instance, input + ")"));
+			assertNotNull(entrypoint.invoke(instance, input));
+		}
+
+		assertThrows(
+				IllegalArgumentException.class,
+				() -> Generator.generate(
+						g,
+						"MyMemoizedParser",
+						"",
+						"\t",
+						false,
+						GeneratorOptions.builder()
+								.memoizedProductions(List.of("unknown"))
+								.build()));
+	}
+
+	@ParameterizedTest
+	@MethodSource("allCases")
+	void flatTreeMatchesRegularTree(
+			final Grammar g, final List<String> correctInputs, final List<String> wrongInputs)
+			throws ReflectiveOperationException {
+		final String className = "MyFlatParser";
+		final Class<?> klass = compileJavaSource(
+				className,
+				Generator.generate(
+						g,
+						className,
+						"",
+						"\t",
+						false,
+						GeneratorOptions.builder().flatTree(true).build()));
+		final Object instance = klass.getConstructors()[0].newInstance();
+		final Method parse = klass.getMethod("parse", String.class);
+		final Method parseTree = klass.getMethod("parseTree", String.class);
+		final Class<?> treeClass = klass.getClassLoader().loadClass(className + "$Tree");
+		final Class<?> cursorClass = klass.getClassLoader().loadClass(className + "$Cursor");
+		final Method size = treeClass.getMethod("size");
+		final Method root = treeClass.getMethod("root");
+		final Method materialize = treeClass.getMethod("materialize", int.class);
+		final Method cursor = treeClass.getMethod("cursor");
+		final Method firstChild = cursorClass.getMethod("gotoFirstChild");
+		final Method nextSibling = cursorClass.getMethod("gotoNextSibling");
+		final Method parent = cursorClass.getMethod("gotoParent");
+
+		for (final String input : correctInputs) {
+			final Object tree = parseTree.invoke(instance, input);
+			assertNotNull(
+					tree,
+					() -> String.format(
+							"Expected the following grammar to build a flat tree for '%s' but it did not.%n%s%n",
+							input, Utils.prettyPrint(g)));
+			assertEquals(parse.invoke(instance, input), materialize.invoke(tree, root.invoke(tree)));
+
+			// a preorder walk with the cursor visits every node once
+			final Object c = cursor.invoke(tree);
+			int visited = 1;
+			boolean done = false;
+			while (!done) {
+				if ((boolean) firstChild.invoke(c)) {
+					visited++;
+					continue;
+				}
+				while (!(boolean) nextSibling.invoke(c)) {
+					if (!(boolean) parent.invoke(c)) {
+						done = true;
+						break;
+					}
+				}
+				if (!done) {
+					visited++;
+				}
+			}
+			assertEquals(size.invoke(tree), visited);
+		}
+		for (final String input : wrongInputs) {
+			assertNull(
+					parseTree.invoke(instance, input),
+					() -> String.format(
+							"Expected the following grammar to NOT build a flat tree for '%s' but it did.%n%s%n",
+							input, Utils.prettyPrint(g)));
+		}
+	}
+
+	private static void expectedEvents(final Object node, final List<String> events)
+			throws ReflectiveOperationException {
+		if (node == null) {
+			return;
+		}
+		final String name = (String) node.getClass().getMethod("name").invoke(node);
+		if ("Terminal".equals(name)) {
+			events.add("token " + node.getClass().getMethod("literal").invoke(node));
+			return;
+		}
+		final String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+		events.add("enter" + capitalized);
+		try {
+			for (final Object child : (List<?>) node.getClass().getMethod("nodes").invoke(node)) {
+				expectedEvents(child, events);
+			}
+		} catch (final NoSuchMethodException e) {
+			expectedEvents(node.getClass().getMethod("match").invoke(node), events);
+		}
+		events.add("exit" + capitalized);
+	}
+
+	@ParameterizedTest
+	@MethodSource("allCases")
+	void listenerHearsTheSameTree(final Grammar g, final List<String> correctInputs, final List<String> wrongInputs)
+			throws ReflectiveOperationException {
+		final String className = "MyListeningParser";
+		final Class<?> klass = compileJavaSource(
+				className,
+				Generator.generate(
+						g,
+						className,
+						"",
+						"\t",
+						false,
+						GeneratorOptions.builder().eventListener(true).build()));
+		final Object instance = klass.getConstructors()[0].newInstance();
+		final Class<?> listenerClass = klass.getClassLoader().loadClass(className + "$Listener");
+		final Method parse = klass.getMethod("parse", String.class);
+		final Method parseEvents = klass.getMethod("parse", String.class, listenerClass);
+
+		final List<String> events = new ArrayList<>();
+		final String[] currentInput = {""};
+		final Object listener = Proxy.newProxyInstance(
+				klass.getClassLoader(), new Class<?>[] {listenerClass}, (proxy, method, args) -> {
+					events.add(
+							method.getName().equals("token")
+									? "token " + currentInput[0].substring((int) (long) args[1], (int) (long) args[2])
+									: method.getName());
+					return null;
+				});
+
+		for (final String input : correctInputs) {
+			final List<String> expected = new ArrayList<>();
+			expectedEvents(parse.invoke(instance, input), expected);
+			events.clear();
+			currentInput[0] = input;
+			assertEquals(true, parseEvents.invoke(instance, input, listener));
+			assertEquals(expected, events);
+		}
+		for (final String input : wrongInputs) {
+			events.clear();
+			currentInput[0] = input;
+			assertEquals(false, parseEvents.invoke(instance, input, listener));
+			assertEquals(List.of(), events);
+		}
+	}
+
+	private static String expectedValue(final Object node) throws ReflectiveOperationException {
+		if (node == null) {
+			return "null";
+		}
+		final String name = (String) node.getClass().getMethod("name").invoke(node);
+		if ("Terminal".equals(name)) {
+			return "'" + node.getClass().getMethod("literal").invoke(node) + "'";
+		}
+		final boolean isList = Arrays.stream(node.getClass().getInterfaces())
+				.anyMatch(i -> "ZeroOrMore".equals(i.getSimpleName()) || "OneOrMore".equals(i.getSimpleName()));
+		final List<String> children = new ArrayList<>();
+		try {
+			for (final Object child : (List<?>) node.getClass().getMethod("nodes").invoke(node)) {
+				children.add(expectedValue(child));
+			}
+		} catch (final NoSuchMethodException e) {
+			children.add(expectedValue(node.getClass().getMethod("match").invoke(node)));
+		}
+		return name + "(" + (isList ? children.toString() : String.join(", ", children)) + ")";
+	}
+
+	@ParameterizedTest
+	@MethodSource("allCases")
+	void reducerFoldsTheSameTree(final Grammar g, final List<String> correctInputs, final List<String> wrongInputs)
+			throws ReflectiveOperationException {
+		final String className = "MyReducingParser";
+		final Class<?> klass = compileJavaSource(
+				className,
+				Generator.generate(
+						g,
+						className,
+						"",
+						"\t",
+						false,
+						GeneratorOptions.builder().reducer(true).build()));
+		final Object instance = klass.getConstructors()[0].newInstance();
+		final Class<?> reducerClass = klass.getClassLoader().loadClass(className + "$Reducer");
+		final Method parse = klass.getMethod("parse", String.class);
+		final Method parseReduced = klass.getMethod("parse", String.class, reducerClass);
+		final Method errorPosition = klass.getMethod("errorPosition");
+
+		// each production becomes its name applied to the values of its children, each token its text
+		final Object reducer = Proxy.newProxyInstance(
+				klass.getClassLoader(), new Class<?>[] {reducerClass}, (proxy, method, args) -> {
+					if (method.getParameterTypes()[0] == String.class) {
+						return "'" + args[0] + "'";
+					}
+					return method.getName() + "("
+							+ Arrays.stream(args).map(String::valueOf).collect(Collectors.joining(", ")) + ")";
+				});
+
+		for (final String input : correctInputs) {
+			assertEquals(expectedValue(parse.invoke(instance, input)), parseReduced.invoke(instance, input, reducer));
+		}
+		for (final String input : wrongInputs) {
+			assertNull(parseReduced.invoke(instance, input, reducer));
+			assertNotEquals(-1L, errorPosition.invoke(instance));
+		}
+	}
+
+	@Test
+	void explicitStackParsesDeeplyNestedInput() throws ReflectiveOperationException {
+		final Grammar g = Parser.parse(
+				"start = LP start RP | X ;\nLP = \"(\" ;\nRP = \")\" ;\nX = \"x\" ;\n");
+		final String className = "MyDeepParser";
+		final Class<?> klass = compileJavaSource(
+				className,
+				Generator.generate(
+						g,
+						className,
+						"",
+						"\t",
+						false,
+						GeneratorOptions.builder()
+								.parserBackend(ParserBackend.EXPLICIT_STACK)
+								.build()));
+		final Object instance = klass.getConstructors()[0].newInstance();
+		final Method entrypoint = klass.getMethod("parse", String.class);
+		final int depth = 100_000;
+		final String input = "(".repeat(depth) + "x" + ")".repeat(depth);
+
+		Object node = entrypoint.invoke(instance, input);
+		int nesting = 0;
+		while (node != null && !"Terminal".equals(node.getClass().getMethod("name").invoke(node))) {
+			final Object match = node.getClass().getMethod("match").invoke(node);
+			try {
+				node = ((List<?>) match.getClass().getMethod("nodes").invoke(match)).get(1);
+				nesting++;
+			} catch (final NoSuchMethodException e) {
+				node = match;
+			}
+		}
+		assertNotNull(node);
+		assertEquals(depth, nesting);
+		assertNull(entrypoint.invoke(instance, input.substring(1)));
+	}
+
+	@Test
+	void parseTableParsesDeeplyNestedInput() throws ReflectiveOperationException {
+		final Grammar g = Parser.parse("expr = term ( PLUS term )* ;\nterm = NUM | LP expr RP ;\nPLUS = \"+\" ;\n"
+				+ "NUM = ( \"1\" | \"2\" | \"3\" | \"4\" )+ ;\nLP = \"(\" ;\nRP = \")\" ;\n");
+		final String className = "MyExpressionParser";
+		final Class<?> klass = compileJavaSource(
+				className,
+				Generator.generate(
+						g,
+						className,
+						"",
+						"\t",
+						false,
+						GeneratorOptions.builder()
+								.parserBackend(ParserBackend.LL1_TABLE)
+								.build()));
+		final Object instance = klass.getConstructors()[0].newInstance();
+		final Method entrypoint = klass.getMethod("parse", String.class);
+		final int depth = 100_000;
+
+		assertNotNull(entrypoint.invoke(instance, "1+(2+3)+4"));
+		assertNotNull(entrypoint.invoke(instance, "(".repeat(depth) + "1" + ")".repeat(depth)));
+		assertNull(entrypoint.invoke(instance, "1+(2+3"));
+		assertNull(entrypoint.invoke(instance, "1++2"));
+	}
+
+	@ParameterizedTest
+	@MethodSource("nonRecursiveBackends")
+	void alternativeParsersNeedRecursiveDescent(final ParserBackend backend) {
+		// the flat tree, listener and reducer parsers would recurse on their own, bringing back the stack limit
+		assertThrows(
+				IllegalArgumentException.class,
+				() -> GeneratorOptions.builder().parserBackend(backend).flatTree(true).build());
+		assertThrows(
+				IllegalArgumentException.class,
+				() -> GeneratorOptions.builder().parserBackend(backend).eventListener(true).build());
+		assertThrows(
+				IllegalArgumentException.class,
+				() -> GeneratorOptions.builder().parserBackend(backend).reducer(true).build());
+	}
+
+	@Test
+	void parseTableRejectsGrammarsWhichAreNotLL1() {
+		final Grammar g = Parser.parse("start = A B | A C ;\nA = \"a\" ;\nB = \"b\" ;\nC = \"c\" ;\n");
+		final GeneratorOptions options =
+				GeneratorOptions.builder().parserBackend(ParserBackend.LL1_TABLE).build();
+		assertThrows(
+				IllegalArgumentException.class, () -> Generator.generate(g, "MyParser", "", "\t", false, options));
+	}
+
+	@Test
+	void lalrTableRejectsGrammarsDependingOnOrderedChoice() throws ReflectiveOperationException {
+		final Grammar g = Parser.parse(String.join(
+				"\n",
+				"start = item+ ;",
+				"item = ID | ID LP RP ;",
+				"ID = \"x\" ;",
+				"LP = \"(\" ;",
+				"RP = \")\" ;",
+				""));
+		// the first alternative always wins, so the second one is never tried
+		final Class<?> klass = compileJavaSource(
+				"MyOrderedParser", Generator.generate(g, "MyOrderedParser", "", "\t", false));
+		final Object instance = klass.getConstructors()[0].newInstance();
+		final Method entrypoint = klass.getMethod("parse", String.class);
+		assertNotNull(entrypoint.invoke(instance, "xx"));
+		assertNull(entrypoint.invoke(instance, "x()"));
+
+		// while the tables would accept it
+		final IllegalArgumentException e = assertThrows(
+				IllegalArgumentException.class,
+				() -> Generator.generate(
+						g,
+						"MyLALRParser",
+						"",
+						"\t",
+						false,
+						GeneratorOptions.builder()
+								.parserBackend(ParserBackend.LALR1_TABLE)
+								.build()));
+		assertTrue(e.getMessage().startsWith("The grammar depends on the order of its alternatives"));
+
+		// the same, with each alternative behind a production of its own
+		final Grammar named = Parser.parse(String.join(
+				"\n",
+				"start = item+ ;",
+				"item = p | q ;",
+				"p = ID ;",
+				"q = ID LP RP ;",
+				"ID = \"x\" ;",
+				"LP = \"(\" ;",
+				"RP = \")\" ;",
+				""));
+		assertThrows(
+				IllegalArgumentException.class,
+				() -> Generator.generate(
+						named,
+						"MyLALRParser",
+						"",
+						"\t",
+						false,
+						GeneratorOptions.builder()
+								.parserBackend(ParserBackend.LALR1_TABLE)
+								.build()));
+	}
+
+	@Test
+	void lalrTableParsesLeftRecursiveGrammars() throws ReflectiveOperationException {
+		final Grammar g = Parser.parse(String.join(
+				"\n",
+				"start = expression ;",
+				"expression = expression ( PLUS | MINUS ) term | term ;",
+				"term = term ( ASTERISK | SLASH ) factor | factor ;",
+				"factor = LEFT_PARENTHESIS expression RIGHT_PARENTHESIS | NUMBER ;",
+				"LEFT_PARENTHESIS = \"(\" ;",
+				"RIGHT_PARENTHESIS = \")\" ;",
+				"ASTERISK = \"*\" ;",
+				"SLASH = \"/\" ;",
+				"PLUS = \"+\" ;",
+				"MINUS = \"-\" ;",
+				"NUMBER = ( \"1\" | \"2\" | \"3\" )+ ;",
+				""));
+		final String className = "MyLeftRecursiveParser";
+		final Class<?> klass = compileJavaSource(
+				className,
+				Generator.generate(
+						g,
+						className,
+						"",
+						"\t",
+						false,
+						GeneratorOptions.builder()
+								.parserBackend(ParserBackend.LALR1_TABLE)
+								.build()));
+		final Object instance = klass.getConstructors()[0].newInstance();
+		final Method entrypoint = klass.getMethod("parse", String.class);
+		final int length = 100_000;
+
+		// subtractions are grouped from the left
+		final Object start = entrypoint.invoke(instance, "3-2-1");
+		final Object expression = start.getClass().getMethod("match").invoke(start);
+		final Object outer = expression.getClass().getMethod("match").invoke(expression);
+		final Object inner = outer.getClass().getMethod("expression").invoke(outer);
+		assertEquals("sequence_0", inner.getClass().getMethod("match").invoke(inner).getClass().getSimpleName());
+
+		assertNotNull(entrypoint.invoke(instance, "1" + "+1".repeat(length)));
+		assertNotNull(entrypoint.invoke(instance, "(".repeat(length) + "1" + ")".repeat(length)));
+		assertNull(entrypoint.invoke(instance, "1+(2*3"));
+		assertNull(entrypoint.invoke(instance, "1+*2"));
+	}
+
+	@Test
+	void adaptivePredictionIsSharedAcrossParsers() throws ReflectiveOperationException {
+		final Grammar g = Parser.parse(
+				"start = list B | list C | A ;\nlist = A+ ;\nA = \"a\" ;\nB = \"b\" ;\nC = \"c\" ;\n");
+		final String className = "MyAdaptiveParser";
+		final Class<?> klass = compileJavaSource(
+				className,
+				Generator.generate(
+						g,
+						className,
+						"",
+						"\t",
+						false,
+						GeneratorOptions.builder().adaptivePrediction(true).build()));
+		final Method entrypoint = klass.getMethod("parse", String.class);
+		final Method errorPosition = klass.getMethod("errorPosition");
+		final List<String> inputs = List.of("a", "ab", "aac", "aaaab", "aaaaaaac");
+
+		// many parsers in parallel fill and read the same DFA
+		final List<Object> parsers = new ArrayList<>();
+		for (int i = 0; i < 16; i++) {
+			parsers.add(klass.getConstructors()[0].newInstance());
+		}
+		assertTrue(parsers.parallelStream().allMatch(parser -> inputs.stream().allMatch(input -> {
+			try {
+				return entrypoint.invoke(parser, input) != null;
+			} catch (final ReflectiveOperationException e) {
+				throw new AssertionError(e);
+			}
+		})));
+
+		final Object parser = parsers.getFirst();
+		assertNull(entrypoint.invoke(parser, "aaaa"));
+		assertEquals(4L, errorPosition.invoke(parser));
+		assertNull(entrypoint.invoke(parser, "aaba"));
+		assertEquals(3L, errorPosition.invoke(parser));
+	}
+
+	@Test
+	void precedenceClimbingParsesOperatorChains() throws ReflectiveOperationException {
+		final Grammar g = Parser.parse(String.join(
+				"\n",
+				"start = expression ;",
+				"expression = term ( ( PLUS | MINUS ) term )* ;",
+				"term = power ( ( ASTERISK | SLASH ) power )* ;",
+				"power = factor ( CARET factor )* ;",
+				"factor = LEFT_PARENTHESIS expression RIGHT_PARENTHESIS | MINUS factor | NUMBER ;",
+				"LEFT_PARENTHESIS = \"(\" ;",
+				"RIGHT_PARENTHESIS = \")\" ;",
+				"ASTERISK = \"*\" ;",
+				"SLASH = \"/\" ;",
+				"CARET = \"^\" ;",
+				"PLUS = \"+\" ;",
+				"MINUS = \"-\" ;",
+				"NUMBER = ( \"1\" | \"2\" | \"3\" )+ ;",
+				""));
+		final Class<?> descending = compileJavaSource(
+				"MyDescendingParser", Generator.generate(g, "MyDescendingParser", "", "\t", false));
+		final Class<?> climbing = compileJavaSource(
+				"MyClimbingParser",
+				Generator.generate(
+						g,
+						"MyClimbingParser",
+						"",
+						"\t",
+						false,
+						GeneratorOptions.builder().precedenceClimbing(true).build()));
+		final Object descendingInstance = descending.getConstructors()[0].newInstance();
+		final Object climbingInstance = climbing.getConstructors()[0].newInstance();
+		final Method descendingParse = descending.getMethod("parse", String.class);
+		final Method climbingParse = climbing.getMethod("parse", String.class);
+
+		// the three levels share a single loop
+		assertNotNull(climbing.getDeclaredMethod("climb_expression", int.class));
+		for (final String input : List.of(
+				"1", "1+2", "1-2*3", "1^2^3*2-1", "-1*-2", "(1+2)^3/(2-1)", "3*(2+1)-2^1", "1+2*3^1-2/3+1")) {
+			final Object expected = descendingParse.invoke(descendingInstance, input);
+			assertNotNull(expected);
+			assertEquals(String.valueOf(expected), String.valueOf(climbingParse.invoke(climbingInstance, input)));
+		}
+		// the operators given back must not be discarded by the lexer, even after more than a window of tokens
+		for (final String input :
+				List.of("", "1+", "1*+2", "1^", "(1+2", "1+2)", "1 2", "-", "1+".repeat(8) + ")", "1*2+".repeat(20) + ")")) {
+			assertNull(climbingParse.invoke(climbingInstance, input));
+			descendingParse.invoke(descendingInstance, input);
+			assertEquals(
+					descending.getMethod("errorPosition").invoke(descendingInstance),
+					climbing.getMethod("errorPosition").invoke(climbingInstance));
+		}
+	}
+
+	@Test
+	void rewrittenRecursionParsesLongInputs() throws ReflectiveOperationException {
+		final Grammar g = Parser.parse(String.join(
+				"\n",
+				"start = expression ;",
+				"expression = expression ( PLUS | MINUS ) term | term ;",
+				"term = NUMBER | LEFT_PARENTHESIS list RIGHT_PARENTHESIS ;",
+				"list = expression ( COMMA list )? ;",
+				"LEFT_PARENTHESIS = \"(\" ;",
+				"RIGHT_PARENTHESIS = \")\" ;",
+				"COMMA = \",\" ;",
+				"PLUS = \"+\" ;",
+				"MINUS = \"-\" ;",
+				"NUMBER = ( \"1\" | \"2\" | \"3\" )+ ;",
+				""));
+		final String className = "MyRewrittenParser";
+		final Class<?> klass = compileJavaSource(
+				className,
+				Generator.generate(
+						g,
+						className,
+						"",
+						"\t",
+						false,
+						GeneratorOptions.builder().rewriteRecursion(true).build()));
+		final Object instance = klass.getConstructors()[0].newInstance();
+		final Method entrypoint = klass.getMethod("parse", String.class);
+		final int length = 100_000;
+
+		assertNotNull(entrypoint.invoke(instance, "3-2-1"));
+		assertNotNull(entrypoint.invoke(instance, "1" + "+1".repeat(length)));
+		assertNotNull(entrypoint.invoke(instance, "(" + "1,".repeat(length) + "1)"));
+		assertNull(entrypoint.invoke(instance, "1+"));
+		assertNull(entrypoint.invoke(instance, "(1,)"));
+	}
+
+	@Test
+	void childrenAreCollectedOnce() throws ReflectiveOperationException {
+		final Grammar g = Parser.parse("start = A B | A C+ ;\nA = \"a\" ;\nB = \"b\" ;\nC = \"c\" ;\n");
+		final String className = "MyCachingParser";
+		final Class<?> klass = compileJavaSource(
+				className,
+				Generator.generate(
+						g,
+						className,
+						"",
+						"\t",
+						false,
+						GeneratorOptions.builder().cachedChildren(true).build()));
+		final Object instance = klass.getConstructors()[0].newInstance();
+		final Method entrypoint = klass.getMethod("parse", String.class);
+		final Class<?> sequence = klass.getClassLoader().loadClass(className + "$Sequence");
+		final Method nodes = sequence.getMethod("nodes");
+
+		final Object first = entrypoint.invoke(instance, "acc");
+		assertNotNull(first);
+		final Object node = first.getClass().getMethod("match").invoke(first);
+		assertInstanceOf(sequence, node);
+		assertSame(nodes.invoke(node), nodes.invoke(node));
+		assertEquals(first, entrypoint.invoke(instance, "acc"));
+		assertNotEquals(first, entrypoint.invoke(instance, "accc"));
+	}
+
+	@Test
+	void sequencesAreRecordsByDefault() throws ReflectiveOperationException {
+		final Grammar g = Parser.parse("start = A B | A C+ ;\nA = \"a\" ;\nB = \"b\" ;\nC = \"c\" ;\n");
+		final String className = "MyRecordParser";
+		final Class<?> klass = compileJavaSource(className, Generator.generate(g, className, "", "\t", false));
+		final Object instance = klass.getConstructors()[0].newInstance();
+		final Method entrypoint = klass.getMethod("parse", String.class);
+		final Class<?> sequence = klass.getClassLoader().loadClass(className + "$Sequence");
+
+		final Object node = entrypoint.invoke(instance, "ab");
+		final Object match = node.getClass().getMethod("match").invoke(node);
+		assertInstanceOf(sequence, match);
+		assertTrue(match.getClass().isRecord());
+		assertEquals(2, match.getClass().getRecordComponents().length);
+		assertEquals(entrypoint.invoke(instance, "ab"), node);
+	}
+
+	@ParameterizedTest
+	@MethodSource("encodings")
+	void rejectedInputsReportTheFurthestErrorPosition(final TransitionEncoding encoding)
+			throws ReflectiveOperationException {
+		final Grammar g = Parser.parse(String.join(
+				"\n",
+				"start = pair+ ;",
+				"pair = WORD EQUALS WORD SEMICOLON ;",
+				"WORD = \"a\"+ ;",
+				"EQUALS = \"=\" ;",
+				"SEMICOLON = \";\" ;",
+				""));
+		final String className = "MyFailingParser";
+		final Class<?> klass = compileJavaSource(
+				className,
+				Generator.generate(
+						g,
+						className,
+						"",
+						"\t",
+						false,
+						GeneratorOptions.builder().transitionEncoding(encoding).build()));
+		final Object instance = klass.getConstructors()[0].newInstance();
+		final Method entrypoint = klass.getMethod("parse", String.class);
+		final Method errorPosition = klass.getMethod("errorPosition");
+
+		assertNotNull(entrypoint.invoke(instance, "a=aa;aaa=a;"));
+		assertEquals(-1L, errorPosition.invoke(instance));
+		// syntax error: unexpected token
+		assertNull(entrypoint.invoke(instance, "a=aa;aaa;"));
+		assertEquals(8L, errorPosition.invoke(instance));
+		// syntax error: unexpected end of input
+		assertNull(entrypoint.invoke(instance, "a=aa;aaa="));
+		assertEquals(9L, errorPosition.invoke(instance));
+		// lexical error
+		assertNull(entrypoint.invoke(instance, "a=aa;ab=a;"));
+		assertEquals(6L, errorPosition.invoke(instance));
+		assertNotNull(entrypoint.invoke(instance, "a=a;"));
+		assertEquals(-1L, errorPosition.invoke(instance));
+	}
+
+	@ParameterizedTest
+	@MethodSource("encodings")
+	void streamingTokenizationMatchesInMemoryTokenization(final TransitionEncoding encoding)
+			throws ReflectiveOperationException {
+		final Grammar g = Parser.parse("start = WORD+ ;\nWORD = ( \"a\" | \"b\" )+ ;\n_SPACE = \" \" ;\n");
+		final String className = "MyStreamingParser";
+		final Class<?> klass = compileJavaSource(
+				className,
+				Generator.generate(
+						g,
+						className,
+						"",
+						"\t",
+						false,
+						GeneratorOptions.builder().transitionEncoding(encoding).build()));
+		final Class<?> lexerClass = klass.getClassLoader().loadClass(className + "$" + className + "_Lexer");
+		final Object lexer = lexerClass.getConstructor().newInstance();
+
+		// many tokens, followed by one token longer than the streaming buffer
+		final StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 20_000; i++) {
+			input.append(i % 3 == 0 ? "ab" : "b").append(i % 7 == 0 ? "  " : " ");
+		}
+		input.append("a".repeat(50_000));
+
+		final Object expected = lexerClass.getMethod("tokenize", String.class).invoke(lexer, input.toString());
+		final List<Object> actual = new ArrayList<>();
+		final Consumer<Object> consumer = actual::add;
+		lexerClass
+				.getMethod("tokenize", Reader.class, Consumer.class)
+				.invoke(lexer, new StringReader(input.toString()), consumer);
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	void streamingTokenizationKeepsABoundedWindow() throws ReflectiveOperationException {
+		final Grammar g = Parser.parse("start = WORD+ ;\nWORD = ( \"a\" | \"b\" )+ ;\n_SPACE = \" \" ;\n");
+		final String className = "MyBoundedStreamingParser";
+		final Class<?> klass = compileJavaSource(className, Generator.generate(g, className, "", "\t", false));
+		final Class<?> lexerClass = klass.getClassLoader().loadClass(className + "$" + className + "_Lexer");
+		final Object lexer = lexerClass.getConstructor().newInstance();
+
+		final String input = "ab b ".repeat(400_000);
+		final StringReader source = new StringReader(input);
+		// a reader handing out few characters at a time, remembering how much room the lexer asked to fill
+		final int[] largestRead = {0};
+		final Reader reader = new Reader() {
+			@Override
+			public int read(final char[] buffer, final int offset, final int length) throws IOException {
+				largestRead[0] = Math.max(largestRead[0], length);
+				return source.read(buffer, offset, Math.min(length, 100));
+			}
+
+			@Override
+			public void close() {
+				source.close();
+			}
+		};
+		final int[] count = {0};
+		final Consumer<Object> consumer = token -> count[0]++;
+		lexerClass.getMethod("tokenize", Reader.class, Consumer.class).invoke(lexer, reader, consumer);
+		assertEquals(800_000, count[0]);
+		assertTrue(largestRead[0] <= 8192, () -> String.format("The window grew to %,d characters.", largestRead[0]));
+	}
+
+	@ParameterizedTest
+	@MethodSource("encodings")
+	void utf8TokenizationMatchesCharTokenization(final TransitionEncoding encoding)
+			throws ReflectiveOperationException {
+		final Grammar g = Parser.parse("start = WORD+ ;\nWORD = ( \"à\" | \"b\" | \"€\" | \"😀\" )+ ;\n_SPACE = \" \" ;\n");
+		final String className = "MyUTF8Parser";
+		final Class<?> klass = compileJavaSource(
+				className,
+				Generator.generate(
+						g,
+						className,
+						"",
+						"\t",
+						false,
+						GeneratorOptions.builder()
+								.transitionEncoding(encoding)
+								.utf8Lexer(true)
+								.build()));
+		final Class<?> lexerClass = klass.getClassLoader().loadClass(className + "$" + className + "_Lexer");
+		final Class<?> utf8LexerClass = klass.getClassLoader()
+				.loadClass(className + "$" + DFASerializer.utf8LexerName(className + "_Lexer"));
+		final Object lexer = lexerClass.getConstructor().newInstance();
+		final Object utf8Lexer = utf8LexerClass.getConstructor().newInstance();
+
+		final String input = "bà €€😀b  😀 àbà€ b";
+		final byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+		final Object expected = lexerClass.getMethod("tokenize", String.class).invoke(lexer, input);
+		assertEquals(expected, utf8LexerClass.getMethod("tokenize", byte[].class).invoke(utf8Lexer, (Object) bytes));
+		final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+		assertEquals(expected, utf8LexerClass.getMethod("tokenize", ByteBuffer.class).invoke(utf8Lexer, direct));
+
+		// a lone byte of a multi-byte sequence must not be accepted
+		final byte[] truncated = Arrays.copyOf(bytes, bytes.length - 3);
+		truncated[truncated.length - 1] = (byte) 0xe2;
+		final InvocationTargetException ite = assertThrows(
+				InvocationTargetException.class,
+				() -> utf8LexerClass.getMethod("tokenize", byte[].class).invoke(utf8Lexer, (Object) truncated));
+		assertInstanceOf(IllegalArgumentException.class, ite.getCause());
+	}
+
+	@ParameterizedTest
+	@MethodSource("allCases")
+	void mappedFileParsingMatchesStringParsing(
+			final Grammar g, final List<String> correctInputs, final List<String> wrongInputs)
+			throws ReflectiveOperationException, IOException {
+		final String className = "MyMappedParser";
+		final Class<?> klass = compileJavaSource(
+				className,
+				Generator.generate(
+						g,
+						className,
+						"",
+						"\t",
+						false,
+						GeneratorOptions.builder().utf8Lexer(true).build()));
+		final Object instance = klass.getConstructors()[0].newInstance();
+		final Method fromString = klass.getMethod("parse", String.class);
+		final Method fromFile = klass.getMethod("parse", Path.class);
+
+		final Path file = Files.createTempFile("input", ".txt");
+		try {
+			for (final String input : correctInputs) {
+				Files.writeString(file, input, StandardCharsets.UTF_8);
+				final Object expected = fromString.invoke(instance, input);
+				assertNotNull(expected);
+				assertEquals(
+						expected,
+						fromFile.invoke(instance, file),
+						() -> String.format(
+								"Expected the same result when parsing '%s' from a file.%n%s%n",
+								input, Utils.prettyPrint(g)));
+			}
+			for (final String input : wrongInputs) {
+				Files.writeString(file, input, StandardCharsets.UTF_8);
+				assertNull(
+						fromFile.invoke(instance, file),
+						() -> String.format(
+								"Expected the following grammar to NOT be able to parse the file '%s' but it did.%n%s%n",
+								input, Utils.prettyPrint(g)));
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
 }
@@ -19,9 +19,13 @@ package com.ledmington.generator;
 
 import static com.ledmington.generator.CorrectGrammars.g;
 import static com.ledmington.generator.CorrectGrammars.nt;
+import static com.ledmington.generator.CorrectGrammars.or;
 import static com.ledmington.generator.CorrectGrammars.p;
+import static com.ledmington.generator.CorrectGrammars.seq;
 import static com.ledmington.generator.CorrectGrammars.t;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.Test;
 
@@ -38,4 +42,49 @@ public final class TestGrammarChecker {
 	void unusableNonTerminals() {
 		assertThrows(UnknownNonTerminalException.class, () -> GrammarChecker.check(g(p("s", nt("t")))));
 	}
+
+	@Test
+	void leftRecursionIsLALR1() {
+		assertDoesNotThrow(() -> GrammarChecker.checkLALR1(
+				g(p("s", or(seq(nt("s"), nt("A")), nt("A"))), p("A", t("a")))));
+	}
+
+	@Test
+	void ambiguityIsNotLALR1() {
+		final IllegalArgumentException e = assertThrows(
+				IllegalArgumentException.class,
+				() -> GrammarChecker.checkLALR1(
+						g(p("s", or(seq(nt("s"), nt("A"), nt("s")), nt("B"))), p("A", t("a")), p("B", t("b")))));
+		assertTrue(e.getMessage().contains("Shift/reduce conflict on 'A'"));
+	}
+
+	@Test
+	void overlappingAlternativesAreNotLALR1() {
+		// 'y' would never be tried by the other backends, since 'A' always matches first
+		final IllegalArgumentException e = assertThrows(
+				IllegalArgumentException.class,
+				() -> GrammarChecker.checkLALR1(g(
+						p("s", nt("x")),
+						p("x", or(nt("z"), nt("y"))),
+						p("y", seq(nt("A"), nt("B"))),
+						p("z", nt("A")),
+						p("A", t("a")),
+						p("B", t("b")))));
+		assertTrue(e.getMessage().contains("Alternatives 1 and 2 of 'x' may both start with 'A'."));
+		// even when the longer alternative comes first, one of them may hide the other
+		assertThrows(
+				IllegalArgumentException.class,
+				() -> GrammarChecker.checkLALR1(g(
+						p("s", nt("x")),
+						p("x", or(nt("y"), nt("A"))),
+						p("y", seq(nt("A"), nt("B"))),
+						p("A", t("a")),
+						p("B", t("b")))));
+		assertDoesNotThrow(() -> GrammarChecker.checkLALR1(g(
+				p("s", nt("x")),
+				p("x", or(nt("y"), nt("B"))),
+				p("y", seq(nt("A"), nt("B"))),
+				p("A", t("a")),
+				p("B", t("b")))));
+	}
 }
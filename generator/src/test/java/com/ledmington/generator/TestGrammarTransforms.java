@@ -0,0 +1,169 @@
+/*
+ * parser-gen - Parser Generator
+ * Copyright (C) 2025-2026 Filippo Barbari <filippo.barbari@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.ledmington.generator;
+
+import static com.ledmington.generator.CorrectGrammars.g;
+import static com.ledmington.generator.CorrectGrammars.nt;
+import static com.ledmington.generator.CorrectGrammars.one_or_more;
+import static com.ledmington.generator.CorrectGrammars.or;
+import static com.ledmington.generator.CorrectGrammars.p;
+import static com.ledmington.generator.CorrectGrammars.seq;
+import static com.ledmington.generator.CorrectGrammars.t;
+import static com.ledmington.generator.CorrectGrammars.zero_or_more;
+import static com.ledmington.generator.CorrectGrammars.zero_or_one;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.ledmington.ebnf.Grammar;
+
+public final class TestGrammarTransforms {
+	@Test
+	void directLeftRecursionBecomesRepetition() {
+		assertEquals(
+				g(
+						p("s", seq(nt("C"), zero_or_more(or(seq(nt("A"), nt("C")), seq(nt("B"), nt("C")))))),
+						p("A", t("a")),
+						p("B", t("b")),
+						p("C", t("c"))),
+				GrammarTransforms.rewriteRecursion(g(
+						p("s", or(seq(nt("s"), nt("A"), nt("C")), seq(nt("s"), nt("B"), nt("C")), nt("C"))),
+						p("A", t("a")),
+						p("B", t("b")),
+						p("C", t("c")))));
+	}
+
+	@Test
+	void indirectLeftRecursionBecomesRepetition() {
+		// 'a' is inlined into 'b', so nobody uses it anymore
+		assertEquals(
+				g(
+						p("s", nt("b")),
+						p("b", seq(or(seq(t("y"), t("z")), t("w")), zero_or_more(seq(t("x"), t("z")))))),
+				GrammarTransforms.rewriteRecursion(g(
+						p("s", nt("b")),
+						p("b", or(seq(nt("a"), t("z")), t("w"))),
+						p("a", or(seq(nt("b"), t("x")), t("y"))))));
+	}
+
+	@Test
+	void optionalTailRecursionBecomesRepetition() {
+		assertEquals(
+				g(p("s", seq(nt("A"), zero_or_more(seq(nt("B"), nt("A"))))), p("A", t("a")), p("B", t("b"))),
+				GrammarTransforms.rewriteRecursion(
+						g(p("s", seq(nt("A"), zero_or_one(seq(nt("B"), nt("s"))))), p("A", t("a")), p("B", t("b")))));
+		assertEquals(
+				g(p("s", one_or_more(nt("A"))), p("A", t("a"))),
+				GrammarTransforms.rewriteRecursion(g(p("s", seq(nt("A"), zero_or_one(nt("s")))), p("A", t("a")))));
+	}
+
+	@Test
+	void predictiveTailRecursionBecomesRepetition() {
+		assertEquals(
+				g(p("s", seq(zero_or_more(nt("A")), nt("B"))), p("A", t("a")), p("B", t("b"))),
+				GrammarTransforms.rewriteRecursion(
+						g(p("s", or(seq(nt("A"), nt("s")), nt("B"))), p("A", t("a")), p("B", t("b")))));
+	}
+
+	@Test
+	void ambiguousTailRecursionIsKept() {
+		// a repetition of 'A' would leave nothing for the last alternative
+		final Grammar g = g(p("s", or(seq(nt("A"), nt("s")), nt("A"))), p("A", t("a")));
+		assertEquals(g, GrammarTransforms.rewriteRecursion(g));
+	}
+
+	@Test
+	void equalExpressionsShareAProduction() {
+		// the two sequences are shared first, which makes the two repetitions equal
+		assertEquals(
+				Set.of(
+						p("s", seq(nt("zero_or_more_0"), nt("zero_or_more_0"))),
+						p("zero_or_more_0", zero_or_more(nt("sequence_0"))),
+						p("sequence_0", seq(nt("A"), nt("B")))),
+				Set.copyOf(GrammarTransforms.optimize(g(
+								p("s", seq(zero_or_more(seq(nt("A"), nt("B"))), zero_or_more(seq(nt("A"), nt("B"))))),
+								p("A", t("a")),
+								p("B", t("b"))))
+						.getParserProductions()));
+	}
+
+	@Test
+	void expressionsEqualToAProductionUseIt() {
+		assertEquals(
+				Set.of(p("s", seq(nt("x"), nt("x"))), p("x", or(nt("A"), nt("B")))),
+				Set.copyOf(GrammarTransforms.optimize(g(
+								p("s", seq(or(nt("A"), nt("B")), nt("x"))),
+								p("x", or(nt("A"), nt("B"))),
+								p("A", t("a")),
+								p("B", t("b"))))
+						.getParserProductions()));
+	}
+
+	@Test
+	void renamingsUsedOnceAreInlined() {
+		final Grammar g = g(p("s", nt("a")), p("a", nt("b")), p("b", seq(nt("A"), t("c"))), p("A", t("a")));
+		assertEquals(
+				Set.of(p("s", nt("b")), p("b", seq(nt("A"), nt("terminal_0")))),
+				Set.copyOf(GrammarTransforms.optimize(g).getParserProductions()));
+		assertEquals(
+				Set.of(p("s", nt("a")), p("a", nt("b")), p("b", seq(nt("A"), nt("terminal_0")))),
+				Set.copyOf(GrammarTransforms.optimize(g, Set.of("a")).getParserProductions()));
+	}
+
+	@Test
+	void commonPrefixesAreFactored() {
+		assertEquals(
+				g(
+						p("s", or(seq(nt("A"), or(seq(nt("B"), nt("C")), nt("C"))), nt("D"))),
+						p("A", t("a")),
+						p("B", t("b")),
+						p("C", t("c")),
+						p("D", t("d"))),
+				GrammarTransforms.leftFactor(g(
+						p("s", or(seq(nt("A"), nt("B"), nt("C")), nt("D"), seq(nt("A"), nt("C")))),
+						p("A", t("a")),
+						p("B", t("b")),
+						p("C", t("c")),
+						p("D", t("d")))));
+	}
+
+	@Test
+	void prefixAlternativeBecomesOptional() {
+		assertEquals(
+				g(p("s", seq(nt("A"), zero_or_one(nt("B")))), p("A", t("a")), p("B", t("b"))),
+				GrammarTransforms.leftFactor(
+						g(p("s", or(seq(nt("A"), nt("B")), nt("A"))), p("A", t("a")), p("B", t("b")))));
+	}
+
+	@Test
+	void unsafeGroupsAreKept() {
+		// the bare prefix would always match before the longer alternative is tried
+		final Grammar shortestFirst = g(p("s", or(nt("A"), seq(nt("A"), nt("B")))), p("A", t("a")), p("B", t("b")));
+		assertEquals(shortestFirst, GrammarTransforms.leftFactor(shortestFirst));
+		// 'x' may start with 'A' too, so it cannot be moved after the second alternative
+		final Grammar intervening = g(
+				p("s", or(seq(nt("A"), nt("B")), nt("x"), seq(nt("A"), nt("C")))),
+				p("x", or(nt("A"), nt("C"))),
+				p("A", t("a")),
+				p("B", t("b")),
+				p("C", t("c")));
+		assertEquals(intervening, GrammarTransforms.leftFactor(intervening));
+	}
+}